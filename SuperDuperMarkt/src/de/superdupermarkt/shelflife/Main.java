@@ -1,17 +1,30 @@
 package de.superdupermarkt.shelflife;
 
-import de.superdupermarkt.shelflife.data.loader.factory.ClassLoading;
 import de.superdupermarkt.shelflife.data.loader.factory.ProductLoaderRegistry;
 import de.superdupermarkt.shelflife.data.loader.factory.ProductTypeLoaderRegistry;
 import de.superdupermarkt.shelflife.data.loader.*;
+import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessException;
+import de.superdupermarkt.shelflife.data.view.AggregatingErrorReporter;
 import de.superdupermarkt.shelflife.data.view.ConsoleOutput;
 import de.superdupermarkt.shelflife.data.view.DataView;
+import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.engine.ChangeTrackingInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.ColumnarInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.ExpiryIndexInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.InPlaceInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.InventoryUpdater;
+import de.superdupermarkt.shelflife.engine.ParallelInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.SequentialInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.TypeBatchInventoryUpdater;
+import de.superdupermarkt.shelflife.modules.ModuleIndex;
+import de.superdupermarkt.shelflife.modules.ModuleReloader;
+import de.superdupermarkt.shelflife.modules.ModuleWatcher;
+import de.superdupermarkt.shelflife.server.InventoryServer;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.net.InetSocketAddress;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -19,7 +32,8 @@ import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Properties;
-import java.util.stream.Stream;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 public class Main {
     public static void main(String[] args) throws IOException {
@@ -55,46 +69,89 @@ public class Main {
         //Initialize DataView early to use it for error output
         //This could also be configurable via commandline
         DataView view = new ConsoleOutput();
-        ProductTypeLoaderRegistry ptRegistry = new ProductTypeLoaderRegistry();
-        ProductLoaderRegistry pRegistry = new ProductLoaderRegistry();
+
+        //Optionally only show a few warnings of each kind from the loaders, and count the rest (for feeds with lots of broken rows)
+        ErrorReporter loaderErrors = view;
+        int warningSamples = Integer.parseInt(settings.getProperty("warningSamples", "0"));
+        if(warningSamples > 0) {
+            AggregatingErrorReporter aggregatingErrors = new AggregatingErrorReporter(view, warningSamples, Long.parseLong(settings.getProperty("warningLimit", "1000")));
+            Runtime.getRuntime().addShutdownHook(new Thread(aggregatingErrors::close)); //reports the totals, no matter how the program ends
+            loaderErrors = aggregatingErrors;
+        }
+        ErrorReporter errorReporter = loaderErrors; //captured variables have to be final
 
         //Get the path of the module directory
         Path modulesPath = Path.of(settings.getProperty("moduleDirectory", "./modules/"));
 
-        try(URLClassLoader cl = createClassloaderForModules(modulesPath)) {
-            settings.forEach((key, value) -> {
-                String name = (String)key;
-                String val = (String)value;
-                try {
-                    if(name.startsWith("ProductLoader.")) {
-                        ProductLoaderRegistry.LoaderFactory factory = ClassLoading.fromClassName(cl, val, ProductLoaderRegistry.LoaderFactory.class);
-                        pRegistry.registerLoaderFactory(name.replace("ProductLoader.", ""), factory);
-                    } else if(name.startsWith("ProductTypeLoader.")) {
-                        ProductTypeLoaderRegistry.LoaderFactory factory = ClassLoading.fromClassName(cl, val, ProductTypeLoaderRegistry.LoaderFactory.class);
-                        ptRegistry.registerLoaderFactory(name.replace("ProductTypeLoader.", ""), factory);
-                    }
-                } catch (ClassNotFoundException | NoSuchMethodException | InvocationTargetException |
-                         InstantiationException | IllegalAccessException ex) {
-                    view.error(ex);
-                }
-            });
+        ModuleReloader.Generation modules = resolveLoaders(ModuleWatcher.createClassLoader(modulesPath), settings, productTypeLoaderConfig, productLoaderConfig, view, errorReporter);
+        if(modules == null) {
+            System.exit(1);
+        }
 
-            //Now get the actual loaders, using the provided config strings
-            ProductTypeLoader productTypeLoader =  ptRegistry.fromConfigString(productTypeLoaderConfig, cl, view);
-            if(productTypeLoader == null) {
-                view.error(() -> "ProductTypeLoader not found: "+productTypeLoaderConfig);
+        //Optionally keep watching the module directory, so changed rules are applied without restarting (live mode)
+        boolean watchModules = Boolean.parseBoolean(settings.getProperty("watchModules", "false"));
+
+        //Optionally keep running and answer queries via HTTP instead of producing a single report (server mode)
+        int serverPort = Integer.parseInt(settings.getProperty("serverPort", "0"));
+        if(serverPort > 0) {
+            if(watchModules) {
+                view.error(() -> "watchModules cannot be combined with serverPort");
                 System.exit(1);
             }
+            startServer(modules, startDate, serverPort, settings, view);
+            return; //the server threads keep the program alive, the modules stay loaded until it is stopped
+        }
+
+        InventoryUpdater selectedUpdater = createInventoryUpdater(settings);
+        if(selectedUpdater == null) {
+            view.error(() -> "InventoryUpdater not found: "+settings.getProperty("inventoryUpdater"));
+            System.exit(1);
+        }
+
+        //Optionally only output the products which changed each day, instead of the whole inventory
+        boolean outputChangesOnly = Boolean.parseBoolean(settings.getProperty("outputChangesOnly", "false"));
+        if(outputChangesOnly && selectedUpdater instanceof ColumnarInventoryUpdater) {
+            view.error(() -> "outputChangesOnly cannot be combined with the Columnar InventoryUpdater");
+            System.exit(1);
+        }
+
+        //the updater is closed before the modules, since its threads might still run rules from them
+        try(Closeable moduleResources = watchModules
+                ? new ModuleWatcher(modulesPath, modules, classLoader -> resolveLoaders(classLoader, settings, productTypeLoaderConfig, productLoaderConfig, view, errorReporter), view)
+                : modules;
+            InventoryUpdater updater = outputChangesOnly ? new ChangeTrackingInventoryUpdater(selectedUpdater) : selectedUpdater) {
+
+            //Compose it all together via the Controller and run
+            ShelfController controller = new ShelfController(modules.productTypeLoader(), modules.productLoader(), view, updater);
+            if(moduleResources instanceof ModuleWatcher watcher) {
+                //The time to wait between two days in live mode, in milliseconds
+                controller.enableLiveMode(watcher, Long.parseLong(settings.getProperty("dayDelay", "0")));
+            }
 
-            ProductLoader productLoader = pRegistry.fromConfigString(productLoaderConfig, view);
-            if(productLoader == null) {
-                view.error(() -> "ProductLoader not found: "+productLoaderConfig);
+            //Optionally only keep a batch of n products in memory at the same time, for inventories larger than the heap
+            int batchSize = Integer.parseInt(settings.getProperty("batchSize", "0"));
+            if(batchSize > 0 && watchModules) {
+                view.error(() -> "watchModules cannot be combined with batchSize");
                 System.exit(1);
             }
 
-            //Compose it all together via the Controller and run
-            ShelfController controller = new ShelfController(productTypeLoader, productLoader, view);
-            controller.execute(startDate, endDate);
+            //Optionally only report every n-th day (e.g. 7 for weekly reports), the days in between are skipped
+            int reportInterval = Integer.parseInt(settings.getProperty("reportInterval", "1"));
+            if(batchSize > 0) {
+                SortedSet<LocalDate> reportDays = new TreeSet<>();
+                for(LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(Math.max(1, reportInterval))) {
+                    reportDays.add(day);
+                }
+                controller.executeBatched(startDate, reportDays, batchSize);
+            } else if(reportInterval > 1) {
+                SortedSet<LocalDate> reportDays = new TreeSet<>();
+                for(LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(reportInterval)) {
+                    reportDays.add(day);
+                }
+                controller.execute(startDate, reportDays);
+            } else {
+                controller.execute(startDate, endDate);
+            }
         } catch (Exception ex) {
             view.error(ex);
             throw ex;
@@ -102,27 +159,107 @@ public class Main {
     }
 
     /**
-     * create a classloader which can be used to load additional .class files dynamically at runtime, providing a mechanism to add productTypes and loaders even while the program is running
+     * Selects how the inventory is updated each day, @see InventoryUpdater.
+     * The result is identical for all of them, they only differ in speed and memory use.
      *
-     * This could also be achieved by providing the module folder via classpath, but it's tricky to unload classes in that case which prevents reloads if those files are updated (classes are only garbage collected when their classloader is gcd)
-     * this is potentially unsafe, because anyone with access to the module folder can add arbitrary code. In practice that rarely matters, since access to this folder implies access to the actual jar file in most cases
-     * Plus, it is a nice showcase for a test project like this
+     * @return The configured InventoryUpdater, or null if the name is unknown
      */
-    private static URLClassLoader createClassloaderForModules(Path moduleDir) throws IOException {
-        URL[] moduleJars;
-        try(Stream<Path> paths = Files.list(moduleDir)) {
-            moduleJars = paths
-                    .filter(path -> path.toString().endsWith(".jar"))
-                    .map(path -> {
-                        try {
-                            return path.toUri().toURL();
-                        } catch (MalformedURLException e) {
-                            throw new RuntimeException(e);
-                        }
-                    })
-                    .toArray(URL[]::new);
+    private static InventoryUpdater createInventoryUpdater(Properties settings) {
+        //The number of threads used by the parallel updater, 0 uses all available cores
+        int parallelism = Integer.parseInt(settings.getProperty("parallelism", "0"));
+        if(parallelism == 0) { parallelism = Runtime.getRuntime().availableProcessors(); }
+
+        return switch (settings.getProperty("inventoryUpdater", "Sequential")) {
+            case "Sequential" -> new SequentialInventoryUpdater();
+            case "InPlace" -> new InPlaceInventoryUpdater();
+            case "Parallel" -> new ParallelInventoryUpdater(parallelism);
+            case "Columnar" -> new ColumnarInventoryUpdater();
+            case "TypeBatch" -> new TypeBatchInventoryUpdater();
+            case "ExpiryIndex" -> new ExpiryIndexInventoryUpdater();
+            default -> null;
+        };
+    }
+
+    /**
+     * Loads the inventory once and starts answering queries, @see InventoryServer.
+     * The server is stopped via shutdown hook, e.g. on Ctrl+C.
+     */
+    private static void startServer(ModuleReloader.Generation modules, LocalDate startDate, int port, Properties settings, DataView view) throws IOException {
+        //The number of requests processed concurrently, 0 uses all available cores
+        int threads = Integer.parseInt(settings.getProperty("serverThreads", "0"));
+        if(threads == 0) { threads = Runtime.getRuntime().availableProcessors(); }
+
+        InventoryServer server;
+        try {
+            server = new InventoryServer(modules.productTypeLoader(), modules.productLoader(), view, startDate, new InetSocketAddress(port), threads);
+        } catch (DataLoaderAccessException ex) {
+            view.error(ex);
+            modules.close();
+            System.exit(1);
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                modules.close();
+            } catch (IOException ex) {
+                view.warning(ex);
+            }
+        }));
+
+        server.start();
+        System.out.println("Server läuft auf Port "+ server.getPort());
+    }
+
+    /**
+     * Resolves the configured loaders from the given classloader, including LoaderFactories provided by modules.
+     * Used once on startup, and again for each reload in live mode.
+     *
+     * @param errorReporter Passed to the loaders for the problems they find in the data
+     * @return The resolved loaders, or null if one of them could not be found (which is reported to the view)
+     */
+    private static ModuleReloader.Generation resolveLoaders(URLClassLoader cl, Properties settings, String productTypeLoaderConfig, String productLoaderConfig, DataView view, ErrorReporter errorReporter) {
+        ProductTypeLoaderRegistry ptRegistry = new ProductTypeLoaderRegistry();
+        ProductLoaderRegistry pRegistry = new ProductLoaderRegistry();
+
+        //Modules declare their factories in an index, which is read without loading any classes (@see ModuleIndex)
+        //Entries in the settings work the same way and take precedence, e.g. to use a jar without an index
+        ModuleIndex index;
+        try {
+            index = ModuleIndex.read(cl);
+        } catch (IOException ex) {
+            view.error(ex);
+            return null;
+        }
+
+        //Only registered by name, each factory class is loaded the first time a config string refers to it
+        index.getProductLoaderFactories().forEach((name, className) -> pRegistry.registerLoaderFactory(name, cl, className));
+        index.getProductTypeLoaderFactories().forEach((name, className) -> ptRegistry.registerLoaderFactory(name, cl, className));
+
+        settings.forEach((key, value) -> {
+            String name = (String)key;
+            String val = (String)value;
+            if(name.startsWith("ProductLoader.")) {
+                pRegistry.registerLoaderFactory(name.replace("ProductLoader.", ""), cl, val);
+            } else if(name.startsWith("ProductTypeLoader.")) {
+                ptRegistry.registerLoaderFactory(name.replace("ProductTypeLoader.", ""), cl, val);
+            }
+        });
+
+        //Now get the actual loaders, using the provided config strings
+        ProductTypeLoader productTypeLoader =  ptRegistry.fromConfigString(productTypeLoaderConfig, cl, errorReporter);
+        if(productTypeLoader == null) {
+            view.error(() -> "ProductTypeLoader not found: "+productTypeLoaderConfig);
+            return null;
+        }
+
+        ProductLoader productLoader = pRegistry.fromConfigString(productLoaderConfig, errorReporter);
+        if(productLoader == null) {
+            view.error(() -> "ProductLoader not found: "+productLoaderConfig);
+            return null;
         }
 
-        return new URLClassLoader(moduleJars, ClassLoader.getSystemClassLoader());
+        return new ModuleReloader.Generation(cl, productTypeLoader, productLoader);
     }
 }
@@ -6,10 +6,22 @@ import de.superdupermarkt.shelflife.data.loader.ProductLoader;
 import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessException;
 import de.superdupermarkt.shelflife.data.loader.ProductTypeLoader;
 import de.superdupermarkt.shelflife.data.view.DataView;
+import de.superdupermarkt.shelflife.data.view.DeltaDataView;
+import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.engine.ChangeTrackingInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.InventoryUpdater;
+import de.superdupermarkt.shelflife.engine.SequentialInventoryUpdater;
+import de.superdupermarkt.shelflife.modules.ModuleReloader;
 
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
 
 /**
  * MVC (Model View Controller) architecture, with a simplified Model (List<Product>).
@@ -22,14 +34,38 @@ import java.util.Map;
  * The controller is NOT implemented via interface, since the actual run method could take different parameters depending on the controller logic.
  */
 public class ShelfController {
-    private final ProductTypeLoader productTypeLoader;
-    private final ProductLoader productLoader; //Strategy pattern in canonical form
+    private ProductTypeLoader productTypeLoader;
+    private ProductLoader productLoader; //Strategy pattern in canonical form. Both loaders are only replaced by module reloads
     private final DataView view;
+    private final InventoryUpdater updater;
+
+    private ModuleReloader moduleReloader = null; //only used in live mode
+    private long dayDelayMillis = 0;
 
     public ShelfController(ProductTypeLoader productTypeLoader, ProductLoader productLoader, DataView view) {
+        this(productTypeLoader, productLoader, view, new SequentialInventoryUpdater());
+    }
+
+    public ShelfController(ProductTypeLoader productTypeLoader, ProductLoader productLoader, DataView view, InventoryUpdater updater) {
         this.productTypeLoader = productTypeLoader;
         this.productLoader = productLoader;
         this.view = view;
+        this.updater = updater;
+    }
+
+    /**
+     * Enables the live mode, in which the simulation advances one day after the other in real time,
+     * e.g. to drive a display in the store, and newer versions of the modules are applied while it is running.
+     * <p>
+     * Reloads are only applied between two days. All products are then rebound to the new version of their ProductType (keeping their state),
+     * and the updater receives a fresh list, so updaters with internal state rebuild it for the new rules.
+     *
+     * @param moduleReloader Provides newer versions of the modules
+     * @param dayDelayMillis The time to wait before each day, 0 to run at full speed
+     */
+    public void enableLiveMode(ModuleReloader moduleReloader, long dayDelayMillis) {
+        this.moduleReloader = moduleReloader;
+        this.dayDelayMillis = dayDelayMillis;
     }
 
     /**
@@ -49,25 +85,41 @@ public class ShelfController {
             this.view.outputInventory(products);
 
             for(LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(1)) {
-                final LocalDate updateDay = day;
-                products = products.stream()
-                        .filter(product -> !product.shouldUnshelf()) //filters out all products which should be removed this day
-                        .peek(product -> product.update(updateDay)) //lambdas in intermediary operations should be side effect free. fine in this case, since no short-circuit optimization is possible
-                                                                            //for a "pure" solution, either a separate iteration with forEach or a map operation to create new Objects should be used
-                        .toList(); //typical functional style with immutable lists. A new list is allocated each time, but it's fine for small lists like these
-
-                /* the alternative without the list reallocation
-                for(Iterator<Product> iter = products.iterator(); iter.hasNext();) {
-                    Product product = iter.next();
-                    if(product.shouldUnshelf()) {
-                        iter.remove();
-                    } else {
-                        product.update(day);
-                    }
-                }
-                */
+                products = this.nextDay(products);
+                products = this.updater.update(products, day, 1);
+
+                this.outputDay(day, products);
+            }
+
+            this.view.done();
+        } catch (DataLoaderAccessException ex) {
+            this.view.error(ex);
+        }
+    }
+
+    /**
+     * Variant of execute which only produces results for the requested days instead of every single day.
+     * <p>
+     * The days in between are skipped via multi day updates, which is much cheaper for rules with a closed form (@see ProductRule).
+     * The results for each requested day are identical to those of the daily loop.
+     *
+     * @param startDate Initial Date, the inventory will be shown for this day.
+     * @param reportDays The days to produce a result for. Days before the startDate are ignored.
+     */
+    public void execute(LocalDate startDate, SortedSet<LocalDate> reportDays) {
+        try {
+            Map<String, ProductType> productTypes = this.productTypeLoader.fetchProductTypes();
+            List<Product> products = this.productLoader.fetchProducts(startDate, productTypes);
 
-                this.view.outputDay(day, products);
+            this.view.outputInventory(products);
+
+            LocalDate lastDay = startDate.minusDays(1); //the daily loop already updates on the startDate
+            for(LocalDate day : reportDays.tailSet(startDate)) {
+                products = this.nextDay(products);
+                products = this.updater.update(products, day, (int)ChronoUnit.DAYS.between(lastDay, day));
+
+                this.outputDay(day, products);
+                lastDay = day;
             }
 
             this.view.done();
@@ -75,4 +127,132 @@ public class ShelfController {
             this.view.error(ex);
         }
     }
+
+    /**
+     * Variant of execute for inventories which do not fit into memory as a whole.
+     * <p>
+     * The products are loaded in batches (@see ProductLoader#streamProducts), and each batch is simulated for all requested days
+     * and passed to the view before the next one is loaded. Products do not interact with each other, so each product ends up
+     * with exactly the same results as in the other variants, only the output is grouped by batch:
+     * the view receives the inventory and all days of the first batch, then the inventory and all days of the second batch and so on.
+     * <p>
+     * Live mode is not supported here, since the batches of one run would end up with different versions of the rules.
+     *
+     * @param startDate Initial Date, the inventory will be shown for this day.
+     * @param reportDays The days to produce a result for. Days before the startDate are ignored.
+     * @param batchSize The maximum number of products in memory at the same time
+     */
+    public void executeBatched(LocalDate startDate, SortedSet<LocalDate> reportDays, int batchSize) {
+        try {
+            Map<String, ProductType> productTypes = this.productTypeLoader.fetchProductTypes();
+
+            this.productLoader.streamProducts(startDate, productTypes, batchSize, batch -> {
+                this.view.outputInventory(batch);
+
+                List<Product> products = batch;
+                LocalDate lastDay = startDate.minusDays(1); //the daily loop already updates on the startDate
+                for(LocalDate day : reportDays.tailSet(startDate)) {
+                    products = this.updater.update(products, day, (int)ChronoUnit.DAYS.between(lastDay, day));
+
+                    this.outputDay(day, products);
+                    lastDay = day;
+                }
+            }); //the batch is no longer referenced afterwards, so it can be garbage collected while the next one is loaded
+
+            this.view.done();
+        } catch (DataLoaderAccessException ex) {
+            this.view.error(ex);
+        }
+    }
+
+    /**
+     * Waits for the next day and applies module reloads in live mode, does nothing otherwise.
+     *
+     * @return The products to pass to the updater
+     */
+    private List<Product> nextDay(List<Product> products) {
+        if(this.dayDelayMillis > 0) {
+            try {
+                Thread.sleep(this.dayDelayMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                this.dayDelayMillis = 0; //asked to finish, so the remaining days are calculated without waiting
+            }
+        }
+
+        if(this.moduleReloader == null) { return products; }
+
+        ModuleReloader.Generation generation = this.moduleReloader.poll();
+        return generation == null ? products : this.reloadModules(products, generation);
+    }
+
+    /**
+     * Swaps in the loaders and ProductTypes of a new module generation. Products whose type no longer exists keep their old rule.
+     * If the new types cannot be loaded, the whole generation is rejected and everything stays as it was.
+     */
+    private List<Product> reloadModules(List<Product> products, ModuleReloader.Generation generation) {
+        Map<String, ProductType> productTypes;
+        try {
+            productTypes = generation.productTypeLoader().fetchProductTypes();
+        } catch (DataLoaderAccessException ex) {
+            this.view.error(ex);
+            this.moduleReloader.discard(generation);
+            return products;
+        }
+
+        Set<String> missingTypes = new LinkedHashSet<>();
+        List<Product> reboundProducts = new ArrayList<>(products.size());
+        for(Product product : products) {
+            ProductType type = productTypes.get(product.getType().getName());
+            if(type == null) {
+                missingTypes.add(product.getType().getName());
+            } else {
+                product.rebindType(type);
+            }
+            reboundProducts.add(product);
+        }
+
+        for(String missingType : missingTypes) {
+            this.view.warning(new ProductTypeRemovedError(missingType));
+        }
+
+        this.productTypeLoader = generation.productTypeLoader();
+        this.productLoader = generation.productLoader();
+        this.moduleReloader.activate(generation, missingTypes.isEmpty());
+
+        return reboundProducts; //a new list, so updaters with internal state start over with the new rules
+    }
+
+    /**
+     * If the updater tracks changes and the view can display them, only the changes are passed on instead of the whole inventory.
+     */
+    private void outputDay(LocalDate day, List<Product> products) {
+        if(this.updater instanceof ChangeTrackingInventoryUpdater tracker && this.view instanceof DeltaDataView deltaView) {
+            deltaView.outputChanges(day, tracker.getChanged(), tracker.getRemoved());
+        } else {
+            this.view.outputDay(day, products);
+        }
+    }
+
+    /**
+     * A module reload no longer contains a ProductType which is still in use. Products of this type keep using the old rule.
+     */
+    public static class ProductTypeRemovedError implements ErrorReporter.Error {
+        private final String productTypeName;
+
+        public ProductTypeRemovedError(String productTypeName) {
+            this.productTypeName = productTypeName;
+        }
+
+        @Override
+        public String getMessage() {
+            return "ProductType "+ this.productTypeName +" is missing after reloading the modules, its products keep the old rule.";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || getClass() != o.getClass()) return false;
+            return Objects.equals(productTypeName, ((ProductTypeRemovedError) o).productTypeName);
+        }
+    }
 }
@@ -0,0 +1,241 @@
+package de.superdupermarkt.shelflife.data;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Alternative model for very large inventories, storing all products in primitive arrays (one array per property)
+ * instead of one object per product. Also known as "structure of arrays".
+ * <p>
+ * Each Product object carries an object header, references to its type, name and dueDate, and a separate LocalDate object.
+ * Here the dueDate is stored as an epoch day and the type as an index into a small table of distinct ProductTypes,
+ * which cuts the memory per product considerably. The daily loop also walks linearly through a few arrays instead of
+ * following a pointer for each product, which is much friendlier to the cpu cache.
+ * <p>
+ * The rules still work on Products, so the update loop reuses a single Row object as a cursor (flyweight pattern)
+ * which redirects all getters and setters to the arrays at its current position.
+ * <p>
+ * To the outside this class is a List of Products (adapter pattern), so existing DataViews work unchanged.
+ * Only appending is supported, and the Products returned by get are views of the current row which are only valid until the next update.
+ */
+public class ColumnarInventory extends AbstractList<Product> {
+    private final Map<ProductType, Integer> typeIds = new HashMap<>();
+    private ProductType[] types = new ProductType[8];
+
+    private int[] typeId;
+    private String[] name;
+    private double[] basePrice;
+    private int[] dueDate; //epoch day
+    private int[] quality;
+    private double[] price;
+    private boolean[] unshelf;
+    private int[] quantity;
+
+    private int size = 0;
+
+    public ColumnarInventory(int capacity) {
+        this.typeId = new int[capacity];
+        this.name = new String[capacity];
+        this.basePrice = new double[capacity];
+        this.dueDate = new int[capacity];
+        this.quality = new int[capacity];
+        this.price = new double[capacity];
+        this.unshelf = new boolean[capacity];
+        this.quantity = new int[capacity];
+    }
+
+    /**
+     * Copies the given products into a new inventory, keeping their order.
+     *
+     * @throws ArithmeticException If a due date does not fit the int column, @see #add(Product)
+     */
+    public static ColumnarInventory of(List<Product> products) {
+        ColumnarInventory inventory = new ColumnarInventory(products.size());
+        for(Product product : products) {
+            inventory.add(product);
+        }
+
+        return inventory;
+    }
+
+    /**
+     * Appends a copy of the current state of the given product.
+     *
+     * @throws ArithmeticException If the due date lies more than about 5.8 million years away from 1970 and does not fit the int column
+     */
+    @Override
+    public boolean add(Product product) {
+        if(this.size == this.quality.length) {
+            this.grow();
+        }
+
+        int row = this.size++;
+        this.typeId[row] = this.typeIdOf(product.getType());
+        this.name[row] = product.getName();
+        this.basePrice[row] = product.getBasePrice();
+        this.dueDate[row] = Math.toIntExact(product.getDueEpochDay()); //LocalDate reaches further than an int, which must not wrap silently
+        this.quality[row] = product.getQuality();
+        this.price[row] = product.getPrice();
+        this.unshelf[row] = product.shouldUnshelf();
+        this.quantity[row] = product.getQuantity();
+        return true;
+    }
+
+    @Override
+    public Product get(int index) {
+        if(index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index "+ index +" out of bounds for length "+ this.size);
+        }
+
+        return new Row(index);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Updates all products in place and removes those which were taken off the shelf.
+     * Remaining rows are moved to the front (compaction), so their order stays the same.
+     * @see Product#update(LocalDate, int)
+     *
+     * @param day The day for which the update occurs
+     * @param passedDays The amount of days since the last update, at least 1
+     */
+    public void update(LocalDate day, int passedDays) {
+        Row cursor = new Row(0);
+        int remaining = 0;
+        for(int row = 0; row < this.size; row++) {
+            cursor.index = row;
+            if(cursor.update(day, passedDays)) {
+                this.move(row, remaining++);
+            }
+        }
+
+        Arrays.fill(this.name, remaining, this.size, null); //allows the removed names to be garbage collected
+        this.size = remaining;
+        this.modCount++;
+    }
+
+    private void move(int from, int to) {
+        if(from == to) { return; }
+
+        this.typeId[to] = this.typeId[from];
+        this.name[to] = this.name[from];
+        this.basePrice[to] = this.basePrice[from];
+        this.dueDate[to] = this.dueDate[from];
+        this.quality[to] = this.quality[from];
+        this.price[to] = this.price[from];
+        this.unshelf[to] = this.unshelf[from];
+        this.quantity[to] = this.quantity[from];
+    }
+
+    private int typeIdOf(ProductType type) {
+        return this.typeIds.computeIfAbsent(type, newType -> {
+            int id = this.typeIds.size();
+            if(id == this.types.length) {
+                this.types = Arrays.copyOf(this.types, id * 2);
+            }
+            this.types[id] = newType;
+            return id;
+        });
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, this.quality.length + (this.quality.length >> 1));
+        this.typeId = Arrays.copyOf(this.typeId, capacity);
+        this.name = Arrays.copyOf(this.name, capacity);
+        this.basePrice = Arrays.copyOf(this.basePrice, capacity);
+        this.dueDate = Arrays.copyOf(this.dueDate, capacity);
+        this.quality = Arrays.copyOf(this.quality, capacity);
+        this.price = Arrays.copyOf(this.price, capacity);
+        this.unshelf = Arrays.copyOf(this.unshelf, capacity);
+        this.quantity = Arrays.copyOf(this.quantity, capacity);
+    }
+
+    /**
+     * A Product whose properties are stored in the arrays of the enclosing inventory at the given index.
+     */
+    private class Row extends Product {
+        private int index;
+
+        Row(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public ProductType getType() {
+            return types[typeId[this.index]];
+        }
+
+        @Override
+        public String getName() {
+            return name[this.index];
+        }
+
+        @Override
+        public int getQuality() {
+            return quality[this.index];
+        }
+
+        @Override
+        public double getBasePrice() {
+            return basePrice[this.index];
+        }
+
+        @Override
+        public LocalDate getDueDate() {
+            return LocalDate.ofEpochDay(dueDate[this.index]);
+        }
+
+        @Override
+        public long getDueEpochDay() {
+            return dueDate[this.index];
+        }
+
+        @Override
+        public double getPrice() {
+            return price[this.index];
+        }
+
+        @Override
+        public boolean shouldUnshelf() {
+            return unshelf[this.index];
+        }
+
+        @Override
+        public int getQuantity() {
+            return quantity[this.index];
+        }
+
+        @Override
+        protected void setQuality(int quality) {
+            ColumnarInventory.this.quality[this.index] = quality;
+        }
+
+        @Override
+        protected void setPrice(double price) {
+            ColumnarInventory.this.price[this.index] = price;
+        }
+
+        @Override
+        protected void setUnshelf(boolean unshelf) {
+            ColumnarInventory.this.unshelf[this.index] = unshelf;
+        }
+
+        @Override
+        protected void setType(ProductType type) {
+            typeId[this.index] = typeIdOf(type);
+        }
+
+        @Override
+        protected void setQuantity(int quantity) {
+            ColumnarInventory.this.quantity[this.index] = quantity;
+        }
+    }
+}
@@ -17,27 +17,69 @@ import java.util.Objects;
  * would result in a lot more allocations, so ultimately the mutable way is more flexible.
  */
 public class Product {
-    private final ProductType type; //strategy pattern, attached to an abstract class. @see ProductType
+    private ProductType type; //strategy pattern, attached to an abstract class. @see ProductType. Only replaced during hot reloads
 
     private final String name;
     private final double basePrice;
     private final LocalDate dueDate;
+    private final long dueEpochDay; //cached for rules working on epoch days, @see ProductRule#supportsEpochDays
 
     private int quality;
     private double price;
     private boolean unshelf;
 
+    private int quantity; //number of identical units represented by this object, @see ProductLoader#aggregate
+
     public Product(ProductType type, String name, int quality, double basePrice, LocalDate dueDate, LocalDate initialDate) {
+        this(type, name, quality, basePrice, dueDate, initialDate, 1);
+    }
+
+    public Product(ProductType type, String name, int quality, double basePrice, LocalDate dueDate, LocalDate initialDate, int quantity) {
         this.type = type;
         this.name = name;
         this.basePrice = basePrice;
         this.dueDate = dueDate;
+        this.dueEpochDay = dueDate.toEpochDay();
 
         this.quality = quality;
+        this.quantity = quantity;
         this.price = type.calculatePrice(this, initialDate);
         this.unshelf = this.type.shouldUnshelf(this, initialDate);
     }
 
+    /**
+     * Used by subclasses which store their state elsewhere and override all getters and setters, @see ColumnarInventory.
+     * No rule is applied here, since there is no state yet.
+     */
+    protected Product() {
+        this.type = null;
+        this.name = null;
+        this.basePrice = 0;
+        this.dueDate = null;
+        this.dueEpochDay = 0;
+    }
+
+    /**
+     * Creates an independent copy with the same state, e.g. to calculate several dates from the same inventory.
+     * Reads everything via getters, so the copy of a product with a different storage is a regular Product.
+     */
+    public Product copy() {
+        return new Product(this);
+    }
+
+    private Product(Product other) {
+        this.type = other.getType();
+        this.name = other.getName();
+        this.basePrice = other.getBasePrice();
+        this.dueDate = other.getDueDate();
+        this.dueEpochDay = other.getDueEpochDay();
+
+        this.quality = other.getQuality();
+        this.price = other.getPrice();
+        this.unshelf = other.shouldUnshelf();
+        this.quantity = other.getQuantity();
+    }
+
     //Getters are not strictly necessary for public final fields,
     //but they provide a possible extension point if the values or the structure change in the future
 
@@ -61,6 +103,13 @@ public class Product {
         return dueDate;
     }
 
+    /**
+     * The dueDate as days since 1970-01-01 (@see LocalDate#toEpochDay), which lets rules compare dates without creating LocalDate objects.
+     */
+    public long getDueEpochDay() {
+        return dueEpochDay;
+    }
+
     public double getPrice() {
         return this.price;
     }
@@ -69,37 +118,153 @@ public class Product {
         return unshelf;
     }
 
-    //no setter, properties should only be modified via rules
+    /**
+     * Identical units share one object, so the rules only have to be applied once for all of them.
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    //no public setter, properties should only be modified via rules
+    //the protected setters only exist so subclasses can redirect where the state is stored
+
+    protected void setQuality(int quality) {
+        this.quality = quality;
+    }
+
+    protected void setPrice(double price) {
+        this.price = price;
+    }
+
+    protected void setUnshelf(boolean unshelf) {
+        this.unshelf = unshelf;
+    }
+
+    protected void setType(ProductType type) {
+        this.type = type;
+    }
+
+    protected void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    /**
+     * Adds further identical units to this product.
+     * Only meant for loaders merging identical rows, the rules never change the quantity.
+     */
+    public void addQuantity(int quantity) {
+        this.setQuantity(this.getQuantity() + quantity);
+    }
+
+    /**
+     * Replaces the rule of this product with a newer version of the same ProductType, keeping the current state.
+     * Only meant for reloading modules at runtime (@see de.superdupermarkt.shelflife.modules.ModuleReloader), never during an update.
+     */
+    public void rebindType(ProductType type) {
+        this.setType(type);
+    }
+
+    /**
+     * Stores the results of a rule evaluation done outside of update.
+     * Only meant for batch implementations of rules (@see ProductRule#update(Product[], int, LocalDate, int, boolean[])),
+     * everything else should use one of the update methods.
+     */
+    public void applyRuleResult(int quality, double price, boolean unshelf) {
+        this.setQuality(quality);
+        this.setPrice(price);
+        this.setUnshelf(unshelf);
+    }
 
     public void update(LocalDate day) {
-        this.quality = this.type.calculateQuality(this, day);
-        this.price = this.type.calculatePrice(this, day);
-        this.unshelf = this.type.shouldUnshelf(this, day);
+        ProductType type = this.getType();
+        if(type.supportsEpochDays()) {
+            this.update(day.toEpochDay());
+            return;
+        }
+
+        this.setQuality(type.calculateQuality(this, day));
+        this.setPrice(type.calculatePrice(this, day));
+        this.setUnshelf(type.shouldUnshelf(this, day));
+    }
+
+    /**
+     * Variant of the daily update with the day given as epoch day (@see LocalDate#toEpochDay).
+     * Only called by update(LocalDate) for rules which support epoch days, so no LocalDate is created per product and day.
+     */
+    private void update(long day) {
+        ProductType type = this.getType();
+        this.setQuality(type.calculateQuality(this, day));
+        this.setPrice(type.calculatePrice(this, day));
+        this.setUnshelf(type.shouldUnshelf(this, day));
+    }
+
+    /**
+     * Updates the product as if the daily update was called for each of the passed days, the last one being the given day.
+     * <p>
+     * Products flagged for removal are taken off the shelf the next day and receive no further updates,
+     * the return value signals if that happened at any point during the passed days.
+     * In that case the state of this object is no longer meaningful and the product should be discarded.
+     * <p>
+     * Rules without a closed form for multiple days are simply applied once per day.
+     *
+     * @param day The last of the passed days
+     * @param passedDays The amount of days since the last update, at least 1
+     * @return true if the product is still on the shelf on the given day, false if it was removed before
+     */
+    public boolean update(LocalDate day, int passedDays) {
+        if(passedDays == 1) { //the common case, handled separately since the loop below allocates a new LocalDate per iteration
+            if(this.shouldUnshelf()) { return false; }
+            this.update(day);
+            return true;
+        }
+
+        ProductType type = this.getType();
+        if(!type.supportsMultiDayUpdate()) {
+            for(LocalDate updateDay = day.minusDays(passedDays - 1); !updateDay.isAfter(day); updateDay = updateDay.plusDays(1)) {
+                if(this.shouldUnshelf()) { return false; }
+                this.update(updateDay);
+            }
+            return true;
+        }
+
+        if(this.shouldUnshelf() || type.isUnshelvedBefore(this, day, passedDays)) {
+            return false;
+        }
+
+        this.setQuality(type.calculateQuality(this, day, passedDays));
+        this.setPrice(type.calculatePrice(this, day));
+        this.setUnshelf(type.shouldUnshelf(this, day));
+        return true;
     }
 
+    /**
+     * Compares via getters instead of fields and accepts any Product subclass,
+     * so products with a different storage (@see ColumnarInventory) are equal to regular ones with the same values.
+     */
     @Override
     public boolean equals(Object o) {
-        if (o == null || getClass() != o.getClass()) return false;
-        Product product = (Product) o;
-        return Double.compare(basePrice, product.basePrice) == 0
-                && quality == product.quality
-                && Double.compare(price, product.price) == 0
-                && unshelf == product.unshelf
-                && Objects.equals(type, product.type)
-                && Objects.equals(name, product.name)
-                && Objects.equals(dueDate, product.dueDate);
+        if (!(o instanceof Product product)) return false;
+        return Double.compare(getBasePrice(), product.getBasePrice()) == 0
+                && getQuality() == product.getQuality()
+                && Double.compare(getPrice(), product.getPrice()) == 0
+                && shouldUnshelf() == product.shouldUnshelf()
+                && getQuantity() == product.getQuantity()
+                && Objects.equals(getType(), product.getType())
+                && Objects.equals(getName(), product.getName())
+                && Objects.equals(getDueDate(), product.getDueDate());
     }
 
     @Override
     public String toString() {
         return "Product{" +
-                "type=" + type +
-                ", name='" + name + '\'' +
-                ", basePrice=" + basePrice +
-                ", dueDate=" + dueDate +
-                ", quality=" + quality +
-                ", price=" + price +
-                ", unshelf=" + unshelf +
+                "type=" + getType() +
+                ", name='" + getName() + '\'' +
+                ", basePrice=" + getBasePrice() +
+                ", dueDate=" + getDueDate() +
+                ", quality=" + getQuality() +
+                ", price=" + getPrice() +
+                ", unshelf=" + shouldUnshelf() +
+                ", quantity=" + getQuantity() +
                 '}';
     }
 }
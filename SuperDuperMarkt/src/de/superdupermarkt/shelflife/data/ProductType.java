@@ -1,10 +1,8 @@
 package de.superdupermarkt.shelflife.data;
 
-import de.superdupermarkt.shelflife.data.loader.exception.ProductTypeNotFoundException;
-import de.superdupermarkt.shelflife.data.loader.exception.ProductTypeNotValidException;
 import de.superdupermarkt.shelflife.rules.ProductRule;
 
-import java.lang.reflect.InvocationTargetException;
+import java.util.Objects;
 
 /***
  * Strategy pattern combined with an abstract base class (which could be considered a flyweight pattern). Advantages:
@@ -25,31 +23,6 @@ public abstract class ProductType implements ProductRule {
 
     //no setter, object is immutable after construction
 
-    /**
-     * Creates an instance of a ProductType from the given className using the provided classLoader.
-     * <p>
-     * This enables dynamically adding classes at runtime without having to provide a newly compiled version of the base program.
-     *
-     * @param classLoader
-     * @param className
-     * @param productTypeName
-     * @return
-     * @throws ProductTypeNotValidException
-     */
-    public static ProductType fromClassName(ClassLoader classLoader, String className, String productTypeName) throws ProductTypeNotValidException {
-        try {
-            Class<?> clazz = classLoader.loadClass(ProductRule.class.getName().replaceFirst("(?<=\\.)[^.]+$", className));
-            if (ProductType.class.isAssignableFrom(clazz)) {
-                return (ProductType) clazz.getDeclaredConstructor(String.class).newInstance(productTypeName);
-            } else {
-                throw new ProductTypeNotValidException(className, productTypeName);
-            }
-        } catch (ClassNotFoundException | InvocationTargetException | InstantiationException |
-                 IllegalAccessException | NoSuchMethodException ex) {
-            throw new ProductTypeNotFoundException(className, productTypeName, ex);
-        }
-    }
-
     /**
      * This is not strictly necessary, but simplifies tests and provides proper equality semantics
      */
@@ -60,6 +33,14 @@ public abstract class ProductType implements ProductRule {
                 && ((ProductType) obj).getName().equals(this.getName());
     }
 
+    /**
+     * Consistent with equals, so ProductTypes can be used as part of hash keys, @see ProductLoader#aggregate
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.getClass(), this.getName());
+    }
+
     @Override
     public String toString() {
         return "ProductType{" +
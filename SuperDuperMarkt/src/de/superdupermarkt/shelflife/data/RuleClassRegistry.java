@@ -0,0 +1,101 @@
+package de.superdupermarkt.shelflife.data;
+
+import de.superdupermarkt.shelflife.data.loader.exception.ProductTypeNotFoundException;
+import de.superdupermarkt.shelflife.data.loader.exception.ProductTypeNotValidException;
+import de.superdupermarkt.shelflife.modules.ModuleIndex;
+import de.superdupermarkt.shelflife.rules.ProductRule;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates ProductTypes from the name of their rule class, resolving each class once and caching a constructor for it.
+ * <p>
+ * This enables dynamically adding classes at runtime without having to provide a newly compiled version of the base program.
+ * Each ProductTypeLoader owns one registry for its ClassLoader (@see ProductTypeLoader), which all types it loads share.
+ * <p>
+ * Large type catalogs contain many ProductTypes sharing only a few rule classes. Looking up the class and its constructor
+ * via reflection for every single type is wasteful, so the first lookup stores a MethodHandle for the constructor,
+ * which every further type with the same class reuses. Classes which cannot be used are cached as well,
+ * so a broken class name is only looked up once, but still reported for every type using it.
+ * <p>
+ * Modules can declare their rule classes in their index (@see ModuleIndex), which allows rules outside of the package of ProductRule.
+ * All other names are looked up in that package.
+ * <p>
+ * The cache belongs to exactly one ClassLoader, since the same name can refer to different classes in different ClassLoaders.
+ * Not thread safe, a registry is meant to be used by one loader at a time.
+ */
+public class RuleClassRegistry {
+    private static final String RULE_PACKAGE = ProductRule.class.getPackageName() + ".";
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(ProductType.class, String.class);
+
+    private final ClassLoader classLoader;
+    private final Map<String, RuleClass> ruleClasses = new HashMap<>();
+    private Map<String, String> indexedClasses = null; //only read on the first lookup, not when the registry is created
+
+    public RuleClassRegistry(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Creates a new ProductType with the given name, using the rule class with the given unqualified name.
+     *
+     * @param className The unqualified name of the rule class, which has to reside in the package of ProductRule
+     * @param productTypeName The name of the new ProductType
+     * @return A new instance of the rule class
+     * @throws ProductTypeNotValidException If the class is not a ProductType, or ProductTypeNotFoundException if it cannot be found or used
+     */
+    public ProductType create(String className, String productTypeName) throws ProductTypeNotValidException {
+        RuleClass ruleClass = this.ruleClasses.computeIfAbsent(className, this::resolve);
+        if(ruleClass.constructor == null) {
+            throw ruleClass.notValid
+                ? new ProductTypeNotValidException(className, productTypeName)
+                : new ProductTypeNotFoundException(className, productTypeName, ruleClass.failure);
+        }
+
+        try {
+            return (ProductType) ruleClass.constructor.invokeExact(productTypeName);
+        } catch (Exception ex) {
+            throw new ProductTypeNotFoundException(className, productTypeName, ex);
+        } catch (Throwable ex) { //the constructor threw an Error, reported the same way reflection would
+            throw new ProductTypeNotFoundException(className, productTypeName, new InvocationTargetException(ex));
+        }
+    }
+
+    private RuleClass resolve(String className) {
+        try {
+            Class<?> clazz = this.classLoader.loadClass(this.indexedClasses().getOrDefault(className, RULE_PACKAGE + className));
+            if(!ProductType.class.isAssignableFrom(clazz)) {
+                return new RuleClass(null, null, true);
+            }
+
+            MethodHandle constructor = MethodHandles.publicLookup()
+                .findConstructor(clazz, MethodType.methodType(void.class, String.class))
+                .asType(CONSTRUCTOR_TYPE); //required for invokeExact, which is faster than the adapting invoke
+            return new RuleClass(constructor, null, false);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException ex) {
+            return new RuleClass(null, ex, false);
+        }
+    }
+
+    private Map<String, String> indexedClasses() {
+        if(this.indexedClasses == null) {
+            try {
+                this.indexedClasses = ModuleIndex.read(this.classLoader).getRuleClasses();
+            } catch (IOException ex) { //an unreadable index was already reported while resolving the loaders
+                this.indexedClasses = Map.of();
+            }
+        }
+        return this.indexedClasses;
+    }
+
+    /**
+     * Cached result of resolving one class name, either a constructor or the reason why there is none.
+     */
+    private record RuleClass(MethodHandle constructor, Exception failure, boolean notValid) {}
+}
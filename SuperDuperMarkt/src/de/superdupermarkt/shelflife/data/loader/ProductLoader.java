@@ -6,15 +6,18 @@ import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessExcept
 import de.superdupermarkt.shelflife.data.view.ErrorReporter;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Responsible for loading an actual List of Products from the datasource associated with the respective subclass.
  *
  * Abstract class instead of an interface to provide default handling of the required ErrorReporter.
  */
-public abstract class ProductLoader {
+public abstract class ProductLoader implements AutoCloseable {
     protected final ErrorReporter errorReporter;
 
     public ProductLoader(ErrorReporter errorReporter) {
@@ -32,4 +35,61 @@ public abstract class ProductLoader {
      * @throws DataLoaderAccessException
      */
     public abstract List<Product> fetchProducts(LocalDate startDate, Map<String, ProductType> productTypes) throws DataLoaderAccessException;
+
+    /**
+     * Streaming variant of fetchProducts, which passes the products on in batches instead of returning all of them at once.
+     * <p>
+     * Products do not interact with each other, so each batch can be simulated on its own and dropped afterwards (@see ShelfController#executeBatched).
+     * Memory use then depends on the batch size instead of the size of the inventory, which allows inventories larger than the heap.
+     * Identical products are only merged within a batch (@see aggregate).
+     * <p>
+     * The default implementation loads everything via fetchProducts and only splits the result,
+     * loaders for large data sources should override it to actually read one batch after another.
+     *
+     * @param batchSize The maximum number of products per batch
+     * @param consumer Receives the batches in load order, each batch is a new list
+     * @throws DataLoaderAccessException
+     */
+    public void streamProducts(LocalDate startDate, Map<String, ProductType> productTypes, int batchSize, Consumer<List<Product>> consumer) throws DataLoaderAccessException {
+        List<Product> products = this.fetchProducts(startDate, productTypes);
+        for(int from = 0; from < products.size(); from += batchSize) {
+            consumer.accept(new ArrayList<>(products.subList(from, Math.min(from + batchSize, products.size()))));
+        }
+    }
+
+    /**
+     * Releases resources kept between two loads, like pooled database connections.
+     * Called once the loader is no longer used, e.g. when its module generation is released (@see ModuleReloader.Generation#close).
+     * Most loaders only hold resources while loading, so the default implementation does nothing.
+     */
+    @Override
+    public void close() {}
+
+    /**
+     * Merges identical products (same type, name, quality, basePrice and dueDate) into one product with the summed quantity.
+     * <p>
+     * Real inventories often contain many identical units, which would otherwise all be updated and printed separately every day.
+     * Since the rules only depend on these properties, all units of a group always share the same state.
+     * The order of first occurrence is kept.
+     *
+     * @param products The freshly loaded products, all initialized with the same startDate
+     * @return The merged products, possibly the same list if nothing had to be merged
+     */
+    protected static List<Product> aggregate(List<Product> products) {
+        Map<AggregationKey, Product> groups = new LinkedHashMap<>(products.size() * 2);
+        for(Product product : products) {
+            Product group = groups.putIfAbsent(new AggregationKey(product), product);
+            if(group != null) {
+                group.addQuantity(product.getQuantity());
+            }
+        }
+
+        return groups.size() == products.size() ? products : new ArrayList<>(groups.values());
+    }
+
+    private record AggregationKey(ProductType type, String name, int quality, double basePrice, LocalDate dueDate) {
+        AggregationKey(Product product) {
+            this(product.getType(), product.getName(), product.getQuality(), product.getBasePrice(), product.getDueDate());
+        }
+    }
 }
@@ -5,19 +5,24 @@ import de.superdupermarkt.shelflife.data.ProductType;
 import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessException;
 import de.superdupermarkt.shelflife.data.view.ErrorReporter;
 import de.superdupermarkt.shelflife.helper.CSV;
+import de.superdupermarkt.shelflife.helper.CSVTokenizer;
+import de.superdupermarkt.shelflife.helper.StringInterner;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
 
 /**
  * Template Method pattern. Implements a shared algorithm, but individual steps can be overwritten by subclasses.
  * <p>
- * In this case it decouples acquiring the individual csv lines from the code processing them.
+ * In this case it decouples acquiring the csv data from the code processing it.
  * This could be achieved in various other ways for such a simple task, but this allows for subclasses to have their own properties (like a file reference).
  * <p>
  * A composable pattern like a handler or strategy would be more appropriate to enable mix and match of loading method
@@ -25,49 +30,108 @@ import java.util.stream.Stream;
  * But this would complicate configuration via commandline/properties even more, therefore this pattern was chosen.
  */
 public abstract class ProductLoaderCSV extends ProductLoader {
+    /**
+     * Slots of the StringInterner for product names, @see StringInterner. Catalogs often repeat a few hundred thousand distinct names
+     * across millions of rows, and a table of this size keeps most of them down to one String per load, instead of one per row.
+     * It takes a few MB while loading, which are freed together with the tokenizer afterwards.
+     */
+    public static final int NAME_INTERNER_CAPACITY = 1 << 19;
+
+    /**
+     * Slots of the StringInterner for type names, which only ever holds the few types, so resolving them never creates a String.
+     */
+    public static final int TYPE_INTERNER_CAPACITY = 256;
+
     public ProductLoaderCSV(ErrorReporter errorReporter) {
         super(errorReporter);
     }
 
     /**
-     * Provides a stream of individual lines of the actual CSV Data.
+     * Provides the raw bytes of the actual CSV Data (UTF-8).
      *
-     * @return A Stream of the individual lines of the loaded CSV.
+     * @return A stream of the loaded CSV, which is closed after loading.
      * @throws DataLoaderAccessException
      */
-    protected abstract Stream<String> loadLines() throws DataLoaderAccessException;
+    protected abstract InputStream openInput() throws DataLoaderAccessException;
 
     @Override
     public List<Product> fetchProducts(LocalDate startDate, final Map<String, ProductType> productTypes) throws DataLoaderAccessException {
-        try(Stream<String> lines = this.loadLines()) {
-            return CSV.fetchListFromCSV(lines, fields -> {
-                if(fields.length != 5) { //type, name, quality, basePrice, dueDate, quantity
-                    this.errorReporter.warning(new FieldLengthError(fields.length, String.join(";", fields)));
-                    return null;
-                } else {
-                    ProductType type = productTypes.get(fields[0]);
-                    if(type == null) {
-                        errorReporter.warning(new ProductTypeNotFoundError(fields[0], String.join(";", fields)));
-                        return null; //continue operation but ignore this row
-                    }
-
-                    try {
-                        return new Product(
-                                type,
-                                fields[1],
-                                Integer.parseInt(fields[2]),
-                                Double.parseDouble(fields[3]),
-                                LocalDate.parse(fields[4], DateTimeFormatter.ISO_DATE),
-                                startDate);
-                    } catch (NumberFormatException ex) {
-                        errorReporter.warning(new NotAValidNumberError(String.join(";", fields)));
-                    } catch (DateTimeParseException ex) {
-                        errorReporter.warning(new NotAValidDateError(String.join(";", fields)));
-                    }
-
-                    return null; //continue operation but ignore this row
+        try(InputStream input = this.openInput()) {
+            CSVTokenizer tokenizer = new CSVTokenizer(input, new StringInterner(NAME_INTERNER_CAPACITY));
+            StringInterner typeNames = new StringInterner(TYPE_INTERNER_CAPACITY);
+            return aggregate(CSV.fetchListFromCSV(tokenizer, row -> this.parseProduct(row, typeNames, startDate, productTypes, this.errorReporter)));
+        } catch (IOException ex) {
+            throw new DataLoaderAccessException("Could not load Product CSV: "+ex.getMessage());
+        }
+    }
+
+    /**
+     * Only ever keeps one batch of products in memory, the CSV data is read as the batches are consumed.
+     */
+    @Override
+    public void streamProducts(LocalDate startDate, Map<String, ProductType> productTypes, int batchSize, Consumer<List<Product>> consumer) throws DataLoaderAccessException {
+        try(InputStream input = this.openInput()) {
+            CSVTokenizer tokenizer = new CSVTokenizer(input, new StringInterner(NAME_INTERNER_CAPACITY));
+            StringInterner typeNames = new StringInterner(TYPE_INTERNER_CAPACITY);
+            tokenizer.nextLine(); //skip header
+
+            List<Product> batch = new ArrayList<>(batchSize);
+            while(tokenizer.nextLine()) {
+                Product product = this.parseProduct(tokenizer, typeNames, startDate, productTypes, this.errorReporter);
+                if(product != null) { batch.add(product); }
+
+                if(batch.size() == batchSize) {
+                    consumer.accept(aggregate(batch));
+                    batch = new ArrayList<>(batchSize);
                 }
-            });
+            }
+
+            if(!batch.isEmpty()) { consumer.accept(aggregate(batch)); }
+        } catch (IOException ex) {
+            throw new DataLoaderAccessException("Could not load Product CSV: "+ex.getMessage());
+        }
+    }
+
+    /**
+     * Converts the fields of one csv line into a product. Shared by all variants, so they report exactly the same warnings.
+     *
+     * @param row The current line, with the fields type, name, quality, basePrice, dueDate, optional quantity.
+     *            Its own StringInterner is used for the names.
+     * @param typeNames Used for the type names, separate from the names
+     * @param errorReporter Receives the warnings for this line, so parallel variants can collect them per thread
+     * @return The new product, or null if the line is not valid (which was reported as a warning)
+     */
+    protected Product parseProduct(CSVTokenizer row, StringInterner typeNames, LocalDate startDate, Map<String, ProductType> productTypes, ErrorReporter errorReporter) {
+        int fieldCount = row.fieldCount();
+        if(fieldCount != 5 && fieldCount != 6) { //type, name, quality, basePrice, dueDate, optional quantity
+            errorReporter.warning(new FieldLengthError(fieldCount, row.lineBytes()));
+            return null;
+        } else {
+            ProductType type = productTypes.get(row.field(0, typeNames));
+            if(type == null) {
+                errorReporter.warning(new ProductTypeNotFoundError(row.field(0, typeNames), row.lineBytes()));
+                return null; //continue operation but ignore this row
+            }
+
+            try {
+                int quantity = fieldCount == 6 ? row.intField(5) : 1;
+                if(quantity < 1) { throw new NumberFormatException("Quantity has to be positive"); }
+
+                return new Product(
+                        type,
+                        row.field(1),
+                        row.intField(2),
+                        row.doubleField(3),
+                        row.dateField(4),
+                        startDate,
+                        quantity);
+            } catch (NumberFormatException ex) {
+                errorReporter.warning(new NotAValidNumberError(row.lineBytes()));
+            } catch (DateTimeParseException ex) {
+                errorReporter.warning(new NotAValidDateError(row.lineBytes()));
+            }
+
+            return null; //continue operation but ignore this row
         }
     }
 
@@ -76,16 +140,20 @@ public abstract class ProductLoaderCSV extends ProductLoader {
      */
     public static class FieldLengthError implements ErrorReporter.Error {
         private final int actualLength;
-        private final String line;
+        private final byte[] line; //UTF-8, only decoded for the message
 
         public FieldLengthError(int actualLength, String line) {
+            this(actualLength, line.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public FieldLengthError(int actualLength, byte[] line) {
             this.actualLength = actualLength;
             this.line = line;
         }
 
         @Override
         public String getMessage() {
-            return "Error while parsing product CSV. Expected exactly 5 fields but got "+this.actualLength+": "+line;
+            return "Error while parsing product CSV. Expected 5 or 6 fields but got "+this.actualLength+": "+new String(this.line, StandardCharsets.UTF_8);
         }
 
         @Override
@@ -101,16 +169,20 @@ public abstract class ProductLoaderCSV extends ProductLoader {
      */
     public static class ProductTypeNotFoundError implements ErrorReporter.Error {
         private final String producTypeName;
-        private final String line;
+        private final byte[] line; //UTF-8, only decoded for the message
 
         public ProductTypeNotFoundError(String producTypeName, String line) {
+            this(producTypeName, line.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public ProductTypeNotFoundError(String producTypeName, byte[] line) {
             this.producTypeName = producTypeName;
             this.line = line;
         }
 
         @Override
         public String getMessage() {
-            return "Error while parsing product CSV. Given productType "+ this.producTypeName +" not found: "+line;
+            return "Error while parsing product CSV. Given productType "+ this.producTypeName +" not found: "+new String(this.line, StandardCharsets.UTF_8);
         }
 
         @Override
@@ -125,15 +197,19 @@ public abstract class ProductLoaderCSV extends ProductLoader {
      * Tried to parse an Integer or Double, but the value was not in a valid format.
      */
     public static class NotAValidNumberError implements ErrorReporter.Error {
-        private final String line;
+        private final byte[] line; //UTF-8, only decoded for the message
 
         public NotAValidNumberError(String line) {
+            this(line.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public NotAValidNumberError(byte[] line) {
             this.line = line;
         }
 
         @Override
         public String getMessage() {
-            return "Error while parsing product CSV. Not a valid number in line: "+ this.line;
+            return "Error while parsing product CSV. Not a valid number in line: "+ new String(this.line, StandardCharsets.UTF_8);
         }
 
         @Override
@@ -147,15 +223,19 @@ public abstract class ProductLoaderCSV extends ProductLoader {
      * Tried to parse a Date, but the value was not in a valid format.
      */
     public static class NotAValidDateError implements ErrorReporter.Error {
-        private final String line;
+        private final byte[] line; //UTF-8, only decoded for the message
 
         public NotAValidDateError(String line) {
+            this(line.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public NotAValidDateError(byte[] line) {
             this.line = line;
         }
 
         @Override
         public String getMessage() {
-            return "Error while parsing product CSV. Not a valid date in line: "+ this.line;
+            return "Error while parsing product CSV. Not a valid date in line: "+ new String(this.line, StandardCharsets.UTF_8);
         }
 
         @Override
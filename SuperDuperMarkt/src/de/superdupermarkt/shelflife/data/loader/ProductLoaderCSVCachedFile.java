@@ -0,0 +1,579 @@
+package de.superdupermarkt.shelflife.data.loader;
+
+import de.superdupermarkt.shelflife.data.Product;
+import de.superdupermarkt.shelflife.data.ProductType;
+import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessException;
+import de.superdupermarkt.shelflife.data.loader.factory.ProductLoaderRegistry;
+import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.helper.CSVTokenizer;
+import de.superdupermarkt.shelflife.helper.StringInterner;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Variant of ProductLoaderCSVFile for files which are loaded again and again, e.g. to simulate different date ranges.
+ * <p>
+ * The first run parses the CSV as usual and stores the parsed lines in a binary cache file next to it (products.csv.cache).
+ * Later runs memory map that file instead and read the values directly, without parsing any text.
+ * The cache is only used as long as size and modification time of the CSV match the ones it was created from, otherwise it is rebuilt.
+ * <p>
+ * The cache is columnar: all types, then all names, then all qualities and so on. Names and types are stored once in a string table
+ * and referenced by their index, so each distinct value is only decoded once per run and all products share the same instance.
+ * <p>
+ * Only the parsing is cached, not the products themselves. The product types are resolved and the products created on each run,
+ * so a changed productTypes.csv or a different startDate work as expected. For the warnings the cache only stores where each line
+ * is located in the CSV, and reads the line from there when needed, so products and warnings are exactly the same as with ProductLoaderCSVFile.
+ * <p>
+ * Compressed CSVs (@see CompressedFiles) are cached the same way, so later runs do not have to decompress them either.
+ * <p>
+ * The cache ends up somewhat larger than the (uncompressed) CSV, and is limited to 2GB like any single memory mapped buffer.
+ * It is written column by column into temporary files while parsing and put together afterwards, so building it does not need
+ * any memory per row either. CSVs too large for a cache, or caches which cannot be written, are loaded like ProductLoaderCSVFile with a warning.
+ */
+public class ProductLoaderCSVCachedFile extends ProductLoaderCSVFile {
+    /**
+     * Factory implementation used to create an instance of ProductLoaderCSVCachedFile from a given configuration string.
+     * <p>
+     * Declared inline since it is tightly coupled to this class and fairly small.
+     */
+    public static class LoaderFactory implements ProductLoaderRegistry.LoaderFactory {
+        @Override
+        public ProductLoader fromConfigString(String config, ErrorReporter errorReporter) {
+            return new ProductLoaderCSVCachedFile(
+                    Path.of(config),
+                    errorReporter
+            );
+        }
+    }
+
+    public static final String CACHE_SUFFIX = ".cache";
+
+    private static final int MAGIC = 0x53444D43; //"SDMC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 36;
+
+    private static final byte VALID = 0;
+    private static final byte WRONG_FIELD_COUNT = 1;
+    private static final byte INVALID_NUMBER = 2;
+    private static final byte INVALID_DATE = 3;
+
+    private static final int ROW_SIZE = 1 + 4 + 4 + 4 + 8 + 8 + 4 + 8 + 4; //all columns of one row
+
+    private final Path cacheFile;
+    private final long maxCacheSize;
+
+    public ProductLoaderCSVCachedFile(Path file, ErrorReporter errorReporter) {
+        this(file, file.resolveSibling(file.getFileName() + CACHE_SUFFIX), errorReporter);
+    }
+
+    public ProductLoaderCSVCachedFile(Path file, Path cacheFile, ErrorReporter errorReporter) {
+        this(file, cacheFile, Integer.MAX_VALUE, errorReporter);
+    }
+
+    /**
+     * @param maxCacheSize The size in bytes above which no cache is built, at most Integer.MAX_VALUE (the limit of a mapped buffer)
+     */
+    public ProductLoaderCSVCachedFile(Path file, Path cacheFile, long maxCacheSize, ErrorReporter errorReporter) {
+        super(file, errorReporter);
+        this.cacheFile = cacheFile;
+        this.maxCacheSize = Math.min(maxCacheSize, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Product> fetchProducts(LocalDate startDate, Map<String, ProductType> productTypes) throws DataLoaderAccessException {
+        Cache cache = this.openCache();
+        if(cache == null) { return super.fetchProducts(startDate, productTypes); }
+
+        List<Product> products = new ArrayList<>();
+        try(OriginalLines lines = new OriginalLines()) {
+            cache.forEach(lines, startDate, productTypes, this.errorReporter, products::add);
+        } catch (IOException ex) {
+            throw new DataLoaderAccessException("Could not load Product CSV: "+ex.getMessage());
+        }
+        return aggregate(products);
+    }
+
+    @Override
+    public void streamProducts(LocalDate startDate, Map<String, ProductType> productTypes, int batchSize, Consumer<List<Product>> consumer) throws DataLoaderAccessException {
+        Cache cache = this.openCache();
+        if(cache == null) {
+            super.streamProducts(startDate, productTypes, batchSize, consumer);
+            return;
+        }
+
+        //the cache is mapped, not read into the heap, so only the current batch takes up memory
+        AtomicReference<List<Product>> batch = new AtomicReference<>(new ArrayList<>(batchSize)); //captured variables have to be final, so the lambda replaces the batch via reference
+        try(OriginalLines lines = new OriginalLines()) {
+            cache.forEach(lines, startDate, productTypes, this.errorReporter, product -> {
+                batch.get().add(product);
+                if(batch.get().size() == batchSize) {
+                    consumer.accept(aggregate(batch.get()));
+                    batch.set(new ArrayList<>(batchSize));
+                }
+            });
+        } catch (IOException ex) {
+            throw new DataLoaderAccessException("Could not load Product CSV: "+ex.getMessage());
+        }
+
+        if(!batch.get().isEmpty()) { consumer.accept(aggregate(batch.get())); }
+    }
+
+    /**
+     * @return The mapped cache file, after (re)building it if it does not match the CSV.
+     *         null if no cache could be built, which is reported as a warning
+     */
+    private Cache openCache() throws DataLoaderAccessException {
+        long csvSize;
+        long csvModified;
+        try {
+            csvSize = Files.size(this.file);
+            csvModified = Files.getLastModifiedTime(this.file).toMillis();
+        } catch (IOException ex) {
+            throw new DataLoaderAccessException("Could not load Product CSV: "+ex.getMessage());
+        }
+
+        if(Files.exists(this.cacheFile)) {
+            try {
+                Cache cache = new Cache(map(this.cacheFile));
+                if(cache.matches(csvSize, csvModified)) { return cache; }
+            } catch (IOException ex) {
+                //an unreadable cache is simply rebuilt
+            }
+        }
+
+        Path tempFile;
+        try {
+            tempFile = Files.createTempFile(this.cacheFile.toAbsolutePath().getParent(), this.cacheFile.getFileName().toString(), ".tmp");
+        } catch (IOException ex) {
+            this.errorReporter.warning(new CacheNotWrittenError(this.cacheFile, ex.getMessage())); //loaded without a cache instead
+            return null;
+        }
+
+        try {
+            this.buildCache(tempFile, csvSize, csvModified);
+        } catch (IOException ex) { //too large, or the cache could not be written
+            this.errorReporter.warning(new CacheNotWrittenError(this.cacheFile, ex.getMessage()));
+            deleteQuietly(tempFile);
+            return null;
+        } catch (DataLoaderAccessException ex) {
+            deleteQuietly(tempFile);
+            throw ex;
+        }
+
+        try {
+            //other runs either see the old cache or the complete new one
+            Files.move(tempFile, this.cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new Cache(map(this.cacheFile));
+        } catch (IOException ex) {
+            this.errorReporter.warning(new CacheNotWrittenError(this.cacheFile, ex.getMessage()));
+        }
+
+        try { //the complete cache can still be used for this run
+            Cache cache = new Cache(map(tempFile));
+            tempFile.toFile().deleteOnExit(); //some platforms do not allow deleting a mapped file right away
+            return cache;
+        } catch (IOException ex) {
+            deleteQuietly(tempFile);
+            return null;
+        }
+    }
+
+    /**
+     * @return The whole file mapped read only. The mapping stays valid after closing the channel
+     */
+    private static ByteBuffer map(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * Parses the CSV into the cache format, written to the given file.
+     * Mirrors the checks of ProductLoaderCSV#parseProduct, except the type lookup which happens on each run.
+     *
+     * @throws IOException If the cache would be larger than the maximum size or could not be written
+     * @throws DataLoaderAccessException If the CSV could not be read
+     */
+    private void buildCache(Path target, long csvSize, long csvModified) throws IOException, DataLoaderAccessException {
+        try(CacheBuilder builder = new CacheBuilder(target.toAbsolutePath().getParent(), this.maxCacheSize)) {
+            this.parseInto(builder);
+            builder.writeTo(target, csvSize, csvModified);
+        }
+    }
+
+    private void parseInto(CacheBuilder builder) throws IOException, DataLoaderAccessException {
+        try(InputStream input = this.openInput()) {
+            CSVTokenizer row = new CSVTokenizer(input, new StringInterner(NAME_INTERNER_CAPACITY));
+            row.nextLine(); //skip header
+
+            while(row.nextLine()) {
+                int fieldCount = row.fieldCount();
+                if(fieldCount != 5 && fieldCount != 6) { //type, name, quality, basePrice, dueDate, optional quantity
+                    builder.addRow(WRONG_FIELD_COUNT, -1, -1, fieldCount, 0, 0, 0, row);
+                    continue;
+                }
+
+                int type = builder.string(row.field(0));
+                int name = builder.string(row.field(1));
+                try {
+                    //same order as in parseProduct, so the same error wins for lines with several invalid values
+                    int quantity = fieldCount == 6 ? row.intField(5) : 1;
+                    if(quantity < 1) { throw new NumberFormatException("Quantity has to be positive"); }
+                    int quality = row.intField(2);
+                    double basePrice = row.doubleField(3);
+                    long dueDate = row.dateField(4).toEpochDay();
+
+                    builder.addRow(VALID, type, name, quality, basePrice, dueDate, quantity, row);
+                } catch (NumberFormatException ex) {
+                    builder.addRow(INVALID_NUMBER, type, name, 0, 0, 0, 0, row);
+                } catch (DateTimeParseException ex) {
+                    builder.addRow(INVALID_DATE, type, name, 0, 0, 0, 0, row);
+                }
+            }
+        } catch (CacheBuilder.CacheWriteException ex) {
+            throw ex; //not a problem of the CSV
+        } catch (IOException ex) {
+            throw new DataLoaderAccessException("Could not load Product CSV: "+ex.getMessage());
+        }
+    }
+
+    /**
+     * Read access to the cache format:
+     * <pre>
+     * header:  magic, version, csv size, csv modification time, row count, string count, string data length
+     * strings: offsets (string count + 1), UTF-8 data
+     * columns: kind (byte), type, name, quality (int), basePrice (double), dueDate (epoch day, long), quantity (int),
+     *          line offset in the csv (long), line length (int)
+     * </pre>
+     * Invalid lines use the quality column for their field count.
+     */
+    private static class Cache {
+        private final ByteBuffer data;
+        private final int rowCount;
+        private final int stringCount;
+        private final int stringOffsets;
+        private final int stringData;
+        private final int kinds;
+        private final int types;
+        private final int names;
+        private final int qualities;
+        private final int basePrices;
+        private final int dueDates;
+        private final int quantities;
+        private final int lineOffsets;
+        private final int lineLengths;
+        private final int end;
+
+        Cache(ByteBuffer data) {
+            this.data = data;
+            boolean complete = data.limit() >= HEADER_SIZE;
+            this.rowCount = complete ? data.getInt(24) : 0;
+            this.stringCount = complete ? data.getInt(28) : 0;
+
+            this.stringOffsets = HEADER_SIZE;
+            this.stringData = this.stringOffsets + 4 * (this.stringCount + 1);
+            this.kinds = this.stringData + (complete ? data.getInt(32) : 0);
+            this.types = this.kinds + this.rowCount;
+            this.names = this.types + 4 * this.rowCount;
+            this.qualities = this.names + 4 * this.rowCount;
+            this.basePrices = this.qualities + 4 * this.rowCount;
+            this.dueDates = this.basePrices + 8 * this.rowCount;
+            this.quantities = this.dueDates + 8 * this.rowCount;
+            this.lineOffsets = this.quantities + 4 * this.rowCount;
+            this.lineLengths = this.lineOffsets + 8 * this.rowCount;
+            this.end = this.lineLengths + 4 * this.rowCount;
+        }
+
+        boolean matches(long csvSize, long csvModified) {
+            return this.data.limit() >= HEADER_SIZE
+                    && this.data.getInt(0) == MAGIC
+                    && this.data.getInt(4) == VERSION
+                    && this.data.getLong(8) == csvSize
+                    && this.data.getLong(16) == csvModified
+                    && this.data.limit() == this.end; //catches truncated files
+        }
+
+        /**
+         * Creates the products in file order and reports the invalid lines, exactly like ProductLoaderCSV#parseProduct.
+         */
+        void forEach(OriginalLines lines, LocalDate startDate, Map<String, ProductType> productTypes, ErrorReporter errorReporter, Consumer<Product> consumer) throws IOException, DataLoaderAccessException {
+            String[] strings = new String[this.stringCount]; //decoded on first use
+            ProductType[] resolvedTypes = new ProductType[this.stringCount];
+
+            for(int row = 0; row < this.rowCount; row++) {
+                byte kind = this.data.get(this.kinds + row);
+                if(kind == WRONG_FIELD_COUNT) {
+                    errorReporter.warning(new ProductLoaderCSV.FieldLengthError(this.data.getInt(this.qualities + 4 * row), this.line(lines, row)));
+                    continue;
+                }
+
+                int type = this.data.getInt(this.types + 4 * row);
+                if(resolvedTypes[type] == null) {
+                    resolvedTypes[type] = productTypes.get(this.string(strings, type));
+                }
+                if(resolvedTypes[type] == null) {
+                    errorReporter.warning(new ProductLoaderCSV.ProductTypeNotFoundError(this.string(strings, type), this.line(lines, row)));
+                } else if(kind == INVALID_NUMBER) {
+                    errorReporter.warning(new ProductLoaderCSV.NotAValidNumberError(this.line(lines, row)));
+                } else if(kind == INVALID_DATE) {
+                    errorReporter.warning(new ProductLoaderCSV.NotAValidDateError(this.line(lines, row)));
+                } else {
+                    consumer.accept(new Product(
+                            resolvedTypes[type],
+                            this.string(strings, this.data.getInt(this.names + 4 * row)),
+                            this.data.getInt(this.qualities + 4 * row),
+                            this.data.getDouble(this.basePrices + 8 * row),
+                            LocalDate.ofEpochDay(this.data.getLong(this.dueDates + 8 * row)),
+                            startDate,
+                            this.data.getInt(this.quantities + 4 * row)));
+                }
+            }
+        }
+
+        private String string(String[] strings, int index) {
+            if(strings[index] == null) {
+                int start = this.data.getInt(this.stringOffsets + 4 * index);
+                int end = this.data.getInt(this.stringOffsets + 4 * (index + 1));
+                strings[index] = this.decode(this.stringData + start, this.stringData + end);
+            }
+            return strings[index];
+        }
+
+        private byte[] line(OriginalLines lines, int row) throws IOException, DataLoaderAccessException {
+            return lines.read(this.data.getLong(this.lineOffsets + 8 * row), this.data.getInt(this.lineLengths + 4 * row));
+        }
+
+        private String decode(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            this.data.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Reads lines of the CSV by their offset, which are only needed for warnings.
+     * <p>
+     * The rows are processed in file order, so the CSV is read front to back at most once.
+     * This also works for compressed files (@see CompressedFiles), which cannot be read from an arbitrary position.
+     */
+    private class OriginalLines implements Closeable {
+        private InputStream input; //only opened once the first warning needs it
+        private long position = 0;
+
+        byte[] read(long offset, int length) throws IOException, DataLoaderAccessException {
+            if(this.input == null) { this.input = openInput(); }
+
+            this.input.skipNBytes(offset - this.position);
+            byte[] line = this.input.readNBytes(length);
+            if(line.length < length) { throw new EOFException("Product CSV is shorter than expected"); }
+
+            this.position = offset + length;
+            return line;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(this.input != null) { this.input.close(); }
+        }
+    }
+
+    /**
+     * Writes the parsed lines column by column into temporary files, and puts them together in the cache format once the row count is known.
+     * Only the string table index is kept in memory, one entry per distinct name or type.
+     */
+    private static class CacheBuilder implements Closeable {
+        /**
+         * Failure writing a column, wrapped so it can be told apart from failures reading the CSV.
+         */
+        static class CacheWriteException extends IOException {
+            CacheWriteException(String message, Throwable cause) {
+                super(message, cause);
+            }
+        }
+
+        private final long maxSize;
+        private final Map<String, Integer> stringIndex = new HashMap<>();
+        private final List<Path> files = new ArrayList<>();
+        private final List<DataOutputStream> columns = new ArrayList<>();
+
+        //in the order of the cache format
+        private final DataOutputStream stringOffsets;
+        private final DataOutputStream stringData;
+        private final DataOutputStream kinds;
+        private final DataOutputStream types;
+        private final DataOutputStream names;
+        private final DataOutputStream qualities;
+        private final DataOutputStream basePrices;
+        private final DataOutputStream dueDates;
+        private final DataOutputStream quantities;
+        private final DataOutputStream lineOffsets;
+        private final DataOutputStream lineLengths;
+
+        private int rowCount = 0;
+        private long stringDataSize = 0;
+
+        CacheBuilder(Path directory, long maxSize) throws IOException {
+            this.maxSize = maxSize;
+            try {
+                this.stringOffsets = this.column(directory);
+                this.stringData = this.column(directory);
+                this.kinds = this.column(directory);
+                this.types = this.column(directory);
+                this.names = this.column(directory);
+                this.qualities = this.column(directory);
+                this.basePrices = this.column(directory);
+                this.dueDates = this.column(directory);
+                this.quantities = this.column(directory);
+                this.lineOffsets = this.column(directory);
+                this.lineLengths = this.column(directory);
+                this.stringOffsets.writeInt(0);
+            } catch (IOException ex) {
+                this.close();
+                throw ex;
+            }
+        }
+
+        private DataOutputStream column(Path directory) throws IOException {
+            Path file = Files.createTempFile(directory, "column", ".tmp");
+            this.files.add(file);
+            DataOutputStream column = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            this.columns.add(column);
+            return column;
+        }
+
+        /**
+         * @return The index of the given value in the string table, equal values share one entry
+         */
+        int string(String value) throws CacheWriteException {
+            Integer index = this.stringIndex.get(value);
+            if(index != null) { return index; }
+
+            index = this.stringIndex.size();
+            this.stringIndex.put(value, index);
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.stringDataSize += bytes.length;
+            this.checkSize();
+            try {
+                this.stringData.write(bytes);
+                this.stringOffsets.writeInt((int)this.stringDataSize);
+            } catch (IOException ex) {
+                throw new CacheWriteException(ex.getMessage(), ex);
+            }
+            return index;
+        }
+
+        void addRow(byte kind, int type, int name, int quality, double basePrice, long dueDate, int quantity, CSVTokenizer line) throws CacheWriteException {
+            this.rowCount++;
+            this.checkSize();
+            try {
+                this.kinds.writeByte(kind);
+                this.types.writeInt(type);
+                this.names.writeInt(name);
+                this.qualities.writeInt(quality);
+                this.basePrices.writeDouble(basePrice);
+                this.dueDates.writeLong(dueDate);
+                this.quantities.writeInt(quantity);
+                this.lineOffsets.writeLong(line.lineOffset());
+                this.lineLengths.writeInt(line.lineLength());
+            } catch (IOException ex) {
+                throw new CacheWriteException(ex.getMessage(), ex);
+            }
+        }
+
+        private long size() {
+            return HEADER_SIZE + 4L * (this.stringIndex.size() + 1) + this.stringDataSize + (long)this.rowCount * ROW_SIZE;
+        }
+
+        private void checkSize() throws CacheWriteException {
+            if(this.size() > this.maxSize) { //checked while parsing, so too large CSVs are not parsed completely for nothing
+                throw new CacheWriteException("Product CSV is too large to be cached", null);
+            }
+        }
+
+        /**
+         * Writes the header followed by all columns into the given file.
+         */
+        void writeTo(Path target, long csvSize, long csvModified) throws IOException {
+            for(DataOutputStream column : this.columns) { column.close(); }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(csvSize).putLong(csvModified)
+                  .putInt(this.rowCount).putInt(this.stringIndex.size()).putInt((int)this.stringDataSize)
+                  .flip();
+
+            try(FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while(header.hasRemaining()) { out.write(header); }
+                for(Path file : this.files) {
+                    try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                        long position = 0;
+                        while(position < in.size()) {
+                            position += in.transferTo(position, in.size() - position, out);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Deletes the temporary column files.
+         */
+        @Override
+        public void close() {
+            for(DataOutputStream column : this.columns) {
+                try {
+                    column.close();
+                } catch (IOException ex) {
+                    //only the temporary file is affected, which is deleted anyway
+                }
+            }
+            this.files.forEach(ProductLoaderCSVCachedFile::deleteQuietly);
+        }
+    }
+
+    /**
+     * The cache file could not be written. The products are still loaded, but the next run has to parse the CSV again.
+     */
+    public static class CacheNotWrittenError implements ErrorReporter.Error {
+        private final Path cacheFile;
+        private final String reason;
+
+        public CacheNotWrittenError(Path cacheFile, String reason) {
+            this.cacheFile = cacheFile;
+            this.reason = reason;
+        }
+
+        @Override
+        public String getMessage() {
+            return "Could not write product cache "+this.cacheFile+": "+this.reason;
+        }
+    }
+}
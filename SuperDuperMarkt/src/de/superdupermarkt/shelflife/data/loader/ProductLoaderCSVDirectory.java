@@ -0,0 +1,235 @@
+package de.superdupermarkt.shelflife.data.loader;
+
+import de.superdupermarkt.shelflife.data.Product;
+import de.superdupermarkt.shelflife.data.ProductType;
+import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessException;
+import de.superdupermarkt.shelflife.data.loader.factory.ProductLoaderRegistry;
+import de.superdupermarkt.shelflife.data.view.BufferingErrorReporter;
+import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Loads products from many CSV files at once, for exports which are split into part files (like one per store or aisle).
+ * <p>
+ * Configured with a directory and a glob pattern for the file names, like "./exports/*.csv" (or only a directory for all files in it).
+ * Each matching file (a shard) is loaded by its own ProductLoaderCSVFile, so compressed shards work as well.
+ * The shards are parsed on a bounded thread pool, and the results are concatenated in the order of the file names afterwards,
+ * so the products are always the same no matter which shard finished first.
+ * <p>
+ * Warnings are buffered per shard (@see BufferingErrorReporter) and reported in shard order as well, each wrapped in a ShardError
+ * carrying the name of the shard. ShardErrors are WrappedErrors, so they are still grouped by the original class (@see AggregatingErrorReporter).
+ * A shard which cannot be read at all is reported as an error, and the other shards are still loaded.
+ */
+public class ProductLoaderCSVDirectory extends ProductLoader {
+    /**
+     * Factory implementation used to create an instance of ProductLoaderCSVDirectory from a given configuration string.
+     * <p>
+     * Declared inline since it is tightly coupled to this class and fairly small.
+     */
+    public static class LoaderFactory implements ProductLoaderRegistry.LoaderFactory {
+        @Override
+        public ProductLoader fromConfigString(String config, ErrorReporter errorReporter) {
+            //split manually, since some file systems do not allow glob characters in a Path
+            int separator = Math.max(config.lastIndexOf('/'), config.lastIndexOf('\\'));
+            String directory = separator < 0 ? "." : config.substring(0, separator + 1);
+            String pattern = config.substring(separator + 1);
+
+            boolean isGlob = pattern.chars().anyMatch(c -> "*?[{".indexOf(c) >= 0);
+            if(pattern.isEmpty() || (!isGlob && Files.isDirectory(Path.of(config)))) {
+                return new ProductLoaderCSVDirectory(Path.of(config), "*", errorReporter);
+            }
+            return new ProductLoaderCSVDirectory(Path.of(directory), pattern, errorReporter);
+        }
+    }
+
+    private final Path directory;
+    private final String pattern;
+    private final int parallelism;
+
+    public ProductLoaderCSVDirectory(Path directory, String pattern, ErrorReporter errorReporter) {
+        this(directory, pattern, Runtime.getRuntime().availableProcessors(), errorReporter);
+    }
+
+    /**
+     * @param pattern Glob pattern for the names of the shards within the directory (@see java.nio.file.FileSystem#getPathMatcher)
+     * @param parallelism The maximum number of shards parsed at the same time
+     */
+    public ProductLoaderCSVDirectory(Path directory, String pattern, int parallelism, ErrorReporter errorReporter) {
+        super(errorReporter);
+        this.directory = directory;
+        this.pattern = pattern;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return The matching files, sorted by name so the order does not depend on the file system
+     */
+    private List<Path> findShards() throws DataLoaderAccessException {
+        List<Path> shards = new ArrayList<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, this.pattern)) {
+            for(Path file : files) {
+                if(Files.isRegularFile(file)) { shards.add(file); }
+            }
+        } catch (IOException | IllegalArgumentException ex) { //invalid patterns are reported as IllegalArgumentException
+            throw new DataLoaderAccessException("Could not list Product CSV files: "+ex.getMessage());
+        }
+
+        if(shards.isEmpty()) {
+            throw new DataLoaderAccessException("No Product CSV files matching "+ this.pattern +" in "+ this.directory);
+        }
+
+        shards.sort(Path::compareTo);
+        return shards;
+    }
+
+    @Override
+    public List<Product> fetchProducts(LocalDate startDate, Map<String, ProductType> productTypes) throws DataLoaderAccessException {
+        List<Path> shards = this.findShards();
+
+        List<Callable<List<Product>>> tasks = new ArrayList<>();
+        List<BufferingErrorReporter> warnings = new ArrayList<>();
+        for(Path shard : shards) {
+            BufferingErrorReporter buffer = new BufferingErrorReporter();
+            warnings.add(buffer);
+            tasks.add(() -> new ProductLoaderCSVFile(shard, buffer).fetchProducts(startDate, productTypes));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(this.parallelism, shards.size()));
+        try {
+            List<Future<List<Product>>> results = pool.invokeAll(tasks);
+
+            List<Product> products = new ArrayList<>();
+            for(int i = 0; i < shards.size(); i++) {
+                ErrorReporter shardReporter = new ShardErrorReporter(shards.get(i), this.errorReporter);
+                try {
+                    products.addAll(results.get(i).get());
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if(!(cause instanceof DataLoaderAccessException)) { throw new DataLoaderAccessException(cause.toString()); } //not a problem of this shard
+                    shardReporter.error((DataLoaderAccessException)cause); //continue operation with the other shards
+                }
+                warnings.get(i).replayTo(shardReporter);
+            }
+
+            return aggregate(products);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DataLoaderAccessException("Interrupted while loading Product CSV files");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Streams one shard after another on the calling thread, so only one batch is in memory at a time.
+     * Batches never span two shards, so the last batch of each shard may be smaller.
+     */
+    @Override
+    public void streamProducts(LocalDate startDate, Map<String, ProductType> productTypes, int batchSize, Consumer<List<Product>> consumer) throws DataLoaderAccessException {
+        for(Path shard : this.findShards()) {
+            ErrorReporter shardReporter = new ShardErrorReporter(shard, this.errorReporter);
+            try {
+                new ProductLoaderCSVFile(shard, shardReporter).streamProducts(startDate, productTypes, batchSize, consumer);
+            } catch (DataLoaderAccessException ex) {
+                shardReporter.error(ex); //continue operation with the other shards
+            }
+        }
+    }
+
+    /**
+     * Decorator pattern (@see ErrorReporter): attaches the name of a shard to everything reported by its loader.
+     */
+    private static class ShardErrorReporter implements ErrorReporter {
+        private final String shard;
+        private final ErrorReporter target;
+
+        ShardErrorReporter(Path shard, ErrorReporter target) {
+            this.shard = shard.getFileName().toString();
+            this.target = target;
+        }
+
+        @Override
+        public void error(Error error) {
+            this.target.error(new ShardError(this.shard, error));
+        }
+
+        @Override
+        public void error(Exception ex) {
+            this.target.error(new ShardError(this.shard, ex));
+        }
+
+        @Override
+        public void warning(Error warning) {
+            this.target.warning(new ShardError(this.shard, warning));
+        }
+
+        @Override
+        public void warning(Exception warning) {
+            this.target.warning(new ShardError(this.shard, warning));
+        }
+    }
+
+    /**
+     * An error or warning which occurred while loading one of the shards.
+     */
+    public static class ShardError implements ErrorReporter.WrappedError {
+        private final String shard;
+        private final ErrorReporter.Error cause;
+        private final Class<?> causeType;
+
+        public ShardError(String shard, ErrorReporter.Error cause) {
+            this.shard = shard;
+            this.cause = cause;
+            this.causeType = cause.getClass();
+        }
+
+        public ShardError(String shard, Exception cause) {
+            this.shard = shard;
+            this.cause = cause::toString;
+            this.causeType = cause.getClass();
+        }
+
+        public String getShard() {
+            return this.shard;
+        }
+
+        /**
+         * @return The error as reported by the loader of the shard
+         */
+        public ErrorReporter.Error getCause() {
+            return this.cause;
+        }
+
+        @Override
+        public Class<?> getCauseType() {
+            return this.causeType;
+        }
+
+        @Override
+        public String getMessage() {
+            return "["+ this.shard +"] "+ this.cause.getMessage();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || getClass() != o.getClass()) return false;
+            ShardError that = (ShardError) o;
+            return Objects.equals(shard, that.shard) && Objects.equals(cause, that.cause);
+        }
+    }
+}
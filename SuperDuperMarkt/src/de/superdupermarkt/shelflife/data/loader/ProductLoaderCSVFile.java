@@ -3,15 +3,15 @@ package de.superdupermarkt.shelflife.data.loader;
 import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessException;
 import de.superdupermarkt.shelflife.data.loader.factory.ProductLoaderRegistry;
 import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.helper.CompressedFiles;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.InputStream;
 import java.nio.file.Path;
-import java.util.stream.Stream;
 
 /**
  * Concrete ProductLoaderCSV implementation for loading products in CSV format from a file.
+ * The file may also be gzip compressed (@see CompressedFiles).
  */
 public class ProductLoaderCSVFile extends ProductLoaderCSV {
     /**
@@ -29,7 +29,7 @@ public class ProductLoaderCSVFile extends ProductLoaderCSV {
         }
     }
 
-    private final Path file;
+    protected final Path file;
 
     public ProductLoaderCSVFile(Path file, ErrorReporter errorReporter) {
         super(errorReporter);
@@ -37,9 +37,9 @@ public class ProductLoaderCSVFile extends ProductLoaderCSV {
     }
 
     @Override
-    protected Stream<String> loadLines() throws DataLoaderAccessException {
+    protected InputStream openInput() throws DataLoaderAccessException {
         try {
-            return Files.lines(this.file, StandardCharsets.UTF_8);
+            return CompressedFiles.open(this.file);
         } catch (IOException ex) {
             throw new DataLoaderAccessException("Could not load ProductType CSV: "+ex.getMessage());
         }
@@ -0,0 +1,202 @@
+package de.superdupermarkt.shelflife.data.loader;
+
+import de.superdupermarkt.shelflife.data.Product;
+import de.superdupermarkt.shelflife.data.ProductType;
+import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessException;
+import de.superdupermarkt.shelflife.data.loader.factory.ProductLoaderRegistry;
+import de.superdupermarkt.shelflife.data.view.BufferingErrorReporter;
+import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.helper.CSVTokenizer;
+import de.superdupermarkt.shelflife.helper.CompressedFiles;
+import de.superdupermarkt.shelflife.helper.StringInterner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Variant of ProductLoaderCSVFile for very large files, which parses the file on several cores.
+ * <p>
+ * The file is memory mapped and split into chunks, which always end after a line break, so no line is split between two chunks.
+ * Each chunk is parsed on its own (@see ParallelInventoryUpdater for the same approach on the inventory),
+ * and the results are concatenated in chunk order afterwards. Warnings are buffered per chunk (@see BufferingErrorReporter)
+ * and reported in chunk order as well, so products and warnings are exactly the same as with the sequential loader.
+ * <p>
+ * The lines of each chunk are parsed by a CSVTokenizer directly from the mapped memory, without copying them first.
+ * Each thread of the pool has its own StringInterners (@see ProductLoaderCSVPipeInput), so names are shared across all chunks it parses.
+ * Compressed files are loaded sequentially, like ProductLoaderCSVFile does.
+ */
+public class ProductLoaderCSVMappedFile extends ProductLoaderCSVFile {
+    /**
+     * Factory implementation used to create an instance of ProductLoaderCSVMappedFile from a given configuration string.
+     * <p>
+     * Declared inline since it is tightly coupled to this class and fairly small.
+     */
+    public static class LoaderFactory implements ProductLoaderRegistry.LoaderFactory {
+        @Override
+        public ProductLoader fromConfigString(String config, ErrorReporter errorReporter) {
+            return new ProductLoaderCSVMappedFile(
+                    Path.of(config),
+                    errorReporter
+            );
+        }
+    }
+
+    /**
+     * Large enough to keep the overhead per chunk low, small enough to keep all cores busy for files of a few hundred MB.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Window used to search for the line break closest to a chunk border.
+     */
+    private static final int SEARCH_WINDOW = 64 * 1024;
+
+    private final int parallelism;
+    private final int chunkSize;
+
+    public ProductLoaderCSVMappedFile(Path file, ErrorReporter errorReporter) {
+        this(file, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE, errorReporter);
+    }
+
+    /**
+     * @param parallelism The number of threads to use
+     * @param chunkSize The size of the chunks in bytes. Actual chunks are slightly larger, since they always end after a line break
+     */
+    public ProductLoaderCSVMappedFile(Path file, int parallelism, int chunkSize, ErrorReporter errorReporter) {
+        super(file, errorReporter);
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public List<Product> fetchProducts(LocalDate startDate, Map<String, ProductType> productTypes) throws DataLoaderAccessException {
+        try {
+            if(CompressedFiles.isGzip(this.file)) {
+                return super.fetchProducts(startDate, productTypes); //compressed data can only be read from the start, so it cannot be split
+            }
+        } catch (IOException ex) {
+            throw new DataLoaderAccessException("Could not load Product CSV: "+ex.getMessage());
+        }
+
+        try(FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            //per thread of the pool below, and only referenced by this call, so the tables are freed together with the pool
+            ThreadLocal<StringInterner> names = ThreadLocal.withInitial(() -> new StringInterner(NAME_INTERNER_CAPACITY));
+            ThreadLocal<StringInterner> typeNames = ThreadLocal.withInitial(() -> new StringInterner(TYPE_INTERNER_CAPACITY));
+
+            List<ChunkParser> chunks = new ArrayList<>();
+            long chunkStart = 0;
+            while(chunkStart < channel.size()) {
+                long chunkEnd = findLineStart(channel, chunkStart + this.chunkSize);
+                chunks.add(new ChunkParser(channel, chunkStart, chunkEnd, chunkStart == 0, startDate, productTypes, names, typeNames));
+                chunkStart = chunkEnd;
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+            try {
+                pool.submit(() -> ForkJoinTask.invokeAll(chunks)).join();
+            } finally {
+                pool.shutdown();
+            }
+
+            List<Product> products = new ArrayList<>();
+            for(ChunkParser chunk : chunks) {
+                products.addAll(chunk.join());
+                chunk.warnings.replayTo(this.errorReporter);
+            }
+
+            return aggregate(products);
+        } catch (IOException | UncheckedIOException ex) {
+            throw new DataLoaderAccessException("Could not load Product CSV: "+ex.getMessage());
+        }
+    }
+
+    /**
+     * @return The position of the first line starting at or after the given position, or the end of the file
+     */
+    private static long findLineStart(FileChannel channel, long position) throws IOException {
+        long size = channel.size();
+        if(position >= size) { return size; }
+
+        ByteBuffer window = ByteBuffer.allocate(SEARCH_WINDOW);
+        long searchPosition = position - 1; //a line starts directly after a line break
+        while(searchPosition < size) {
+            window.clear();
+            int read = channel.read(window, searchPosition);
+            for(int i = 0; i < read; i++) {
+                if(window.get(i) == '\n') { return searchPosition + i + 1; }
+            }
+            searchPosition += read;
+        }
+
+        return size;
+    }
+
+    /**
+     * Parses the lines of one chunk. Only reads its own region of the file and reports into its own buffer,
+     * so chunks do not share any state apart from the StringInterners of the thread parsing them.
+     */
+    @SuppressWarnings("serial") //ForkJoinTasks are Serializable, but these are only ever run within this process
+    private class ChunkParser extends RecursiveTask<List<Product>> {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final boolean containsHeader;
+        private final LocalDate startDate;
+        private final Map<String, ProductType> productTypes;
+        private final ThreadLocal<StringInterner> names;
+        private final ThreadLocal<StringInterner> typeNames;
+
+        private final BufferingErrorReporter warnings = new BufferingErrorReporter();
+
+        ChunkParser(FileChannel channel, long start, long end, boolean containsHeader, LocalDate startDate, Map<String, ProductType> productTypes,
+                    ThreadLocal<StringInterner> names, ThreadLocal<StringInterner> typeNames) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.containsHeader = containsHeader;
+            this.startDate = startDate;
+            this.productTypes = productTypes;
+            this.names = names;
+            this.typeNames = typeNames;
+        }
+
+        @Override
+        protected List<Product> compute() {
+            MappedByteBuffer buffer;
+            try {
+                buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, this.start, this.end - this.start);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            //each thread deduplicates the names of its chunks on its own, so the threads do not have to share a table
+            CSVTokenizer tokenizer = new CSVTokenizer(buffer, this.names.get());
+            StringInterner typeNames = this.typeNames.get();
+            List<Product> products = new ArrayList<>();
+            try {
+                if(this.containsHeader) { tokenizer.nextLine(); } //the header is always the first line of the first chunk
+
+                while(tokenizer.nextLine()) {
+                    Product product = parseProduct(tokenizer, typeNames, this.startDate, this.productTypes, this.warnings);
+                    if(product != null) { products.add(product); }
+                }
+            } catch (IOException ex) { //does not happen for data which is already in memory
+                throw new UncheckedIOException(ex);
+            }
+
+            return products;
+        }
+    }
+}
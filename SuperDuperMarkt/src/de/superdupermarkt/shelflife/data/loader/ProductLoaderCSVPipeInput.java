@@ -1,18 +1,43 @@
 package de.superdupermarkt.shelflife.data.loader;
 
+import de.superdupermarkt.shelflife.data.Product;
+import de.superdupermarkt.shelflife.data.ProductType;
 import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessException;
 import de.superdupermarkt.shelflife.data.loader.factory.ProductLoaderRegistry;
+import de.superdupermarkt.shelflife.data.view.BufferingErrorReporter;
 import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.helper.CSVTokenizer;
+import de.superdupermarkt.shelflife.helper.StringInterner;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.stream.Stream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Concrete Loader implementation for loading Products in CSV format from the system input stream.
  *
  * Not part of the original task, but implemented to demonstrate the implementation flexibility
+ * <p>
+ * By default the input is read and parsed on the calling thread. With a number of parser threads as config (like "CSVPipeInput:4")
+ * reading and parsing are pipelined instead, for large amounts of data piped in by another process:
+ * <p>
+ * Producer-Consumer pattern with a fixed ring of buffers (@see ReadAheadInputStream for the same approach on a stream).
+ * The calling thread reads large blocks from the input into free buffers, each cut after the last complete line,
+ * and the parser threads turn the blocks into products, handing the buffers back afterwards.
+ * If the parsers cannot keep up, the reader runs out of free buffers and waits, so the memory use does not depend on the size of the input.
+ * Products and warnings of each block are collected separately and put together in block order afterwards (@see ProductLoaderCSVMappedFile),
+ * so the result is exactly the same as with the sequential mode.
+ * <p>
+ * The batched mode (streamProducts) always reads sequentially, since it keeps only one batch in memory anyway.
  */
 public class ProductLoaderCSVPipeInput extends ProductLoaderCSV {
     /**
@@ -23,21 +48,207 @@ public class ProductLoaderCSVPipeInput extends ProductLoaderCSV {
     public static class LoaderFactory implements ProductLoaderRegistry.LoaderFactory {
         @Override
         public ProductLoader fromConfigString(String config, ErrorReporter errorReporter) {
-            //no config required, so it is ignored here
+            //an empty config reads sequentially, otherwise it is the number of parser threads
             //the config parameter could actually be used to select named pipes instead of just using System.in
-            return new ProductLoaderCSVPipeInput(
-                    errorReporter
-            );
+            if(config.isBlank()) {
+                return new ProductLoaderCSVPipeInput(
+                        errorReporter
+                );
+            }
+
+            try {
+                return new ProductLoaderCSVPipeInput(Integer.parseInt(config.trim()), DEFAULT_BLOCK_SIZE, errorReporter);
+            } catch (NumberFormatException ex) {
+                errorReporter.error(ex);
+                return null;
+            }
         }
     }
 
+    /**
+     * Large enough to keep the overhead per block low, small enough to keep all parser threads busy early on.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * Buffers per parser thread: one being parsed, one queued and one being read into, so neither side waits for the other in the usual case.
+     */
+    private static final int BLOCKS_PER_THREAD = 3;
+
+    private final int parserThreads; //0 reads sequentially
+    private final int blockSize;
+
     public ProductLoaderCSVPipeInput(ErrorReporter errorReporter) {
+        this(0, DEFAULT_BLOCK_SIZE, errorReporter);
+    }
+
+    /**
+     * @param parserThreads The number of threads parsing the blocks, 0 to read and parse on the calling thread
+     * @param blockSize The size of the buffers in bytes. Lines longer than that get a larger buffer
+     */
+    public ProductLoaderCSVPipeInput(int parserThreads, int blockSize, ErrorReporter errorReporter) {
         super(errorReporter);
+        this.parserThreads = parserThreads;
+        this.blockSize = blockSize;
     }
 
     @Override
-    protected Stream<String> loadLines() throws DataLoaderAccessException {
+    protected InputStream openInput() throws DataLoaderAccessException {
         if(System.in == null) { throw new DataLoaderAccessException("Could not load ProductType CSV from System Input"); }
-        return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).lines();
+        return new FilterInputStream(System.in) {
+            @Override
+            public void close() {} //System.in belongs to the whole program, so it stays open
+        };
+    }
+
+    /**
+     * A part of the input which contains only complete lines. The end of the input is marked by a block without data.
+     */
+    private record Block(int index, byte[] data, int length) {}
+
+    /**
+     * The products and warnings of one block, or the exception which stopped parsing it.
+     */
+    private record BlockResult(List<Product> products, BufferingErrorReporter warnings, RuntimeException failure) {}
+
+    @Override
+    public List<Product> fetchProducts(LocalDate startDate, Map<String, ProductType> productTypes) throws DataLoaderAccessException {
+        if(this.parserThreads <= 0) { return super.fetchProducts(startDate, productTypes); }
+
+        BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(this.parserThreads * BLOCKS_PER_THREAD);
+        BlockingQueue<Block> filled = new LinkedBlockingQueue<>(); //bounded by the number of buffers
+        Map<Integer, BlockResult> results = new ConcurrentHashMap<>();
+        for(int i = 0; i < this.parserThreads * BLOCKS_PER_THREAD; i++) {
+            free.add(new byte[this.blockSize]);
+        }
+
+        List<Thread> parsers = new ArrayList<>();
+        for(int i = 0; i < this.parserThreads; i++) {
+            Thread parser = new Thread(() -> this.parseBlocks(filled, free, results, startDate, productTypes), "CSVParser-"+ i);
+            parser.setDaemon(true);
+            parser.start();
+            parsers.add(parser);
+        }
+
+        int blockCount = 0;
+        try(InputStream input = this.openInput()) {
+            blockCount = this.readBlocks(input, free, filled);
+        } catch (IOException ex) {
+            throw new DataLoaderAccessException("Could not load Product CSV: "+ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DataLoaderAccessException("Interrupted while loading Product CSV");
+        } finally {
+            for(Thread parser : parsers) {
+                filled.add(new Block(-1, null, 0)); //one end marker per parser
+            }
+            for(Thread parser : parsers) {
+                try {
+                    parser.join();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        List<Product> products = new ArrayList<>();
+        for(int i = 0; i < blockCount; i++) {
+            BlockResult result = results.get(i);
+            if(result.failure() != null) {
+                throw new DataLoaderAccessException("Could not load Product CSV: "+ result.failure());
+            }
+
+            products.addAll(result.products());
+            result.warnings().replayTo(this.errorReporter);
+        }
+
+        return aggregate(products);
+    }
+
+    /**
+     * Reads the input into the free buffers, cutting each block after its last line break. The rest is carried over to the next block.
+     *
+     * @return The number of blocks
+     */
+    private int readBlocks(InputStream input, BlockingQueue<byte[]> free, BlockingQueue<Block> filled) throws IOException, InterruptedException {
+        int blockCount = 0;
+        byte[] buffer = free.take();
+        int length = 0;
+        while(true) {
+            int read = input.readNBytes(buffer, length, buffer.length - length); //only returns less than requested at the end of the input
+            length += read;
+            boolean endOfInput = length < buffer.length;
+
+            int cut = endOfInput ? length : lastLineEnd(buffer, length);
+            if(cut == 0 && !endOfInput) { //a single line fills the whole buffer
+                byte[] larger = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, larger, 0, length);
+                buffer = larger; //takes the place of the smaller buffer in the ring
+                continue;
+            }
+
+            byte[] next = endOfInput ? null : free.take();
+            if(next != null && next.length < length - cut) { next = new byte[buffer.length]; }
+            if(next != null) { System.arraycopy(buffer, cut, next, 0, length - cut); }
+
+            if(cut > 0) {
+                filled.put(new Block(blockCount++, buffer, cut));
+            } else {
+                free.put(buffer);
+            }
+            if(endOfInput) { return blockCount; }
+
+            length = length - cut;
+            buffer = next;
+        }
+    }
+
+    /**
+     * @return The position after the last complete line, 0 if there is none.
+     *         A trailing \r only counts once the next byte is known, since it might be the first half of \r\n.
+     */
+    private static int lastLineEnd(byte[] data, int length) {
+        for(int i = length - 1; i >= 0; i--) {
+            if(data[i] == '\n' || (data[i] == '\r' && i < length - 1)) { return i + 1; }
+        }
+        return 0;
+    }
+
+    /**
+     * Parser thread: turns blocks into products until it receives an end marker.
+     * Each thread has its own StringInterners, so the names are shared across all blocks it parses.
+     */
+    private void parseBlocks(BlockingQueue<Block> filled, BlockingQueue<byte[]> free, Map<Integer, BlockResult> results, LocalDate startDate, Map<String, ProductType> productTypes) {
+        StringInterner names = new StringInterner(NAME_INTERNER_CAPACITY);
+        StringInterner typeNames = new StringInterner(TYPE_INTERNER_CAPACITY);
+        while(true) {
+            Block block;
+            try {
+                block = filled.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            if(block.data() == null) { return; }
+
+            List<Product> products = new ArrayList<>();
+            BufferingErrorReporter warnings = new BufferingErrorReporter();
+            RuntimeException failure = null;
+            try {
+                CSVTokenizer tokenizer = new CSVTokenizer(ByteBuffer.wrap(block.data(), 0, block.length()), names);
+                if(block.index() == 0) { tokenizer.nextLine(); } //skip header, which is always the first line of the first block
+
+                while(tokenizer.nextLine()) {
+                    Product product = this.parseProduct(tokenizer, typeNames, startDate, productTypes, warnings);
+                    if(product != null) { products.add(product); }
+                }
+            } catch (IOException ex) { //does not happen for data which is already in memory
+                failure = new IllegalStateException(ex);
+            } catch (RuntimeException ex) {
+                failure = ex;
+            }
+
+            results.put(block.index(), new BlockResult(products, warnings, failure));
+            free.add(block.data()); //all Strings are copies, so the buffer can be reused right away
+        }
     }
 }
@@ -1,6 +1,7 @@
 package de.superdupermarkt.shelflife.data.loader;
 
 import de.superdupermarkt.shelflife.data.ProductType;
+import de.superdupermarkt.shelflife.data.RuleClassRegistry;
 import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessException;
 import de.superdupermarkt.shelflife.data.view.ErrorReporter;
 
@@ -14,13 +15,15 @@ import java.util.Map;
  * <p>
  * Abstract class instead of an interface to provide default handling of the required ErrorReporter.
  */
-public abstract class ProductTypeLoader {
+public abstract class ProductTypeLoader implements AutoCloseable {
     protected final ErrorReporter errorReporter;
     protected final ClassLoader classLoader;
+    protected final RuleClassRegistry ruleClasses; //resolves each rule class only once, no matter how many types use it
 
     public ProductTypeLoader(ErrorReporter errorReporter, ClassLoader classLoader) {
         this.errorReporter = errorReporter;
         this.classLoader = classLoader;
+        this.ruleClasses = new RuleClassRegistry(classLoader);
     }
 
     /**
@@ -31,4 +34,10 @@ public abstract class ProductTypeLoader {
      * @throws DataLoaderAccessException
      */
     public abstract Map<String, ProductType> fetchProductTypes() throws DataLoaderAccessException;
+
+    /**
+     * Releases resources kept between two loads, @see ProductLoader#close. The default implementation does nothing.
+     */
+    @Override
+    public void close() {}
 }
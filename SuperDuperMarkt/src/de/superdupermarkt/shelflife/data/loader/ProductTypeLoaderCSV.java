@@ -5,14 +5,17 @@ import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessExcept
 import de.superdupermarkt.shelflife.data.loader.exception.ProductTypeNotValidException;
 import de.superdupermarkt.shelflife.data.view.ErrorReporter;
 import de.superdupermarkt.shelflife.helper.CSV;
+import de.superdupermarkt.shelflife.helper.CSVTokenizer;
+import de.superdupermarkt.shelflife.helper.StringInterner;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
-import java.util.stream.Stream;
 
 /**
  * Template Method pattern. Implements a shared algorithm, but individual steps can be overwritten by subclasses.
  * <p>
- * In this case it decouples acquiring the individual csv lines from the code processing them.
+ * In this case it decouples acquiring the csv data from the code processing it.
  * This could be achieved in various other ways for such a simple task, but this allows for subclasses to have their own properties (like a file reference).
  */
 public abstract class ProductTypeLoaderCSV extends ProductTypeLoader {
@@ -20,23 +23,29 @@ public abstract class ProductTypeLoaderCSV extends ProductTypeLoader {
         super(errorReporter, classLoader);
     }
 
-    protected abstract Stream<String> loadLines() throws DataLoaderAccessException;
+    /**
+     * Provides the raw bytes of the actual CSV Data (UTF-8), which are closed after loading.
+     */
+    protected abstract InputStream openInput() throws DataLoaderAccessException;
 
     @Override
     public Map<String, ProductType> fetchProductTypes() throws DataLoaderAccessException {
-        try(Stream<String> lines = loadLines()) {
-            return CSV.fetchMapFromCSV(lines, this::createProductTypeFromFields, ProductType::getName);
+        try(InputStream input = openInput()) {
+            CSVTokenizer tokenizer = new CSVTokenizer(input, new StringInterner(CSV.INTERNER_CAPACITY));
+            return CSV.fetchMapFromCSV(tokenizer, this::createProductTypeFromFields, ProductType::getName);
+        } catch (IOException ex) {
+            throw new DataLoaderAccessException("Could not load ProductType CSV: "+ex.getMessage());
         }
     }
 
-    private ProductType createProductTypeFromFields(String[] fields) {
-        if (fields.length != 2) { //name, class
-            errorReporter.warning(new FieldLengthError(fields.length, String.join(";", fields)));
+    private ProductType createProductTypeFromFields(CSVTokenizer row) {
+        if (row.fieldCount() != 2) { //name, class
+            errorReporter.warning(new FieldLengthError(row.fieldCount(), row.line()));
             return null; //continue operation but ignore this row
         }
 
         try {
-            return ProductType.fromClassName(this.classLoader, fields[1], fields[0]);
+            return this.ruleClasses.create(row.field(1), row.field(0));
         } catch (ProductTypeNotValidException ex) {
             errorReporter.warning(ex);
         }
@@ -4,10 +4,8 @@ import de.superdupermarkt.shelflife.data.loader.factory.ProductTypeLoaderRegistr
 import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessException;
 import de.superdupermarkt.shelflife.data.view.ErrorReporter;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.stream.Stream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
 
 /**
  * Concrete Loader implementation for loading ProductTypes in CSV format from the system input stream.
@@ -36,8 +34,11 @@ public class ProductTypeLoaderCSVPipeInput extends ProductTypeLoaderCSV {
     }
 
     @Override
-    protected Stream<String> loadLines() throws DataLoaderAccessException {
+    protected InputStream openInput() throws DataLoaderAccessException {
         if(System.in == null) { throw new DataLoaderAccessException("Could not load ProductType CSV from System Input"); }
-        return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).lines();
+        return new FilterInputStream(System.in) {
+            @Override
+            public void close() {} //System.in belongs to the whole program, so it stays open
+        };
     }
 }
@@ -26,7 +26,7 @@ public class ClassLoading {
      * @throws IllegalAccessException
      */
     public static <T> T fromClassName(ClassLoader classLoader, String className, Class<T> superClass) throws ClassNotFoundException, NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
-        Class<?> clazz = classLoader.loadClass(ClassLoading.class.getName().replaceFirst("(?<=\\.)[^.]+$", className));
+        Class<?> clazz = classLoader.loadClass(ClassLoading.class.getPackageName() + "." + className);
         if (clazz != null && superClass.isAssignableFrom(clazz)) {
             return (T) clazz.getDeclaredConstructor().newInstance();
         }
@@ -33,6 +33,9 @@ public class ProductLoaderRegistry {
         //register all known loaders here. This could also be done from outside via various initialization and configuration mechanisms.
         this.registerLoaderFactory("CSVFile", new ProductLoaderCSVFile.LoaderFactory());
         this.registerLoaderFactory("CSVPipeInput", new ProductLoaderCSVPipeInput.LoaderFactory());
+        this.registerLoaderFactory("MappedCSVFile", new ProductLoaderCSVMappedFile.LoaderFactory());
+        this.registerLoaderFactory("CachedCSVFile", new ProductLoaderCSVCachedFile.LoaderFactory());
+        this.registerLoaderFactory("CSVDirectory", new ProductLoaderCSVDirectory.LoaderFactory());
     }
 
     /**
@@ -46,6 +49,30 @@ public class ProductLoaderRegistry {
         factories.put(name, factory);
     }
 
+    /**
+     * Registers a LoaderFactory by its unqualified class name (@see ClassLoading#fromClassName) without loading it.
+     * The class is only loaded and instantiated once a config string actually refers to the given name,
+     * so registering the factories of many modules costs next to nothing.
+     * If the class cannot be used, the error is reported then and no loader is produced.
+     *
+     * @param name The name to associate with the given Factory
+     * @param factoryClassLoader The classloader containing the factory class
+     * @param className The unqualified name of a LoaderFactory implementation
+     */
+    public void registerLoaderFactory(String name, ClassLoader factoryClassLoader, String className) {
+        this.registerLoaderFactory(name, (config, errorReporter) -> {
+            LoaderFactory factory;
+            try {
+                factory = ClassLoading.fromClassName(factoryClassLoader, className, LoaderFactory.class);
+            } catch (ReflectiveOperationException | ClassCastException ex) {
+                errorReporter.error(ex);
+                return null;
+            }
+
+            return factory.fromConfigString(config, errorReporter);
+        });
+    }
+
     /**
      * Provides a uniform way to produce an instance from a LoaderFactory registered with a name.
      * The Format is "registeredName:config", whereas the part before the colon is the name of the LoaderFactory to use,
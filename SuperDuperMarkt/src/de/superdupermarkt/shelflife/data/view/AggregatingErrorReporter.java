@@ -0,0 +1,192 @@
+package de.superdupermarkt.shelflife.data.view;
+
+import java.io.Closeable;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * ErrorReporter for inputs with lots of broken rows, which passes only a few samples of each kind of error on to another ErrorReporter.
+ * <p>
+ * Decorator pattern (@see ErrorReporter): errors and warnings are counted per class, and only the first few of each class are passed on,
+ * up to a limit for all classes together. Everything else is only counted, and the totals are reported when this reporter is closed.
+ * WrappedErrors are counted by the class of the wrapped error, so e.g. the warnings of all shards of a directory are grouped by what went wrong.
+ * <p>
+ * Passing them on happens on a separate thread via a bounded queue, so slow output (like a console) does not hold up the loaders.
+ * The messages are only formatted by that thread, when the target ErrorReporter calls getMessage.
+ * If the queue is full the loaders wait, so the memory use stays bounded even if the output cannot keep up.
+ * Queueing and closing share a lock, so nothing is queued after the end marker. Errors reported after close are passed on directly.
+ * <p>
+ * Thread safe, so it can be shared by loaders running on several threads.
+ */
+public class AggregatingErrorReporter implements ErrorReporter, Closeable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final Consumer<ErrorReporter> END = reporter -> {};
+
+    /**
+     * Errors and warnings are counted separately, even for the same class.
+     */
+    private record Kind(boolean error, Class<?> type) {}
+
+    private static class Count {
+        final int order; //to report the totals in order of the first occurrence
+        final AtomicLong total = new AtomicLong();
+        final AtomicLong suppressed = new AtomicLong(); //counted instead of the passed on ones, so errors still on their way to the queue never look suppressed
+
+        Count(int order) {
+            this.order = order;
+        }
+    }
+
+    private final ErrorReporter target;
+    private final int samples;
+    private final long limit;
+
+    private final Map<Kind, Count> counts = new ConcurrentHashMap<>();
+    private final AtomicInteger kinds = new AtomicInteger();
+    private final AtomicLong passedOn = new AtomicLong();
+
+    private final BlockingQueue<Consumer<ErrorReporter>> queue;
+    private final Thread writer;
+    private final Object queueLock = new Object();
+    private boolean closed = false; //guarded by queueLock
+
+    public AggregatingErrorReporter(ErrorReporter target, int samples, long limit) {
+        this(target, samples, limit, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param samples The number of errors passed on per class
+     * @param limit The number of errors passed on in total, afterwards only the totals are reported
+     * @param queueCapacity The number of errors waiting to be passed on, before the reporting threads have to wait
+     */
+    public AggregatingErrorReporter(ErrorReporter target, int samples, long limit, int queueCapacity) {
+        this.target = target;
+        this.samples = samples;
+        this.limit = limit;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.writer = new Thread(this::passOn, "ErrorReporter");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    private void passOn() {
+        try {
+            while(true) {
+                Consumer<ErrorReporter> call = this.queue.take();
+                if(call == END) { return; }
+
+                try {
+                    call.accept(this.target);
+                } catch (RuntimeException ex) {
+                    //a failing target must not stop the writer, otherwise the loaders would wait for room in the queue forever
+                }
+            }
+        } catch (InterruptedException ex) {
+            //nothing left to wait for
+        }
+    }
+
+    @Override
+    public void error(Error error) {
+        this.record(new Kind(true, typeOf(error)), reporter -> reporter.error(error));
+    }
+
+    @Override
+    public void error(Exception ex) {
+        this.record(new Kind(true, typeOf(ex)), reporter -> reporter.error(ex));
+    }
+
+    @Override
+    public void warning(Error warning) {
+        this.record(new Kind(false, typeOf(warning)), reporter -> reporter.warning(warning));
+    }
+
+    @Override
+    public void warning(Exception warning) {
+        this.record(new Kind(false, typeOf(warning)), reporter -> reporter.warning(warning));
+    }
+
+    private static Class<?> typeOf(Object error) {
+        return error instanceof WrappedError wrapped ? wrapped.getCauseType() : error.getClass();
+    }
+
+    private void record(Kind kind, Consumer<ErrorReporter> call) {
+        Count count = this.counts.computeIfAbsent(kind, k -> new Count(this.kinds.getAndIncrement()));
+        if(count.total.incrementAndGet() > this.samples || this.passedOn.incrementAndGet() > this.limit) {
+            count.suppressed.incrementAndGet();
+            return;
+        }
+
+        synchronized(this.queueLock) {
+            try {
+                if(!this.closed) { //blocks while the queue is full, which is fine since the writer runs until close can queue the end marker
+                    this.queue.put(call);
+                    return;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        call.accept(this.target); //the writer is gone, so the caller has to do it
+    }
+
+    /**
+     * Waits until all queued errors were passed on, then reports the totals of all classes which were not passed on completely.
+     */
+    @Override
+    public void close() {
+        try {
+            synchronized(this.queueLock) {
+                if(this.closed) { return; }
+                this.closed = true;
+                this.queue.put(END); //the last entry, since nothing is queued once closed is set
+            }
+            this.writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.counts.entrySet().stream()
+                .sorted(Comparator.comparingInt(entry -> entry.getValue().order))
+                .forEach(entry -> {
+                    long suppressed = entry.getValue().suppressed.get();
+                    if(suppressed == 0) { return; }
+
+                    long total = entry.getValue().total.get(); //read afterwards, so it includes at least all suppressed errors
+                    SuppressedError summary = new SuppressedError(entry.getKey().type().getSimpleName(), total, total - suppressed);
+                    if(entry.getKey().error()) {
+                        this.target.error(summary);
+                    } else {
+                        this.target.warning(summary);
+                    }
+                });
+    }
+
+    /**
+     * Totals of a class of errors which were not all reported individually.
+     */
+    public static class SuppressedError implements ErrorReporter.Error {
+        private final String type;
+        private final long total;
+        private final long shown;
+
+        public SuppressedError(String type, long total, long shown) {
+            this.type = type;
+            this.total = total;
+            this.shown = shown;
+        }
+
+        @Override
+        public String getMessage() {
+            return this.type +" occurred "+ this.total +" times, "+ (this.total - this.shown) +" of them were not shown";
+        }
+    }
+}
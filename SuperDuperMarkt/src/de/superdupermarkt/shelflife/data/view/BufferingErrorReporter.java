@@ -0,0 +1,47 @@
+package de.superdupermarkt.shelflife.data.view;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ErrorReporter which only records all calls, to pass them on to another ErrorReporter later on.
+ * <p>
+ * Used when work is split up over several threads: each part reports into its own buffer,
+ * and the buffers are replayed in the order of the parts afterwards. The result is exactly the same as if
+ * everything ran on one thread, no matter which part finished first.
+ * <p>
+ * Not thread safe, each thread has to use its own instance.
+ */
+public class BufferingErrorReporter implements ErrorReporter {
+    private final List<Consumer<ErrorReporter>> calls = new ArrayList<>();
+
+    @Override
+    public void error(Error error) {
+        this.calls.add(reporter -> reporter.error(error));
+    }
+
+    @Override
+    public void error(Exception ex) {
+        this.calls.add(reporter -> reporter.error(ex));
+    }
+
+    @Override
+    public void warning(Error warning) {
+        this.calls.add(reporter -> reporter.warning(warning));
+    }
+
+    @Override
+    public void warning(Exception warning) {
+        this.calls.add(reporter -> reporter.warning(warning));
+    }
+
+    /**
+     * Passes all recorded calls on to the given ErrorReporter, in the order they were made.
+     */
+    public void replayTo(ErrorReporter errorReporter) {
+        for(Consumer<ErrorReporter> call : this.calls) {
+            call.accept(errorReporter);
+        }
+    }
+}
@@ -10,7 +10,7 @@ import java.util.List;
 /*
  * DataView implementation that sends its output directly to the console.
  */
-public class ConsoleOutput implements DataView {
+public class ConsoleOutput implements DeltaDataView {
     /**
      * A StringBuilder works best if it can be reused again and again for similar data, which is the case in this class.
      */
@@ -39,6 +39,8 @@ public class ConsoleOutput implements DataView {
             this.sb.append(priceFormat.format(product.getPrice()));
             this.sb.append("\t");
             this.sb.append(product.getDueDate().format(DateTimeFormatter.ISO_DATE));
+            this.sb.append("\t");
+            this.sb.append(product.getQuantity());
 
             System.out.print(this.sb);
 
@@ -55,23 +57,49 @@ public class ConsoleOutput implements DataView {
     @Override
     public void outputDay(LocalDate day, List<Product> products) {
         System.out.println("--- "+day.format(DateTimeFormatter.ISO_DATE)+" ---");
-        System.out.println("Produkt\tPreis\tQualität");
+        System.out.println("Produkt\tPreis\tQualität\tAnzahl");
         System.out.println();
 
         for(Product product : products) {
-            this.sb.setLength(0);
-            this.sb.append(product.getName());
-            this.sb.append(":\t");
-            this.sb.append(priceFormat.format(product.getPrice()));
-            this.sb.append("\t");
-            this.sb.append(product.getQuality());
-            System.out.print(this.sb);
+            this.printDayRow(product);
+        }
 
-            if (product.shouldUnshelf()) {
-                System.out.print("\t<- Aus Regal entfernen!");
-            }
+        System.out.println();
+    }
 
-            System.out.println();
+    /**
+     * Same format as outputDay, but only lists the changed products. Removed products are listed afterwards, without price and quality.
+     */
+    @Override
+    public void outputChanges(LocalDate day, List<Product> changed, List<Product> removed) {
+        System.out.println("--- "+day.format(DateTimeFormatter.ISO_DATE)+" (Änderungen) ---");
+        System.out.println("Produkt\tPreis\tQualität\tAnzahl");
+        System.out.println();
+
+        for(Product product : changed) {
+            this.printDayRow(product);
+        }
+
+        for(Product product : removed) {
+            System.out.println(product.getName() + ":\t<- Aus Regal entfernt");
+        }
+
+        System.out.println();
+    }
+
+    private void printDayRow(Product product) {
+        this.sb.setLength(0);
+        this.sb.append(product.getName());
+        this.sb.append(":\t");
+        this.sb.append(priceFormat.format(product.getPrice()));
+        this.sb.append("\t");
+        this.sb.append(product.getQuality());
+        this.sb.append("\t");
+        this.sb.append(product.getQuantity());
+        System.out.print(this.sb);
+
+        if (product.shouldUnshelf()) {
+            System.out.print("\t<- Aus Regal entfernen!");
         }
 
         System.out.println();
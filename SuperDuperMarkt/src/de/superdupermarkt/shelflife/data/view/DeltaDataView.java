@@ -0,0 +1,27 @@
+package de.superdupermarkt.shelflife.data.view;
+
+import de.superdupermarkt.shelflife.data.Product;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DataView which can display only the changes of each day instead of the whole inventory.
+ * <p>
+ * Most products (e.g. GeneralProducts) keep their price and quality for weeks, so for large inventories
+ * printing every product every day mostly repeats the previous day. The detection itself is done by the engine
+ * (@see de.superdupermarkt.shelflife.engine.ChangeTrackingInventoryUpdater), the view only receives the result.
+ * <p>
+ * The regular outputDay is still part of the contract, so such a view also works with the default controller logic.
+ */
+public interface DeltaDataView extends DataView {
+    /**
+     * Used to display the changes of each update instead of outputDay.
+     * Together with the initial inventory (@see outputInventory) the full inventory of every day can be reconstructed.
+     *
+     * @param day The concrete day for which the result was calculated
+     * @param changed The products whose quality, price or unshelf flag changed since the last update
+     * @param removed The products which were taken off the shelf since the last update
+     */
+    void outputChanges(LocalDate day, List<Product> changed, List<Product> removed);
+}
@@ -31,4 +31,15 @@ public interface ErrorReporter {
     interface Error {
         String getMessage();
     }
+
+    /**
+     * An Error which only adds context (like the file it occurred in) to another Error or Exception.
+     * Reporters which group errors by their class (@see AggregatingErrorReporter) use the class of the original instead of the wrapper.
+     */
+    interface WrappedError extends Error {
+        /**
+         * @return The class of the wrapped Error or Exception
+         */
+        Class<?> getCauseType();
+    }
 }
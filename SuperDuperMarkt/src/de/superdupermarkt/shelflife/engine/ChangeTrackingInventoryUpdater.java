@@ -0,0 +1,112 @@
+package de.superdupermarkt.shelflife.engine;
+
+import de.superdupermarkt.shelflife.data.Product;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decorator pattern. Wraps another InventoryUpdater and records which products changed during each update.
+ * <p>
+ * Before delegating, the quality, price and unshelf flag of every product is copied into a few reused arrays.
+ * Since all updaters keep the order and only remove products, the result can then be matched against this snapshot in a single pass.
+ * Products whose state differs are collected as changed, products missing from the result as removed.
+ * <p>
+ * This moves change detection into the engine, so views can print just the changes (@see DeltaDataView)
+ * without keeping and comparing a copy of the previous day themselves.
+ * <p>
+ * Matching uses the identity of the products, so the wrapped updater has to return the same Product objects it was given.
+ * That is true for all updaters except the ColumnarInventoryUpdater, whose rows are views created on access.
+ * The snapshot and the result lists are reused between calls, so an instance must not be shared between threads.
+ */
+public class ChangeTrackingInventoryUpdater implements InventoryUpdater {
+    private final InventoryUpdater delegate;
+
+    private Product[] previous = new Product[0];
+    private int[] previousQuality = new int[0];
+    private double[] previousPrice = new double[0];
+    private boolean[] previousUnshelf = new boolean[0];
+
+    private final List<Product> changed = new ArrayList<>();
+    private final List<Product> removed = new ArrayList<>();
+
+    public ChangeTrackingInventoryUpdater(InventoryUpdater delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void close() {
+        this.delegate.close();
+    }
+
+    @Override
+    public List<Product> update(List<Product> products, LocalDate day, int passedDays) {
+        int count = this.snapshot(products);
+
+        List<Product> result = this.delegate.update(products, day, passedDays);
+
+        this.changed.clear();
+        this.removed.clear();
+
+        int index = 0;
+        for(Product product : result) {
+            while(index < count && this.previous[index] != product) {
+                this.removed.add(this.previous[index++]);
+            }
+            if(index == count) {
+                throw new IllegalStateException("Updated inventory does not contain the same product objects, changes cannot be tracked for "+ this.delegate.getClass().getSimpleName());
+            }
+
+            if(product.getQuality() != this.previousQuality[index]
+                    || product.getPrice() != this.previousPrice[index]
+                    || product.shouldUnshelf() != this.previousUnshelf[index]) {
+                this.changed.add(product);
+            }
+            index++;
+        }
+        while(index < count) {
+            this.removed.add(this.previous[index++]);
+        }
+
+        Arrays.fill(this.previous, 0, count, null); //no need to keep removed products alive until the next call
+        return result;
+    }
+
+    /**
+     * @return The products of the last update whose quality, price or unshelf flag changed, in inventory order. Only valid until the next update.
+     */
+    public List<Product> getChanged() {
+        return Collections.unmodifiableList(this.changed);
+    }
+
+    /**
+     * @return The products which were taken off the shelf during the last update, in inventory order. Only valid until the next update.
+     */
+    public List<Product> getRemoved() {
+        return Collections.unmodifiableList(this.removed);
+    }
+
+    private int snapshot(List<Product> products) {
+        int count = products.size();
+        if(this.previous.length < count) {
+            this.previous = new Product[count];
+            this.previousQuality = new int[count];
+            this.previousPrice = new double[count];
+            this.previousUnshelf = new boolean[count];
+        }
+
+        int index = 0;
+        for(Product product : products) {
+            this.previous[index] = product;
+            this.previousQuality[index] = product.getQuality();
+            this.previousPrice[index] = product.getPrice();
+            this.previousUnshelf[index] = product.shouldUnshelf();
+            index++;
+        }
+
+        return count;
+    }
+}
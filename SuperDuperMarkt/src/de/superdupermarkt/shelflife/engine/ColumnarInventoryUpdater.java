@@ -0,0 +1,25 @@
+package de.superdupermarkt.shelflife.engine;
+
+import de.superdupermarkt.shelflife.data.ColumnarInventory;
+import de.superdupermarkt.shelflife.data.Product;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * InventoryUpdater which keeps the inventory in a ColumnarInventory instead of a list of Product objects.
+ * <p>
+ * The loaded list is converted on the first update, afterwards the same ColumnarInventory is updated in place and returned each day.
+ * Views therefore have to finish working with the list during outputDay, which all current views do.
+ */
+public class ColumnarInventoryUpdater implements InventoryUpdater {
+    @Override
+    public List<Product> update(List<Product> products, LocalDate day, int passedDays) {
+        ColumnarInventory inventory = products instanceof ColumnarInventory columnar
+                ? columnar
+                : ColumnarInventory.of(products);
+
+        inventory.update(day, passedDays);
+        return inventory;
+    }
+}
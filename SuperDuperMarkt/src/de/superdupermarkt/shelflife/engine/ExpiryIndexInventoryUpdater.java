@@ -0,0 +1,235 @@
+package de.superdupermarkt.shelflife.engine;
+
+import de.superdupermarkt.shelflife.data.Product;
+import de.superdupermarkt.shelflife.data.ProductType;
+
+import java.time.LocalDate;
+import java.util.AbstractSequentialList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * InventoryUpdater which schedules removals ahead of time instead of checking every product every day.
+ * <p>
+ * Products whose rule can predict the removal day (@see ProductRule#predictUnshelfDay) are put into an expiry index,
+ * a calendar queue of buckets keyed by that day. Each update only takes the buckets of the passed days out of the queue,
+ * so removing products costs O(removed) instead of O(inventory).
+ * Products whose rule also has a constant state (@see ProductRule#isStateConstant) are not touched at all until their day has come.
+ * All other products are updated daily, and products without a prediction fall back to the daily removal check.
+ * <p>
+ * The remaining products are kept in load order via a doubly linked list over their load index, which allows removals
+ * from anywhere in O(1) without moving any other product. The returned list is a view of that linked list,
+ * it changes with every update and should only be iterated, not accessed by index.
+ * <p>
+ * The state is kept between calls, so an instance must not be shared between threads.
+ */
+public class ExpiryIndexInventoryUpdater implements InventoryUpdater {
+    private static final int NONE = -1;
+
+    private Product[] products = new Product[0]; //by load index, null once removed
+    private int[] next;
+    private int[] prev;
+    private int head = NONE;
+    private int size = 0;
+
+    private IntList active = new IntList(); //load indices of products which have to be updated daily
+    private boolean[] predicted; //by load index, true if the removal is handled by the expiry index
+    private final TreeMap<LocalDate, IntList> expiryIndex = new TreeMap<>();
+
+    private final List<Product> view = new AbstractSequentialList<>() {
+        @Override
+        public ListIterator<Product> listIterator(int index) {
+            return new LinkedIterator(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    @Override
+    public List<Product> update(List<Product> products, LocalDate day, int passedDays) {
+        if(products != this.view) {
+            this.load(products, day.minusDays(passedDays - 1)); //the first update already covers all passed days
+        }
+
+        //everything flagged on one of the passed days (but not on the current one) has been taken off the shelf by now
+        while(!this.expiryIndex.isEmpty() && this.expiryIndex.firstKey().isBefore(day)) {
+            IntList expired = this.expiryIndex.pollFirstEntry().getValue();
+            for(int i = 0; i < expired.size; i++) {
+                this.remove(expired.values[i]);
+            }
+        }
+
+        int remainingActive = 0;
+        for(int i = 0; i < this.active.size; i++) {
+            int index = this.active.values[i];
+            Product product = this.products[index];
+            if(product == null) { continue; } //already removed via the expiry index
+
+            if(product.update(day, passedDays) || this.predicted[index]) { //predicted removals are left to the expiry index
+                this.active.values[remainingActive++] = index;
+            } else {
+                this.remove(index);
+            }
+        }
+        this.active.size = remainingActive;
+
+        //products with a constant state only need the update on the day they are flagged
+        IntList flagged = this.expiryIndex.get(day);
+        if(flagged != null) {
+            for(int i = 0; i < flagged.size; i++) {
+                Product product = this.products[flagged.values[i]];
+                if(product != null && product.getType().isStateConstant()) {
+                    product.update(day);
+                }
+            }
+        }
+
+        return this.view;
+    }
+
+    /**
+     * @param day The first day covered by the first update
+     */
+    private void load(List<Product> products, LocalDate day) {
+        this.products = products.toArray(new Product[0]);
+        this.next = new int[this.products.length];
+        this.prev = new int[this.products.length];
+        this.predicted = new boolean[this.products.length];
+        this.active = new IntList();
+        this.expiryIndex.clear();
+
+        this.size = this.products.length;
+        this.head = this.size > 0 ? 0 : NONE;
+        for(int index = 0; index < this.size; index++) {
+            this.next[index] = index + 1 < this.size ? index + 1 : NONE;
+            this.prev[index] = index - 1;
+
+            Product product = this.products[index];
+            if(product.shouldUnshelf()) {
+                //flagged during loading, removed on the first day. Scheduled as if it was flagged the day before
+                this.expiryIndex.computeIfAbsent(day.minusDays(1), unused -> new IntList()).add(index);
+                this.predicted[index] = true;
+                continue;
+            }
+
+            ProductType type = product.getType();
+            LocalDate unshelfDay = type.predictUnshelfDay(product, day);
+            if(unshelfDay != null) {
+                this.predicted[index] = true;
+                if(!unshelfDay.equals(LocalDate.MAX)) {
+                    this.expiryIndex.computeIfAbsent(unshelfDay, unused -> new IntList()).add(index);
+                }
+            }
+
+            if(unshelfDay == null || !type.isStateConstant()) {
+                this.active.add(index);
+            }
+        }
+    }
+
+    private void remove(int index) {
+        if(this.products[index] == null) { return; }
+
+        int before = this.prev[index];
+        int after = this.next[index];
+        if(before == NONE) { this.head = after; } else { this.next[before] = after; }
+        if(after != NONE) { this.prev[after] = before; }
+
+        this.products[index] = null;
+        this.size--;
+    }
+
+    /**
+     * Minimal growable int array, to avoid boxing every index in a List of Integers.
+     */
+    private static class IntList {
+        private int[] values = new int[8];
+        private int size = 0;
+
+        void add(int value) {
+            if(this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+        }
+    }
+
+    /**
+     * Read only iterator following the linked list of remaining products.
+     */
+    private class LinkedIterator implements ListIterator<Product> {
+        private int nextIndex; //load index of the element returned by next(), NONE at the end
+        private int lastIndex = NONE; //load index of the last element in the list, used to step back from the end
+        private int position = 0;
+
+        LinkedIterator(int position) {
+            if(position < 0 || position > size) { throw new IndexOutOfBoundsException(position); }
+
+            this.nextIndex = head;
+            while(this.position < position) {
+                this.next();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextIndex != NONE;
+        }
+
+        @Override
+        public Product next() {
+            if(!this.hasNext()) { throw new NoSuchElementException(); }
+
+            this.lastIndex = this.nextIndex;
+            this.nextIndex = next[this.nextIndex];
+            this.position++;
+            return products[this.lastIndex];
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return this.position > 0;
+        }
+
+        @Override
+        public Product previous() {
+            if(!this.hasPrevious()) { throw new NoSuchElementException(); }
+
+            this.nextIndex = this.nextIndex == NONE ? this.lastIndex : prev[this.nextIndex];
+            this.lastIndex = prev[this.nextIndex];
+            this.position--;
+            return products[this.nextIndex];
+        }
+
+        @Override
+        public int nextIndex() {
+            return this.position;
+        }
+
+        @Override
+        public int previousIndex() {
+            return this.position - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(Product product) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(Product product) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
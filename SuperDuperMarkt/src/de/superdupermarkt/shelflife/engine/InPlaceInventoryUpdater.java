@@ -0,0 +1,58 @@
+package de.superdupermarkt.shelflife.engine;
+
+import de.superdupermarkt.shelflife.data.Product;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * InventoryUpdater which does not allocate anything per day once the inventory has been loaded.
+ * <p>
+ * The products are copied into a backing array on the first update. Afterwards each update compacts this array in place,
+ * moving the remaining products to the front, and returns the same read only list view over it.
+ * For millions of products this avoids a new list (and a lot of garbage collection) each day.
+ * <p>
+ * Since the returned list changes with every update, views have to finish working with it during outputDay.
+ * The backing array is reused between calls, so an instance must not be shared between threads.
+ */
+public class InPlaceInventoryUpdater implements InventoryUpdater {
+    private Product[] products = new Product[0];
+    private int size = 0;
+
+    private final List<Product> view = new AbstractList<>() {
+        @Override
+        public Product get(int index) {
+            Objects.checkIndex(index, size);
+            return products[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    @Override
+    public List<Product> update(List<Product> products, LocalDate day, int passedDays) {
+        if(products != this.view) {
+            this.products = products.toArray(new Product[0]);
+            this.size = this.products.length;
+        }
+
+        int remaining = 0;
+        for(int i = 0; i < this.size; i++) {
+            Product product = this.products[i];
+            if(product.update(day, passedDays)) {
+                this.products[remaining++] = product;
+            }
+        }
+
+        Arrays.fill(this.products, remaining, this.size, null); //no need to keep removed products alive
+        this.size = remaining;
+
+        return this.view;
+    }
+}
@@ -0,0 +1,34 @@
+package de.superdupermarkt.shelflife.engine;
+
+import de.superdupermarkt.shelflife.data.Product;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Strategy pattern. Encapsulates how the ShelfController advances the whole inventory by one step.
+ * <p>
+ * This keeps the controller logic (loading, which days to report, output) independent of how the actual work is scheduled,
+ * e.g. sequentially on the calling thread or split up over several cores.
+ * <p>
+ * All implementations have to produce exactly the same result, including the order of the returned products.
+ */
+public interface InventoryUpdater extends AutoCloseable {
+    /**
+     * Updates all products for the given day and removes the products which were taken off the shelf.
+     * @see Product#update(LocalDate, int)
+     *
+     * @param products The products currently on the shelf, in load order
+     * @param day The day for which the update occurs
+     * @param passedDays The amount of days since the last update, at least 1
+     * @return The updated products still on the shelf, in the same order as the given list
+     */
+    List<Product> update(List<Product> products, LocalDate day, int passedDays);
+
+    /**
+     * Releases resources kept between two updates, like the threads of a ParallelInventoryUpdater.
+     * Most updaters only work on the calling thread, so the default implementation does nothing.
+     */
+    @Override
+    default void close() {}
+}
@@ -0,0 +1,100 @@
+package de.superdupermarkt.shelflife.engine;
+
+import de.superdupermarkt.shelflife.data.Product;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * InventoryUpdater which splits the inventory into chunks and updates them concurrently on a ForkJoinPool.
+ * <p>
+ * Products do not interact with each other and the ProductTypes are stateless, so each chunk can be processed independently.
+ * The surviving products of each chunk are concatenated in chunk order afterwards, which keeps the result deterministic
+ * and identical to the sequential implementation.
+ * <p>
+ * A parallel stream would achieve much the same, but it always runs on the common pool and gives no control
+ * over the chunk sizes. Rules from modules have to be thread safe to be used with this class.
+ * <p>
+ * The pool belongs to this updater, so it has to be closed once the last day was updated, which shuts the threads down.
+ */
+public class ParallelInventoryUpdater implements InventoryUpdater {
+    /**
+     * Below this size the overhead of splitting outweighs the gain, so small inventories are processed as a single chunk.
+     */
+    private static final int MIN_CHUNK_SIZE = 4096;
+
+    /**
+     * More chunks than threads, so threads finishing early can steal work from slower ones.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param parallelism The number of threads to use
+     */
+    public ParallelInventoryUpdater(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    @Override
+    public List<Product> update(List<Product> products, LocalDate day, int passedDays) {
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, products.size() / (this.pool.getParallelism() * CHUNKS_PER_THREAD) + 1);
+
+        List<ChunkUpdate> chunks = new ArrayList<>();
+        for(int from = 0; from < products.size(); from += chunkSize) {
+            chunks.add(new ChunkUpdate(products.subList(from, Math.min(from + chunkSize, products.size())), day, passedDays));
+        }
+
+        //invokeAll blocks until all chunks are done, the join afterwards only collects the results in the original order
+        this.pool.submit(() -> ForkJoinTask.invokeAll(chunks)).join();
+
+        List<Product> result = new ArrayList<>(products.size());
+        for(ChunkUpdate chunk : chunks) {
+            result.addAll(chunk.join());
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Shuts the pool down, running updates still finish.
+     */
+    @Override
+    public void close() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Updates one contiguous range of the inventory and returns the products still on the shelf.
+     */
+    @SuppressWarnings("serial") //ForkJoinTasks are Serializable, but these are only ever run within this process
+    private static class ChunkUpdate extends RecursiveTask<List<Product>> {
+        private final List<Product> chunk;
+        private final LocalDate day;
+        private final int passedDays;
+
+        ChunkUpdate(List<Product> chunk, LocalDate day, int passedDays) {
+            this.chunk = chunk;
+            this.day = day;
+            this.passedDays = passedDays;
+        }
+
+        @Override
+        protected List<Product> compute() {
+            List<Product> remaining = new ArrayList<>(this.chunk.size());
+            for(Product product : this.chunk) {
+                if(product.update(this.day, this.passedDays)) {
+                    remaining.add(product);
+                }
+            }
+
+            return remaining;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package de.superdupermarkt.shelflife.engine;
+
+import de.superdupermarkt.shelflife.data.Product;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Default InventoryUpdater, processes all products one after another on the calling thread.
+ */
+public class SequentialInventoryUpdater implements InventoryUpdater {
+    @Override
+    public List<Product> update(List<Product> products, LocalDate day, int passedDays) {
+        return products.stream()
+                .filter(product -> product.update(day, passedDays)) //filters out all products which were removed during the passed days
+                .toList(); //typical functional style with immutable lists. A new list is allocated each time, but it's fine for small lists like these
+                           //the alternative without the list reallocation is the InPlaceInventoryUpdater
+    }
+}
@@ -0,0 +1,86 @@
+package de.superdupermarkt.shelflife.engine;
+
+import de.superdupermarkt.shelflife.data.Product;
+import de.superdupermarkt.shelflife.data.ProductType;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * InventoryUpdater which partitions the inventory by ProductType and hands each partition to its rule in a single batch call.
+ * @see de.superdupermarkt.shelflife.rules.ProductRule#update(Product[], int, LocalDate, int, boolean[])
+ * <p>
+ * Each rule then only ever sees products of its own type, which keeps the call sites inside the rules monomorphic.
+ * The results are written back by position, so the returned list keeps the original order.
+ * <p>
+ * The batch buffers are kept between calls to avoid reallocating them every day, so an instance must not be shared between threads.
+ */
+public class TypeBatchInventoryUpdater implements InventoryUpdater {
+    private final Map<ProductType, Batch> batches = new HashMap<>();
+    private boolean[] onShelf = new boolean[0];
+
+    @Override
+    public List<Product> update(List<Product> products, LocalDate day, int passedDays) {
+        if(this.onShelf.length < products.size()) {
+            this.onShelf = new boolean[products.size()];
+        }
+
+        for(Batch batch : this.batches.values()) {
+            batch.count = 0;
+        }
+
+        int index = 0;
+        for(Product product : products) {
+            this.batches.computeIfAbsent(product.getType(), type -> new Batch()).add(product, index++);
+        }
+
+        this.batches.forEach((type, batch) -> {
+            if(batch.count == 0) { return; }
+
+            type.update(batch.products, batch.count, day, passedDays, batch.onShelf);
+            for(int i = 0; i < batch.count; i++) {
+                this.onShelf[batch.positions[i]] = batch.onShelf[i];
+            }
+            Arrays.fill(batch.products, 0, batch.count, null); //no need to keep removed products alive until the next call
+        });
+        this.batches.values().removeIf(batch -> batch.count == 0); //types without products (e.g. replaced by a module reload) are not kept alive either
+
+        List<Product> remaining = new ArrayList<>(products.size());
+        index = 0;
+        for(Product product : products) {
+            if(this.onShelf[index++]) {
+                remaining.add(product);
+            }
+        }
+
+        return Collections.unmodifiableList(remaining);
+    }
+
+    /**
+     * All products of one type together with their position in the inventory.
+     */
+    private static class Batch {
+        private Product[] products = new Product[16];
+        private int[] positions = new int[16];
+        private boolean[] onShelf = new boolean[16];
+        private int count = 0;
+
+        void add(Product product, int position) {
+            if(this.count == this.products.length) {
+                int capacity = this.count * 2;
+                this.products = Arrays.copyOf(this.products, capacity);
+                this.positions = Arrays.copyOf(this.positions, capacity);
+                this.onShelf = Arrays.copyOf(this.onShelf, capacity);
+            }
+
+            this.products[this.count] = product;
+            this.positions[this.count] = position;
+            this.count++;
+        }
+    }
+}
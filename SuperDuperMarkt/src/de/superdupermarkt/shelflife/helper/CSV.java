@@ -1,30 +1,46 @@
 package de.superdupermarkt.shelflife.helper;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class CSV {
-    public static <T> Map<String, T> fetchMapFromCSV(Stream<String> lines, Function<String[], T> mapper, Function<T, String> keymapper) {
-        return streamFromCSV(lines, mapper).collect(Collectors.toMap(keymapper, Function.identity()));
-    }
+    /**
+     * Slots of the StringInterner used per file, @see CSVTokenizer. Enough for the distinct types and the most frequent names.
+     */
+    public static final int INTERNER_CAPACITY = 4096;
+
+    /**
+     * @throws IllegalStateException If two lines produce the same key, like Collectors.toMap
+     */
+    public static <T> Map<String, T> fetchMapFromCSV(CSVTokenizer lines, Function<CSVTokenizer, T> mapper, Function<T, String> keymapper) throws IOException {
+        Map<String, T> result = new HashMap<>();
+        for(T value : fetchListFromCSV(lines, mapper)) {
+            T previous = result.putIfAbsent(keymapper.apply(value), value);
+            if(previous != null) {
+                throw new IllegalStateException(String.format("Duplicate key %s (attempted merging values %s and %s)", keymapper.apply(value), previous, value));
+            }
+        }
 
-    public static <T> List<T> fetchListFromCSV(Stream<String> lines, Function<String[], T> mapper) {
-        return streamFromCSV(lines, mapper).toList();
+        return result;
     }
 
-    private static <T> Stream<T> streamFromCSV(Stream<String> lines, Function<String[], T> mapper) {
-        return lines
-                .skip(1) //skip header
-                .map(line -> line.split(";"))
-                .map(mapper)
-                .filter(Objects::nonNull);
+    /**
+     * Skips the header, then passes each line to the mapper. Lines the mapper returns null for are left out.
+     */
+    public static <T> List<T> fetchListFromCSV(CSVTokenizer lines, Function<CSVTokenizer, T> mapper) throws IOException {
+        List<T> result = new ArrayList<>();
+
+        lines.nextLine(); //skip header
+        while(lines.nextLine()) {
+            T value = mapper.apply(lines);
+            if(value != null) { result.add(value); }
+        }
+
+        return Collections.unmodifiableList(result);
     }
 }
@@ -0,0 +1,326 @@
+package de.superdupermarkt.shelflife.helper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Splits semicolon separated UTF-8 data into lines and fields, working directly on the raw bytes.
+ * <p>
+ * Reading lines as Strings, splitting them and parsing each field creates around a dozen objects per line.
+ * This tokenizer only remembers where the fields of the current line start and end, and parses numbers and dates
+ * straight from these byte ranges. Strings are only created on request, and repeated values come from a StringInterner (or DateInterner).
+ * <p>
+ * The results are identical to the String based approach (String.split(";") followed by Integer.parseInt, Double.parseDouble and LocalDate.parse):
+ * <ul>
+ *     <li>Lines end with \n, \r or \r\n, like for BufferedReader#readLine.</li>
+ *     <li>Empty trailing fields are dropped, like String.split does it.</li>
+ *     <li>The fast paths only handle the plain formats which occur in practice (e.g. "-12", "1.15", "2024-12-05").
+ *         Everything else is handed to the regular parse methods, so unusual values are accepted or rejected exactly as before.</li>
+ * </ul>
+ * Decimal numbers with up to 15 digits are calculated as one exact integer divided by an exact power of ten,
+ * a single correctly rounded division, which yields the same double as Double.parseDouble.
+ * <p>
+ * Not thread safe, each thread has to use its own instance.
+ */
+public class CSVTokenizer {
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_FAST_INT_DIGITS = 9; //cannot overflow
+    private static final int MAX_FAST_DOUBLE_DIGITS = 15; //always below 2^53, so exactly representable
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final InputStream input; //null if the buffer already contains all data
+    private ByteBuffer buffer;
+    private int limit;
+    private int position = 0;
+    private long discarded = 0; //bytes of the input which were already dropped from the buffer
+    private boolean endOfInput;
+    private boolean skipLineFeed = false; //the last line ended with \r, which might be the first half of \r\n
+
+    private int lineStart = 0;
+    private int[] fieldStarts = new int[8];
+    private int[] fieldEnds = new int[8];
+    private int fieldCount = 0;
+
+    private final StringInterner interner;
+    private final DateInterner dates = new DateInterner(DateInterner.DEFAULT_CAPACITY);
+
+    /**
+     * Reads the data block by block from the given stream, which is not closed by the tokenizer.
+     */
+    public CSVTokenizer(InputStream input, StringInterner interner) {
+        this.input = input;
+        this.buffer = ByteBuffer.wrap(new byte[BLOCK_SIZE]);
+        this.limit = 0;
+        this.endOfInput = false;
+        this.interner = interner;
+    }
+
+    /**
+     * Uses data which is already in memory (e.g. a memory mapped file), from position 0 up to the limit of the buffer, without copying it.
+     */
+    public CSVTokenizer(ByteBuffer data, StringInterner interner) {
+        this.input = null;
+        this.buffer = data;
+        this.limit = data.limit();
+        this.endOfInput = true;
+        this.interner = interner;
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return false if there are no more lines
+     */
+    public boolean nextLine() throws IOException {
+        if(this.skipLineFeed) {
+            if(this.position == this.limit) { this.fill(); }
+            if(this.position < this.limit && this.buffer.get(this.position) == '\n') { this.position++; }
+            this.skipLineFeed = false;
+        }
+
+        int scan = this.position;
+        while(true) {
+            for(; scan < this.limit; scan++) {
+                byte b = this.buffer.get(scan);
+                if(b == '\n' || b == '\r') {
+                    this.acceptLine(scan);
+                    return true;
+                }
+            }
+
+            int scanned = scan - this.position; //fill moves the unprocessed data to the start of the buffer
+            if(!this.fill()) {
+                if(this.position == this.limit) { return false; }
+
+                this.acceptLine(this.limit); //the last line has no line break
+                return true;
+            }
+            scan = this.position + scanned;
+        }
+    }
+
+    private void acceptLine(int lineEnd) {
+        this.lineStart = this.position;
+        this.splitFields(this.lineStart, lineEnd);
+
+        if(lineEnd < this.limit) {
+            this.skipLineFeed = this.buffer.get(lineEnd) == '\r';
+            this.position = lineEnd + 1;
+        } else {
+            this.position = lineEnd;
+        }
+    }
+
+    /**
+     * Reads more data, keeping the unprocessed part of the buffer.
+     *
+     * @return false if there is no more data
+     */
+    private boolean fill() throws IOException {
+        if(this.endOfInput) { return false; }
+
+        byte[] array = this.buffer.array();
+        int remaining = this.limit - this.position;
+        if(remaining == array.length) { //a single line fills the whole buffer
+            array = new byte[array.length * 2];
+        }
+        System.arraycopy(this.buffer.array(), this.position, array, 0, remaining);
+        this.buffer = ByteBuffer.wrap(array);
+        this.discarded += this.position;
+        this.position = 0;
+        this.limit = remaining;
+
+        int read = this.input.read(array, remaining, array.length - remaining);
+        if(read < 0) {
+            this.endOfInput = true;
+            return false;
+        }
+
+        this.limit += read;
+        return true;
+    }
+
+    private void splitFields(int start, int end) {
+        this.fieldCount = 0;
+        int fieldStart = start;
+        for(int i = start; i <= end; i++) {
+            if(i == end || this.buffer.get(i) == ';') {
+                if(this.fieldCount == this.fieldStarts.length) {
+                    this.fieldStarts = Arrays.copyOf(this.fieldStarts, this.fieldCount * 2);
+                    this.fieldEnds = Arrays.copyOf(this.fieldEnds, this.fieldCount * 2);
+                }
+                this.fieldStarts[this.fieldCount] = fieldStart;
+                this.fieldEnds[this.fieldCount] = i;
+                this.fieldCount++;
+                fieldStart = i + 1;
+            }
+        }
+
+        if(end == start) { return; } //an empty line is a single empty field for String.split
+
+        while(this.fieldCount > 0 && this.fieldStarts[this.fieldCount - 1] == this.fieldEnds[this.fieldCount - 1]) {
+            this.fieldCount--;
+        }
+    }
+
+    public int fieldCount() {
+        return this.fieldCount;
+    }
+
+    /**
+     * @return The content of the field, repeated values share one instance
+     */
+    public String field(int index) {
+        return this.field(index, this.interner);
+    }
+
+    /**
+     * Same as field(index), but uses the given StringInterner. Allows columns with very different values to use separate tables,
+     * e.g. so a few types are never pushed out of the table by hundreds of thousands of names.
+     */
+    public String field(int index, StringInterner interner) {
+        return interner.intern(this.buffer, this.fieldStarts[index], this.fieldEnds[index]);
+    }
+
+    /**
+     * @return The fields of the current line joined by semicolons, like String.join(";", line.split(";")). Meant for error messages.
+     */
+    public String line() {
+        return this.interner.decode(this.buffer, this.lineStart, this.lineStart + this.lineLength());
+    }
+
+    /**
+     * Same content as line(), but as a copy of the raw UTF-8 bytes. Errors keep these and only decode them once their message is
+     * actually shown, so lines which are counted but never printed (@see AggregatingErrorReporter) never become Strings.
+     */
+    public byte[] lineBytes() {
+        byte[] line = new byte[this.lineLength()];
+        this.buffer.get(this.lineStart, line);
+        return line;
+    }
+
+    /**
+     * @return The position of the current line in bytes, relative to the start of the input
+     */
+    public long lineOffset() {
+        return this.discarded + this.lineStart;
+    }
+
+    /**
+     * @return The length in bytes of the content returned by line()
+     */
+    public int lineLength() {
+        return (this.fieldCount == 0 ? this.lineStart : this.fieldEnds[this.fieldCount - 1]) - this.lineStart;
+    }
+
+    /**
+     * Same result as Integer.parseInt for the content of the field.
+     */
+    public int intField(int index) {
+        int start = this.fieldStarts[index];
+        int end = this.fieldEnds[index];
+
+        boolean negative = false;
+        int i = start;
+        if(i < end && (this.buffer.get(i) == '-' || this.buffer.get(i) == '+')) {
+            negative = this.buffer.get(i) == '-';
+            i++;
+        }
+
+        if(i == end || end - i > MAX_FAST_INT_DIGITS) {
+            return Integer.parseInt(this.interner.decode(this.buffer, start, end));
+        }
+
+        int value = 0;
+        for(; i < end; i++) {
+            int digit = this.buffer.get(i) - '0';
+            if(digit < 0 || digit > 9) {
+                return Integer.parseInt(this.interner.decode(this.buffer, start, end));
+            }
+            value = value * 10 + digit;
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Same result as Double.parseDouble for the content of the field.
+     */
+    public double doubleField(int index) {
+        int start = this.fieldStarts[index];
+        int end = this.fieldEnds[index];
+
+        boolean negative = false;
+        int i = start;
+        if(i < end && (this.buffer.get(i) == '-' || this.buffer.get(i) == '+')) {
+            negative = this.buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1; //-1 until the decimal point was found
+        for(; i < end; i++) {
+            byte b = this.buffer.get(i);
+            if(b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if(b >= '0' && b <= '9' && digits < MAX_FAST_DOUBLE_DIGITS) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if(fractionDigits >= 0) { fractionDigits++; }
+            } else { //exponents, whitespace, too many digits etc.
+                return Double.parseDouble(this.interner.decode(this.buffer, start, end));
+            }
+        }
+
+        if(digits == 0) {
+            return Double.parseDouble(this.interner.decode(this.buffer, start, end));
+        }
+
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Same result as LocalDate.parse with DateTimeFormatter.ISO_DATE for the content of the field, repeated dates share one instance.
+     */
+    public LocalDate dateField(int index) {
+        int start = this.fieldStarts[index];
+        int end = this.fieldEnds[index];
+
+        if(end - start == 10 && this.buffer.get(start + 4) == '-' && this.buffer.get(start + 7) == '-') {
+            int year = this.digits(start, start + 4);
+            int month = this.digits(start + 5, start + 7);
+            int day = this.digits(start + 8, start + 10);
+            if(year >= 0 && month >= 0 && day >= 0) {
+                try {
+                    return this.dates.of(year, month, day);
+                } catch (DateTimeException ex) {
+                    //invalid dates like 2024-02-30 fall through, so the parser reports them the usual way
+                }
+            }
+        }
+
+        return LocalDate.parse(this.interner.decode(this.buffer, start, end), DateTimeFormatter.ISO_DATE);
+    }
+
+    /**
+     * @return The value of the ASCII digits in the given range, -1 if there is any other character
+     */
+    private int digits(int start, int end) {
+        int value = 0;
+        for(int i = start; i < end; i++) {
+            int digit = this.buffer.get(i) - '0';
+            if(digit < 0 || digit > 9) { return -1; }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,40 @@
+package de.superdupermarkt.shelflife.helper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens files which might be gzip compressed, so the loaders can read exports as they arrive without unpacking them first.
+ * <p>
+ * Compressed files are recognized by their magic bytes instead of the extension, so renamed files are handled as well.
+ * They are decompressed on a separate thread (@see ReadAheadInputStream), so the parser does not have to wait for the decompression.
+ */
+public class CompressedFiles {
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    private CompressedFiles() {}
+
+    /**
+     * @return true if the file starts with the gzip magic bytes
+     */
+    public static boolean isGzip(Path file) throws IOException {
+        try(InputStream input = Files.newInputStream(file)) {
+            return input.read() == GZIP_MAGIC_1 && input.read() == GZIP_MAGIC_2;
+        }
+    }
+
+    /**
+     * @return The content of the file, decompressed if necessary
+     */
+    public static InputStream open(Path file) throws IOException {
+        if(!isGzip(file)) {
+            return Files.newInputStream(file);
+        }
+
+        return new ReadAheadInputStream(new GZIPInputStream(Files.newInputStream(file), ReadAheadInputStream.DEFAULT_BLOCK_SIZE));
+    }
+}
@@ -0,0 +1,89 @@
+package de.superdupermarkt.shelflife.helper;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Parses dates in the fixed yyyy-MM-dd layout directly, and returns the same LocalDate instance for repeated values.
+ * <p>
+ * Product data usually contains only a few thousand distinct due dates across millions of rows.
+ * The general purpose DateTimeFormatter creates several intermediate objects for each of them, while this class only reads
+ * the ten characters and looks up the result. Anything which does not fit the fixed layout, or is not a valid date,
+ * is handed to the given DateTimeFormatter, so the results and exceptions are exactly the same as before.
+ * <p>
+ * Direct mapped, unlike the set associative StringInterner: each date has exactly one slot, so the memory use is fixed
+ * and colliding dates simply replace each other. With only a few thousand distinct dates collisions are rare enough
+ * that checking further slots would not pay off.
+ * Not thread safe, each thread has to use its own instance.
+ */
+public class DateInterner {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int[] keys; //yyyyMMdd, 0 for empty slots since there is no month 0
+    private final LocalDate[] values;
+    private final int mask;
+
+    /**
+     * @param capacity The number of slots, rounded up to a power of two
+     */
+    public DateInterner(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.keys = new int[size];
+        this.values = new LocalDate[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Like LocalDate.of, for years with up to four digits.
+     *
+     * @throws DateTimeException If the date is not valid
+     */
+    public LocalDate of(int year, int month, int dayOfMonth) {
+        int key = year * 10000 + month * 100 + dayOfMonth;
+        int slot = (key ^ (key >>> 12)) & this.mask;
+
+        if(this.keys[slot] == key && this.values[slot] != null) {
+            return this.values[slot];
+        }
+
+        LocalDate date = LocalDate.of(year, month, dayOfMonth);
+        this.keys[slot] = key;
+        this.values[slot] = date;
+        return date;
+    }
+
+    /**
+     * Same result as LocalDate.parse(text, fallbackFormat), for formats which read yyyy-MM-dd as the plain date
+     * (like DateTimeFormatter.ISO_DATE or DateTimeFormatter.ofPattern("yyyy-MM-dd")).
+     */
+    public LocalDate parse(CharSequence text, DateTimeFormatter fallbackFormat) {
+        if(text.length() == 10 && text.charAt(4) == '-' && text.charAt(7) == '-') {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 7);
+            int day = digits(text, 8, 10);
+            if(year > 0 && month >= 0 && day >= 0) { //year 0 is handled differently by year-of-era patterns like "yyyy"
+                try {
+                    return this.of(year, month, day);
+                } catch (DateTimeException ex) {
+                    //invalid dates like 2024-02-30 fall through, so the formatter handles them the usual way
+                }
+            }
+        }
+
+        return LocalDate.parse(text, fallbackFormat);
+    }
+
+    /**
+     * @return The value of the ASCII digits in the given range, -1 if there is any other character
+     */
+    private static int digits(CharSequence text, int start, int end) {
+        int value = 0;
+        for(int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if(digit < 0 || digit > 9) { return -1; }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
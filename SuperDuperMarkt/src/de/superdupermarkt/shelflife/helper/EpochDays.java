@@ -0,0 +1,55 @@
+package de.superdupermarkt.shelflife.helper;
+
+/**
+ * Calendar calculations on epoch days (days since 1970-01-01, @see java.time.LocalDate#toEpochDay) without creating LocalDate objects.
+ * <p>
+ * Rules working on epoch days (@see de.superdupermarkt.shelflife.rules.ProductRule#supportsEpochDays) can compare dates via plain arithmetic,
+ * but some also need the month or year of a day. The conversion uses the well known "civil from days" algorithm by Howard Hinnant,
+ * which splits the proleptic gregorian calendar into 400 year eras and counts years from March, so the leap day is the last day of a year.
+ */
+public class EpochDays {
+    private static final long DAYS_PER_ERA = 146097;
+    private static final long DAYS_0000_TO_1970 = 719468; //from 0000-03-01 to 1970-01-01
+
+    private EpochDays() {}
+
+    public static long of(int year, int month, int dayOfMonth) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era*400;
+        long dayOfYear = (153*(month > 2 ? month - 3 : month + 9) + 2)/5 + dayOfMonth - 1;
+        long dayOfEra = yearOfEra*365 + yearOfEra/4 - yearOfEra/100 + dayOfYear;
+        return era*DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    public static int year(long epochDay) {
+        long days = epochDay + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(days, DAYS_PER_ERA);
+        long dayOfEra = days - era*DAYS_PER_ERA;
+        long yearOfEra = yearOfEra(dayOfEra);
+        long year = yearOfEra + era*400;
+        return (int)(monthFromMarch(dayOfEra, yearOfEra) >= 10 ? year + 1 : year); //January and February belong to the next year
+    }
+
+    /**
+     * @return The month from 1 (January) to 12 (December)
+     */
+    public static int month(long epochDay) {
+        long days = epochDay + DAYS_0000_TO_1970;
+        long dayOfEra = days - Math.floorDiv(days, DAYS_PER_ERA)*DAYS_PER_ERA;
+        long monthFromMarch = monthFromMarch(dayOfEra, yearOfEra(dayOfEra));
+        return (int)(monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9);
+    }
+
+    private static long yearOfEra(long dayOfEra) {
+        return (dayOfEra - dayOfEra/1460 + dayOfEra/36524 - dayOfEra/146096)/365;
+    }
+
+    /**
+     * @return The month counted from March (0) to February (11)
+     */
+    private static long monthFromMarch(long dayOfEra, long yearOfEra) {
+        long dayOfYear = dayOfEra - (365*yearOfEra + yearOfEra/4 - yearOfEra/100);
+        return (5*dayOfYear + 2)/153;
+    }
+}
@@ -0,0 +1,128 @@
+package de.superdupermarkt.shelflife.helper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads another stream ahead on its own thread, so producing the data (e.g. decompressing it) and processing it run at the same time.
+ * <p>
+ * Producer-Consumer pattern with a fixed ring of buffers: the background thread fills free buffers and queues them,
+ * the reader of this stream takes them in order and hands them back once they are consumed.
+ * The number of buffers limits how far the background thread can get ahead, so the memory use is fixed no matter how large the input is.
+ * <p>
+ * Exceptions of the background thread (of any kind, so a failing source never leaves the reader waiting forever)
+ * are rethrown as IOException by the next read, after all data read before the exception was consumed.
+ * Like most streams this one is meant to be read by a single thread.
+ */
+public class ReadAheadInputStream extends InputStream {
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    public static final int DEFAULT_BLOCKS = 4;
+
+    /**
+     * A filled buffer. The last block of the input has a length of -1.
+     */
+    private record Block(byte[] data, int length) {}
+
+    private final BlockingQueue<byte[]> free;
+    private final BlockingQueue<Block> filled;
+    private final Thread reader;
+    private volatile Throwable failure;
+
+    private Block current;
+    private int position = 0;
+
+    public ReadAheadInputStream(InputStream source) {
+        this(source, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCKS);
+    }
+
+    /**
+     * @param source Read on a background thread, and closed by it once the input ended or this stream was closed
+     * @param blockSize The size of each buffer in bytes
+     * @param blocks The number of buffers
+     */
+    public ReadAheadInputStream(InputStream source, int blockSize, int blocks) {
+        this.free = new ArrayBlockingQueue<>(blocks);
+        this.filled = new ArrayBlockingQueue<>(blocks + 1); //room for the end marker, even if all buffers are filled
+        for(int i = 0; i < blocks; i++) {
+            this.free.add(new byte[blockSize]);
+        }
+        this.current = new Block(new byte[0], 0);
+
+        this.reader = new Thread(() -> this.readAhead(source), "ReadAhead");
+        this.reader.setDaemon(true); //never keeps the application alive, e.g. while blocked on System.in
+        this.reader.start();
+    }
+
+    private void readAhead(InputStream source) {
+        try(source) {
+            while(true) {
+                byte[] buffer = this.free.take();
+                int length = source.readNBytes(buffer, 0, buffer.length);
+                if(length == 0) { break; }
+
+                this.filled.put(new Block(buffer, length));
+            }
+        } catch (InterruptedException ex) {
+            //closed, nobody is waiting for more data
+        } catch (Throwable ex) {
+            this.failure = ex;
+        } finally {
+            this.filled.add(new Block(null, -1)); //never blocks, since the queue has room for all buffers and the end marker
+        }
+    }
+
+    /**
+     * @return false if the input ended
+     */
+    private boolean nextBlock() throws IOException {
+        if(this.current.length() < 0) { return false; }
+
+        if(this.current.data().length > 0) { this.free.add(this.current.data()); }
+        try {
+            this.current = this.filled.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for data");
+        }
+        this.position = 0;
+
+        if(this.current.length() < 0) {
+            if(this.failure != null) { throw new IOException(this.failure.toString(), this.failure); }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(this.position >= this.current.length() && !this.nextBlock()) { return -1; }
+        return this.current.data()[this.position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) { return 0; }
+        if(this.position >= this.current.length() && !this.nextBlock()) { return -1; }
+
+        int read = Math.min(len, this.current.length() - this.position);
+        System.arraycopy(this.current.data(), this.position, b, off, read);
+        this.position += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return Math.max(0, this.current.length() - this.position);
+    }
+
+    /**
+     * Stops the background thread, which closes the source stream.
+     */
+    @Override
+    public void close() {
+        this.reader.interrupt();
+    }
+}
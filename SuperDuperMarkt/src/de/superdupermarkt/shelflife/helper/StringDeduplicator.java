@@ -0,0 +1,53 @@
+package de.superdupermarkt.shelflife.helper;
+
+/**
+ * Small cache which returns the same String instance for equal Strings, for data which already arrives as Strings (e.g. from JDBC).
+ * <p>
+ * Counterpart to StringInterner: each row still creates its own String, but it is only short lived. The products keep the shared instance,
+ * so a name repeated across millions of rows only takes up memory once.
+ * Unlike String#intern the table is bounded and only lives as long as the load, so it does not fill up the JVM wide string pool.
+ * <p>
+ * Set associative like StringInterner, with the same tradeoffs.
+ * Not thread safe, each thread has to use its own instance.
+ */
+public class StringDeduplicator {
+    private static final int WAYS = 8; //slots per value
+
+    private final String[] values;
+    private final int mask;
+
+    /**
+     * @param capacity The number of slots, rounded up to a power of two
+     */
+    public StringDeduplicator(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.values = new String[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return An equal String, the same instance as for earlier calls with equal content if it is still cached. Null for null.
+     */
+    public String deduplicate(String value) {
+        if(value == null) { return null; }
+
+        int hash = value.hashCode() * 0x9E3779B9; //spreads similar values (like names which only differ in a number) over the whole table
+        int home = (hash ^ (hash >>> 16)) & this.mask;
+
+        int free = home; //replaced if all slots are taken
+        for(int way = 0; way < WAYS; way++) {
+            int slot = (home + way) & this.mask;
+            String cached = this.values[slot];
+            if(cached == null) {
+                free = slot;
+                break; //slots are never emptied, so a value seen before would have been stored here at the latest
+            }
+            if(cached.equals(value)) {
+                return cached;
+            }
+        }
+
+        this.values[free] = value;
+        return value;
+    }
+}
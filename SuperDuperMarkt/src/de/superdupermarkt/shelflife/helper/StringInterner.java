@@ -0,0 +1,91 @@
+package de.superdupermarkt.shelflife.helper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Small cache which turns UTF-8 byte ranges into Strings, returning the same String instance for repeated values.
+ * <p>
+ * Columns like the type or the product name repeat a lot in large files. Looking up the bytes directly
+ * avoids creating a String just to find out that an equal one already exists, and all repeated values share one instance afterwards.
+ * <p>
+ * Set associative, like a CPU cache: each value can only be stored in a few neighbouring slots, determined by its hash.
+ * If all of them are taken, the new value replaces the one in the first slot.
+ * This keeps the memory use fixed and lookups cheap, at the cost of a few more Strings for unlucky collisions
+ * or if there are more distinct values than slots.
+ * Not thread safe, each thread has to use its own instance.
+ */
+public class StringInterner {
+    private static final int WAYS = 8; //slots per value
+
+    private final byte[][] keys;
+    private final String[] values;
+    private final int mask;
+
+    private byte[] scratch = new byte[64]; //only used for buffers without an accessible array
+
+    /**
+     * @param capacity The number of slots, rounded up to a power of two
+     */
+    public StringInterner(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.keys = new byte[size][];
+        this.values = new String[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return A String with the decoded content of the given range, the same instance as for earlier calls with equal content if it is still cached
+     */
+    public String intern(ByteBuffer buffer, int start, int end) {
+        int hash = 1;
+        for(int i = start; i < end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        hash *= 0x9E3779B9; //spreads similar values (like names which only differ in a number) over the whole table
+        int home = (hash ^ (hash >>> 16)) & this.mask;
+
+        int free = home; //replaced if all slots are taken
+        for(int way = 0; way < WAYS; way++) {
+            int slot = (home + way) & this.mask;
+            byte[] key = this.keys[slot];
+            if(key == null) {
+                free = slot;
+                break; //slots are never emptied, so a value seen before would have been stored here at the latest
+            }
+            if(equals(key, buffer, start, end)) {
+                return this.values[slot];
+            }
+        }
+
+        byte[] key = new byte[end - start];
+        buffer.get(start, key);
+        String value = new String(key, StandardCharsets.UTF_8);
+
+        this.keys[free] = key;
+        this.values[free] = value;
+        return value;
+    }
+
+    /**
+     * Decodes the given range without caching it, for values which rarely repeat.
+     */
+    public String decode(ByteBuffer buffer, int start, int end) {
+        if(buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+        }
+
+        if(this.scratch.length < end - start) { this.scratch = new byte[Math.max(end - start, this.scratch.length * 2)]; }
+        buffer.get(start, this.scratch, 0, end - start);
+        return new String(this.scratch, 0, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static boolean equals(byte[] key, ByteBuffer buffer, int start, int end) {
+        if(key.length != end - start) { return false; }
+
+        for(int i = 0; i < key.length; i++) {
+            if(key[i] != buffer.get(start + i)) { return false; }
+        }
+        return true;
+    }
+}
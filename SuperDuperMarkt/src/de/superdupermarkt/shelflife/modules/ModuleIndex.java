@@ -0,0 +1,98 @@
+package de.superdupermarkt.shelflife.modules;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The combined service index of all module jars, listing what each module provides without loading any of its classes.
+ * <p>
+ * Every module jar can contain an index file at {@link #LOCATION}, in the same format as the registrations in settings.properties:
+ * <pre>
+ * ProductLoader.MySql=ProductLoaderMySQLFactory
+ * ProductTypeLoader.MySql=ProductTypeLoaderMySQLFactory
+ * Rule.NewYearsEve=de.superdupermarkt.shelflife.rules.NewYearsEve
+ * </pre>
+ * Loader factories are given by their unqualified name (@see de.superdupermarkt.shelflife.data.loader.factory.ClassLoading),
+ * rule classes by their fully qualified name, so modules can keep their rules in their own packages.
+ * <p>
+ * This is the same idea as the java.util.ServiceLoader, which reads META-INF/services files, but the ServiceLoader
+ * always loads the provider classes to find out their type, and has no notion of names to select a provider by.
+ * Reading a few small text files is cheap, so the startup time no longer depends on the number (and size) of the installed modules,
+ * only the classes which are actually used are loaded later on.
+ */
+public class ModuleIndex {
+    public static final String LOCATION = "META-INF/shelflife/modules.properties";
+
+    private static final String PRODUCT_LOADER_PREFIX = "ProductLoader.";
+    private static final String PRODUCT_TYPE_LOADER_PREFIX = "ProductTypeLoader.";
+    private static final String RULE_PREFIX = "Rule.";
+
+    private final Map<String, String> productLoaderFactories = new HashMap<>();
+    private final Map<String, String> productTypeLoaderFactories = new HashMap<>();
+    private final Map<String, String> ruleClasses = new HashMap<>();
+
+    /**
+     * Reads the index files of all jars visible to the given classloader.
+     * If several modules use the same name, the one found first wins, like it would for classes with the same name.
+     *
+     * @throws IOException If one of the index files cannot be read
+     */
+    public static ModuleIndex read(ClassLoader classLoader) throws IOException {
+        ModuleIndex index = new ModuleIndex();
+
+        Enumeration<URL> indexFiles = classLoader.getResources(LOCATION);
+        while(indexFiles.hasMoreElements()) {
+            Properties entries = new Properties();
+            try(Reader reader = new InputStreamReader(indexFiles.nextElement().openStream(), StandardCharsets.UTF_8)) {
+                entries.load(reader);
+            }
+
+            entries.forEach((key, value) -> index.add((String)key, (String)value));
+        }
+
+        return index;
+    }
+
+    /**
+     * Adds one entry in the format of the index files, entries with an unknown prefix are ignored.
+     * Names which are already in use are not replaced.
+     */
+    public void add(String key, String className) {
+        if(key.startsWith(PRODUCT_LOADER_PREFIX)) {
+            this.productLoaderFactories.putIfAbsent(key.substring(PRODUCT_LOADER_PREFIX.length()), className);
+        } else if(key.startsWith(PRODUCT_TYPE_LOADER_PREFIX)) {
+            this.productTypeLoaderFactories.putIfAbsent(key.substring(PRODUCT_TYPE_LOADER_PREFIX.length()), className);
+        } else if(key.startsWith(RULE_PREFIX)) {
+            this.ruleClasses.putIfAbsent(key.substring(RULE_PREFIX.length()), className);
+        }
+    }
+
+    /**
+     * @return The unqualified class names of the ProductLoader factories by their registered name
+     */
+    public Map<String, String> getProductLoaderFactories() {
+        return Collections.unmodifiableMap(this.productLoaderFactories);
+    }
+
+    /**
+     * @return The unqualified class names of the ProductTypeLoader factories by their registered name
+     */
+    public Map<String, String> getProductTypeLoaderFactories() {
+        return Collections.unmodifiableMap(this.productTypeLoaderFactories);
+    }
+
+    /**
+     * @return The fully qualified class names of the rules by the name used in the type definitions
+     */
+    public Map<String, String> getRuleClasses() {
+        return Collections.unmodifiableMap(this.ruleClasses);
+    }
+}
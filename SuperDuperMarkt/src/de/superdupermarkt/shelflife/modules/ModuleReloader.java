@@ -0,0 +1,55 @@
+package de.superdupermarkt.shelflife.modules;
+
+import de.superdupermarkt.shelflife.data.loader.ProductLoader;
+import de.superdupermarkt.shelflife.data.loader.ProductTypeLoader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URLClassLoader;
+
+/**
+ * Provides newer versions of the module classes while the program is running.
+ * <p>
+ * A reloader only prepares new generations (a new classloader with the loaders resolved from it) in the background.
+ * Applying them is left to the ShelfController, which does so between two updates, so no update ever sees a mix of old and new rules.
+ * After applying (or rejecting) a generation, the controller reports back, so classloaders no longer in use can be released.
+ */
+public interface ModuleReloader {
+    /**
+     * All loaders resolved from one classloader. The classloader has to stay open while any of its classes are still in use.
+     */
+    record Generation(URLClassLoader classLoader, ProductTypeLoader productTypeLoader, ProductLoader productLoader) implements Closeable {
+        /**
+         * Releases the resources of the loaders (like pooled connections), then the classloader.
+         * Anything the loaders keep open would otherwise outlive the generation and keep its classloader from being garbage collected.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                this.productTypeLoader.close();
+                this.productLoader.close();
+            } finally {
+                this.classLoader.close(); //even if a loader of a module failed to close
+            }
+        }
+    }
+
+    /**
+     * @return The newest generation which was not handed out yet, or null if nothing changed since the last call
+     */
+    Generation poll();
+
+    /**
+     * Signals that the given generation is now in use. The previously active generation is released,
+     * unless some of its classes are still in use.
+     *
+     * @param generation The generation which replaces the active one
+     * @param releasePrevious false if some products still use rules from the previous generation
+     */
+    void activate(Generation generation, boolean releasePrevious);
+
+    /**
+     * Signals that the given generation could not be applied and is released right away.
+     */
+    void discard(Generation generation);
+}
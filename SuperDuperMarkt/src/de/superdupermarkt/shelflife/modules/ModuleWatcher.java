@@ -0,0 +1,217 @@
+package de.superdupermarkt.shelflife.modules;
+
+import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * ModuleReloader watching the module directory for changed jar files (Observer pattern, via the WatchService of the file system).
+ * <p>
+ * Whenever a jar is added, replaced or removed, a background thread creates a new classloader for the whole directory
+ * and resolves the loaders from it. The result is kept until the controller picks it up.
+ * If several changes happen before that, only the newest generation is kept and the older ones are released immediately.
+ * <p>
+ * Classes are only garbage collected together with their classloader, so a new classloader per change is the only way
+ * to load a changed class with the same name. The old one is closed as soon as no product uses its rules anymore.
+ * Generations which are still used by some products after a reload are retained until then, or until the watcher is closed.
+ */
+public class ModuleWatcher implements ModuleReloader, Closeable {
+    /**
+     * Strategy used to resolve the loaders for a new classloader, so the watcher does not need to know the configuration.
+     */
+    public interface LoaderResolver {
+        /**
+         * @param classLoader The classloader containing the current module jars
+         * @return The resolved generation, or null if the configured loaders could not be resolved (the reason is reported by the resolver)
+         */
+        Generation resolve(URLClassLoader classLoader);
+    }
+
+    //jars are usually written in several steps, so a reload only starts after the directory was quiet for this long
+    private static final long QUIET_PERIOD_MILLIS = 500;
+
+    private final Path moduleDir;
+    private final LoaderResolver resolver;
+    private final ErrorReporter errorReporter;
+    private final WatchService watchService;
+
+    private final AtomicReference<Generation> pending = new AtomicReference<>();
+    private Generation active;
+    private final List<Generation> retained = new ArrayList<>(); //replaced, but still used by some products
+    private volatile boolean closed = false;
+
+    /**
+     * Starts watching the given directory.
+     *
+     * @param moduleDir The directory containing the module jars
+     * @param active The generation currently in use, released once it is replaced
+     * @param resolver Resolves the loaders for each new classloader
+     * @param errorReporter Receives errors during reloads, which never end the program
+     * @throws IOException If the directory cannot be watched
+     */
+    public ModuleWatcher(Path moduleDir, Generation active, LoaderResolver resolver, ErrorReporter errorReporter) throws IOException {
+        this.moduleDir = moduleDir;
+        this.active = active;
+        this.resolver = resolver;
+        this.errorReporter = errorReporter;
+
+        this.watchService = moduleDir.getFileSystem().newWatchService();
+        moduleDir.register(this.watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+
+        Thread thread = new Thread(this::watch, "module-watcher");
+        thread.setDaemon(true); //never keeps the program alive on its own
+        thread.start();
+    }
+
+    /**
+     * Creates a classloader which can be used to load additional .class files dynamically at runtime, providing a mechanism to add productTypes and loaders even while the program is running
+     * <p>
+     * This could also be achieved by providing the module folder via classpath, but it's tricky to unload classes in that case which prevents reloads if those files are updated (classes are only garbage collected when their classloader is gcd)
+     * this is potentially unsafe, because anyone with access to the module folder can add arbitrary code. In practice that rarely matters, since access to this folder implies access to the actual jar file in most cases
+     * Plus, it is a nice showcase for a test project like this
+     */
+    public static URLClassLoader createClassLoader(Path moduleDir) throws IOException {
+        URL[] moduleJars;
+        try(Stream<Path> paths = Files.list(moduleDir)) {
+            moduleJars = paths
+                    .filter(path -> path.toString().endsWith(".jar"))
+                    .map(path -> {
+                        try {
+                            return path.toUri().toURL();
+                        } catch (MalformedURLException e) {
+                            throw new RuntimeException(e);
+                        }
+                    })
+                    .toArray(URL[]::new);
+        }
+
+        return new URLClassLoader(moduleJars, ClassLoader.getSystemClassLoader());
+    }
+
+    @Override
+    public Generation poll() {
+        return this.pending.getAndSet(null);
+    }
+
+    @Override
+    public synchronized void activate(Generation generation, boolean releasePrevious) {
+        if(this.active != null) { this.retained.add(this.active); }
+        if(releasePrevious) { //all products use the new generation, so none of the older ones are needed anymore
+            this.retained.forEach(this::release);
+            this.retained.clear();
+        }
+        this.active = generation;
+    }
+
+    @Override
+    public void discard(Generation generation) {
+        this.release(generation);
+    }
+
+    /**
+     * Stops watching and releases all generations, including the active and the retained ones.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.closed = true;
+        this.watchService.close(); //ends the watching thread
+
+        Generation unused = this.pending.getAndSet(null);
+        if(unused != null) { this.release(unused); }
+        if(this.active != null) { this.release(this.active); }
+        this.active = null;
+        this.retained.forEach(this::release);
+        this.retained.clear();
+    }
+
+    private void watch() {
+        try {
+            while(!this.closed) {
+                boolean changed = containsJar(this.watchService.take());
+
+                WatchKey next;
+                while((next = this.watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= containsJar(next);
+                }
+
+                if(changed) {
+                    this.reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            //watching was stopped via close
+        }
+    }
+
+    private static boolean containsJar(WatchKey key) {
+        boolean containsJar = false;
+        for(WatchEvent<?> event : key.pollEvents()) {
+            containsJar |= event.kind() == StandardWatchEventKinds.OVERFLOW //events were lost, so a jar might have changed
+                || event.context().toString().endsWith(".jar");
+        }
+        key.reset();
+
+        return containsJar;
+    }
+
+    private void reload() {
+        URLClassLoader classLoader;
+        try {
+            classLoader = createClassLoader(this.moduleDir);
+        } catch (IOException ex) {
+            this.errorReporter.error(ex);
+            return;
+        }
+
+        Generation generation;
+        try {
+            generation = this.resolver.resolve(classLoader);
+        } catch (RuntimeException ex) { //the resolver runs the factories of the modules, which must not end the watching thread
+            this.errorReporter.error(ex);
+            generation = null;
+        }
+        if(generation == null) {
+            this.closeClassLoader(classLoader);
+            return;
+        }
+
+        Generation replaced = this.pending.getAndSet(generation);
+        if(replaced != null) { this.release(replaced); } //never handed out, so nothing uses it
+        if(this.closed && this.pending.compareAndSet(generation, null)) { this.release(generation); }
+    }
+
+    private void release(Generation generation) {
+        try {
+            generation.close();
+        } catch (IOException | RuntimeException ex) { //closing runs code of the modules as well
+            this.errorReporter.warning(ex);
+        }
+    }
+
+    private void closeClassLoader(URLClassLoader classLoader) {
+        try {
+            classLoader.close();
+        } catch (IOException ex) {
+            this.errorReporter.warning(ex);
+        }
+    }
+}
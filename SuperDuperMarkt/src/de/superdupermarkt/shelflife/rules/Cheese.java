@@ -10,7 +10,17 @@ public class Cheese extends GeneralProduct {
     }
 
     @Override
-    public int calculateQuality(Product product, LocalDate day) {
+    public boolean supportsEpochDays() {
+        return this.getClass() == Cheese.class;
+    }
+
+    @Override
+    public boolean supportsMultiDayUpdate() {
+        return this.getClass() == Cheese.class;
+    }
+
+    @Override
+    public int calculateQuality(Product product, long day) {
         return product.getQuality() - 1;
     }
 
@@ -20,9 +30,69 @@ public class Cheese extends GeneralProduct {
     }*/
 
     @Override
-    public boolean shouldUnshelf(Product product, LocalDate day) {
-        return product.getQuality() < 30
-            || day.isAfter(product.getDueDate().minusDays(50)) //creating new objects could be very costly during tight loops on many objects, but is fine for most applications
-            || day.isBefore(product.getDueDate().minusDays(100));
+    public boolean shouldUnshelf(Product product, long day) {
+        return shouldUnshelf(product.getQuality(), product.getDueEpochDay(), day);
+    }
+
+    /**
+     * Works on epoch days, so no new LocalDate objects are needed for the date bounds.
+     */
+    private static boolean shouldUnshelf(int quality, long dueDate, long day) {
+        return quality < 30
+            || day > dueDate - 50
+            || day < dueDate - 100;
+    }
+
+    @Override
+    public int calculateQuality(Product product, LocalDate day, int passedDays) {
+        return product.getQuality() - passedDays;
+    }
+
+    /**
+     * Quality only decreases and the days only move forward, so each condition is at its worst on either the first
+     * or the last skipped day: the quality and the upper date bound on the last one, the lower date bound on the first one.
+     */
+    @Override
+    public boolean isUnshelvedBefore(Product product, LocalDate day, int passedDays) {
+        if(passedDays <= 1) { return false; }
+
+        long lastSkipped = day.toEpochDay() - 1;
+        long firstSkipped = day.toEpochDay() - (passedDays - 1);
+        return product.getQuality() - (passedDays - 1) < 30
+            || lastSkipped > product.getDueEpochDay() - 50
+            || firstSkipped < product.getDueEpochDay() - 100;
+    }
+
+    /**
+     * Too early products are flagged immediately. Otherwise, the product is flagged either once the quality drops below 30
+     * (it loses one point per update, including the one on the given day) or when it gets too close to the dueDate, whichever comes first.
+     */
+    @Override
+    public LocalDate predictUnshelfDay(Product product, LocalDate day) {
+        if(this.getClass() != Cheese.class) { return null; }
+        if(day.isBefore(product.getDueDate().minusDays(100))) { return day; }
+
+        LocalDate lowQuality = day.plusDays(Math.max(0, product.getQuality() - 30));
+        LocalDate tooClose = product.getDueDate().minusDays(49);
+        LocalDate predicted = lowQuality.isBefore(tooClose) ? lowQuality : tooClose;
+        return predicted.isAfter(day) ? predicted : day;
+    }
+
+    @Override
+    public void update(Product[] batch, int count, LocalDate day, int passedDays, boolean[] onShelf) {
+        if(this.getClass() != Cheese.class) {
+            ProductRule.updateEach(batch, count, day, passedDays, onShelf);
+            return;
+        }
+
+        long epochDay = day.toEpochDay();
+        for(int i = 0; i < count; i++) {
+            Product product = batch[i];
+            onShelf[i] = !product.shouldUnshelf() && !this.isUnshelvedBefore(product, day, passedDays);
+            if(onShelf[i]) {
+                int quality = product.getQuality() - passedDays;
+                product.applyRuleResult(quality, priceFor(product.getBasePrice(), quality), shouldUnshelf(quality, product.getDueEpochDay(), epochDay));
+            }
+        }
     }
 }
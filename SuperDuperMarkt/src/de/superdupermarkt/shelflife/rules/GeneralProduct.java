@@ -10,6 +10,30 @@ public class GeneralProduct extends ProductType {
         super(name);
     }
 
+    @Override
+    public int calculateQuality(Product product, LocalDate day) {
+        return this.calculateQuality(product, day.toEpochDay());
+    }
+
+    @Override
+    public double calculatePrice(Product product, LocalDate day) {
+        return this.calculatePrice(product, day.toEpochDay());
+    }
+
+    @Override
+    public boolean shouldUnshelf(Product product, LocalDate day) {
+        return this.shouldUnshelf(product, day.toEpochDay());
+    }
+
+    /**
+     * The built-in rules are implemented on epoch days, the LocalDate methods above only convert the day.
+     * Like the batch loop, this only applies to exactly this class, since subclasses from modules may only override the LocalDate methods.
+     */
+    @Override
+    public boolean supportsEpochDays() {
+        return this.getClass() == GeneralProduct.class;
+    }
+
     /**
      * The specification did not contain any rule for changing quality on products other than cheese and wine.
      * Under the assumption that this is correct, we return the original quality.
@@ -17,17 +41,80 @@ public class GeneralProduct extends ProductType {
      * @return
      */
     @Override
-    public int calculateQuality(Product product, LocalDate day) {
+    public int calculateQuality(Product product, long day) {
         return product.getQuality();
     }
 
     @Override
-    public double calculatePrice(Product product, LocalDate day) {
-        return product.getBasePrice() + 0.1*product.getQuality();
+    public double calculatePrice(Product product, long day) {
+        return priceFor(product.getBasePrice(), product.getQuality());
+    }
+
+    protected static double priceFor(double basePrice, int quality) {
+        return basePrice + 0.1*quality;
     }
 
     @Override
-    public boolean shouldUnshelf(Product product, LocalDate day) {
-        return day.isAfter(product.getDueDate());
+    public boolean shouldUnshelf(Product product, long day) {
+        return day > product.getDueEpochDay();
+    }
+
+    /**
+     * Like the batch loop, the closed forms only apply to exactly this class, since subclasses usually change the single day rules.
+     */
+    @Override
+    public boolean supportsMultiDayUpdate() {
+        return this.getClass() == GeneralProduct.class;
+    }
+
+    @Override
+    public int calculateQuality(Product product, LocalDate day, int passedDays) {
+        return product.getQuality();
+    }
+
+    /**
+     * Being overdue never changes back, so it suffices to check the last skipped day.
+     */
+    @Override
+    public boolean isUnshelvedBefore(Product product, LocalDate day, int passedDays) {
+        return passedDays > 1 && day.toEpochDay() - 1 > product.getDueEpochDay();
+    }
+
+    /**
+     * The product is flagged on the first day after its dueDate, or on the given day if that has already passed.
+     * Like the batch loop, this only applies to exactly this class, since subclasses usually change the rules.
+     */
+    @Override
+    public LocalDate predictUnshelfDay(Product product, LocalDate day) {
+        if(this.getClass() != GeneralProduct.class) { return null; }
+
+        LocalDate firstOverdue = product.getDueDate().plusDays(1);
+        return firstOverdue.isAfter(day) ? firstOverdue : day;
+    }
+
+    @Override
+    public boolean isStateConstant() {
+        return this.getClass() == GeneralProduct.class;
+    }
+
+    /**
+     * Only applies to exactly this class, subclasses with different rules use the per product fallback unless they provide their own batch loop.
+     */
+    @Override
+    public void update(Product[] batch, int count, LocalDate day, int passedDays, boolean[] onShelf) {
+        if(this.getClass() != GeneralProduct.class) {
+            ProductRule.updateEach(batch, count, day, passedDays, onShelf);
+            return;
+        }
+
+        long epochDay = day.toEpochDay();
+        for(int i = 0; i < count; i++) {
+            Product product = batch[i];
+            onShelf[i] = !product.shouldUnshelf() && !this.isUnshelvedBefore(product, day, passedDays);
+            if(onShelf[i]) {
+                int quality = product.getQuality();
+                product.applyRuleResult(quality, priceFor(product.getBasePrice(), quality), epochDay > product.getDueEpochDay());
+            }
+        }
     }
 }
@@ -13,7 +13,7 @@ import java.time.LocalDate;
 public interface ProductRule {
     /**
      * Calculates a new quality for a given product.
-     * Assumes that exactly one day has passed. (This could be fixed by adding another parameter specifying the amount of passed days since last update)
+     * Assumes that exactly one day has passed. For skipping several days at once see the multi day variant below.
      *
      * @param product The product to calculate the new quality for
      * @param day The day for which the update occurs
@@ -43,4 +43,137 @@ public interface ProductRule {
      * @return A boolean representing if the product should be removed (true) or can stay (false) on the shelf.
      */
     public boolean shouldUnshelf(Product product, LocalDate day);
+
+    /**
+     * Signals whether this rule implements the epoch day variants below itself.
+     * <p>
+     * Days are then passed as a plain long (days since 1970-01-01, @see LocalDate#toEpochDay) and compared to Product#getDueEpochDay,
+     * so the daily update does not need to create any LocalDate objects. This matters for millions of products per day.
+     * <p>
+     * If not, the LocalDate methods above are used, so rules from modules keep working without any changes.
+     *
+     * @return true if calculateQuality, calculatePrice and shouldUnshelf are implemented for epoch days
+     */
+    default boolean supportsEpochDays() {
+        return false;
+    }
+
+    /**
+     * Epoch day variant of calculateQuality. The default implementation converts the day and calls the LocalDate variant.
+     */
+    default int calculateQuality(Product product, long day) {
+        return calculateQuality(product, LocalDate.ofEpochDay(day));
+    }
+
+    /**
+     * Epoch day variant of calculatePrice. The default implementation converts the day and calls the LocalDate variant.
+     */
+    default double calculatePrice(Product product, long day) {
+        return calculatePrice(product, LocalDate.ofEpochDay(day));
+    }
+
+    /**
+     * Epoch day variant of shouldUnshelf. The default implementation converts the day and calls the LocalDate variant.
+     */
+    default boolean shouldUnshelf(Product product, long day) {
+        return shouldUnshelf(product, LocalDate.ofEpochDay(day));
+    }
+
+    /**
+     * Signals whether this rule provides a closed form for the multi day methods below.
+     * <p>
+     * If not, multi day updates fall back to applying the single day methods once for every passed day,
+     * so rules from modules keep working without any changes.
+     *
+     * @return true if calculateQuality and isUnshelvedBefore are implemented for an arbitrary amount of passed days
+     */
+    default boolean supportsMultiDayUpdate() {
+        return false;
+    }
+
+    /**
+     * Calculates the quality of a given product after several days have passed since the last update.
+     * The result has to be identical to passedDays consecutive single day updates, the last of which occurs on the given day.
+     * <p>
+     * Only used if supportsMultiDayUpdate returns true. The default implementation is only valid for exactly one passed day.
+     *
+     * @param product The product to calculate the new quality for
+     * @param day The last of the passed days, i.e. the day for which the update occurs
+     * @param passedDays The amount of days since the last update, at least 1
+     * @return The newly calculated quality for the given product
+     */
+    default int calculateQuality(Product product, LocalDate day, int passedDays) {
+        return calculateQuality(product, day);
+    }
+
+    /**
+     * Determines whether a product would have been removed from the shelf during the skipped days,
+     * i.e. if shouldUnshelf would have returned true after the daily update on any of the passed days before the given day.
+     * <p>
+     * Should be called BEFORE the quality update, since it works on the state of the last update.
+     * Only used if supportsMultiDayUpdate returns true. The default implementation is only valid for exactly one passed day.
+     *
+     * @param product The product to determine shelf status for
+     * @param day The last of the passed days, this day itself is not part of the check
+     * @param passedDays The amount of days since the last update, at least 1
+     * @return true if the product would have been removed before the given day
+     */
+    default boolean isUnshelvedBefore(Product product, LocalDate day, int passedDays) {
+        return false;
+    }
+
+    /**
+     * Predicts the day on which a product will be flagged for removal, assuming daily updates from the given day on.
+     * That is the first day (not before the given day) after whose update shouldUnshelf returns true.
+     * The product is then taken off the shelf on the following day.
+     * <p>
+     * Should be called BEFORE the update of the given day. Used to schedule removals ahead of time (@see ExpiryIndexInventoryUpdater)
+     * instead of checking each product every day.
+     *
+     * @param product The product to predict the removal for
+     * @param day The day of the next update
+     * @return The predicted day, LocalDate.MAX if the product will never be removed, or null if the removal cannot be predicted
+     */
+    default LocalDate predictUnshelfDay(Product product, LocalDate day) {
+        return null;
+    }
+
+    /**
+     * Signals that the daily update never changes quality or price of a product, only its unshelf flag.
+     * <p>
+     * If the removal day can be predicted as well, products with this rule do not have to be touched at all until that day.
+     *
+     * @return true if quality and price stay the same on every update
+     */
+    default boolean isStateConstant() {
+        return false;
+    }
+
+    /**
+     * Batch variant of Product.update for many products which all use this rule.
+     * <p>
+     * When a single loop calls the rules of many different types, the JIT compiler sees too many receiver classes
+     * at the same call site (megamorphic dispatch) and stops inlining the rule methods.
+     * Implementing the loop in each rule class gives every class its own call sites, which only ever see that one class.
+     * <p>
+     * The default implementation simply calls Product.update for each product, so existing rules keep working.
+     *
+     * @param batch The products to update, all of which have this rule as their type
+     * @param count The number of products at the start of the batch array to update
+     * @param day The day for which the update occurs
+     * @param passedDays The amount of days since the last update, at least 1
+     * @param onShelf Receives the result of the update for each product, @see Product#update(LocalDate, int)
+     */
+    default void update(Product[] batch, int count, LocalDate day, int passedDays, boolean[] onShelf) {
+        updateEach(batch, count, day, passedDays, onShelf);
+    }
+
+    /**
+     * Default batch implementation, also used by rule implementations whose optimized batch loop does not apply to a subclass.
+     */
+    static void updateEach(Product[] batch, int count, LocalDate day, int passedDays, boolean[] onShelf) {
+        for(int i = 0; i < count; i++) {
+            onShelf[i] = batch[i].update(day, passedDays);
+        }
+    }
 }
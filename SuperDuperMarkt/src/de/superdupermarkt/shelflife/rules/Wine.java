@@ -3,7 +3,6 @@ package de.superdupermarkt.shelflife.rules;
 import de.superdupermarkt.shelflife.data.Product;
 
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 
 public class Wine extends GeneralProduct {
     public Wine(String name) {
@@ -11,8 +10,18 @@ public class Wine extends GeneralProduct {
     }
 
     @Override
-    public int calculateQuality(Product product, LocalDate day) {
-        int daysOverdue = (int)ChronoUnit.DAYS.between(product.getDueDate(), day);
+    public boolean supportsEpochDays() {
+        return this.getClass() == Wine.class;
+    }
+
+    @Override
+    public boolean supportsMultiDayUpdate() {
+        return this.getClass() == Wine.class;
+    }
+
+    @Override
+    public int calculateQuality(Product product, long day) {
+        int daysOverdue = (int)(day - product.getDueEpochDay());
         int qualityGain = Math.max(0, daysOverdue/10); //daysOverdue can be negative, thus we prevent it from falling below 0
 
         return Math.min(50, product.getQuality() + qualityGain);
@@ -27,12 +36,71 @@ public class Wine extends GeneralProduct {
      * @return
      */
     @Override
-    public double calculatePrice(Product product, LocalDate day) {
+    public double calculatePrice(Product product, long day) {
         return product.getPrice() == 0 ? super.calculatePrice(product, day) : product.getPrice();
     }
 
     @Override
-    public boolean shouldUnshelf(Product product, LocalDate day) {
+    public boolean shouldUnshelf(Product product, long day) {
         return product.getQuality() < 0;
     }
+
+    /**
+     * The daily gain never is negative, so clamping once at the end yields the same result as clamping every day.
+     * The sum of the daily gains is calculated via accumulatedGain.
+     */
+    @Override
+    public int calculateQuality(Product product, LocalDate day, int passedDays) {
+        long daysOverdue = day.toEpochDay() - product.getDueEpochDay();
+        long qualityGain = accumulatedGain(daysOverdue) - accumulatedGain(daysOverdue - passedDays);
+
+        return (int)Math.min(50, product.getQuality() + qualityGain);
+    }
+
+    /**
+     * Quality never decreases after the first update (except for the cap at 50), so only the first skipped day has to be checked.
+     */
+    @Override
+    public boolean isUnshelvedBefore(Product product, LocalDate day, int passedDays) {
+        return passedDays > 1 && this.calculateQuality(product, day.toEpochDay() - (passedDays - 1)) < 0;
+    }
+
+    /**
+     * Quality never decreases, so a wine which is not flagged yet never will be.
+     */
+    @Override
+    public LocalDate predictUnshelfDay(Product product, LocalDate day) {
+        if(this.getClass() != Wine.class) { return null; }
+
+        return product.getQuality() < 0 ? day : LocalDate.MAX;
+    }
+
+    @Override
+    public void update(Product[] batch, int count, LocalDate day, int passedDays, boolean[] onShelf) {
+        if(this.getClass() != Wine.class) {
+            ProductRule.updateEach(batch, count, day, passedDays, onShelf);
+            return;
+        }
+
+        for(int i = 0; i < count; i++) {
+            Product product = batch[i];
+            onShelf[i] = !product.shouldUnshelf() && !this.isUnshelvedBefore(product, day, passedDays);
+            if(onShelf[i]) {
+                int quality = this.calculateQuality(product, day, passedDays);
+                double price = product.getPrice() == 0 ? priceFor(product.getBasePrice(), quality) : product.getPrice();
+                product.applyRuleResult(quality, price, quality < 0);
+            }
+        }
+    }
+
+    /**
+     * Sum of the daily quality gains for all days up to the given amount of overdue days (inclusive).
+     * Each block of 10 days adds one more quality point per day than the previous block.
+     */
+    private static long accumulatedGain(long daysOverdue) {
+        if(daysOverdue < 0) { return 0; }
+
+        long blocks = daysOverdue/10;
+        return 5*blocks*(blocks - 1) + blocks*(daysOverdue%10 + 1);
+    }
 }
@@ -0,0 +1,313 @@
+package de.superdupermarkt.shelflife.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import de.superdupermarkt.shelflife.data.Product;
+import de.superdupermarkt.shelflife.data.ProductType;
+import de.superdupermarkt.shelflife.data.loader.ProductLoader;
+import de.superdupermarkt.shelflife.data.loader.ProductTypeLoader;
+import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessException;
+import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.engine.InventoryUpdater;
+import de.superdupermarkt.shelflife.engine.SequentialInventoryUpdater;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Resident alternative to the ShelfController, which keeps the loaded inventory in memory and answers queries via HTTP (JSON).
+ * <p>
+ * A regular run pays for the JVM startup, the modules and a full load of all products before it calculates anything.
+ * Here all of that happens once, afterwards every request only calculates the state for the requested day.
+ * This uses the multi day update (@see Product#update(LocalDate, int)), so most rules need a single step per product, no matter how far the day is in the future.
+ * <p>
+ * Thread safety: the loaded inventory is never modified. Each request works on its own copies of the products,
+ * and the stateless SequentialInventoryUpdater is used, since the other updaters keep state between two calls.
+ * A reload builds a complete new inventory and swaps it in atomically, requests which are already running finish with the old one.
+ * Reloads themselves run one at a time, since the loaders are not thread safe and an older load must never replace a newer one.
+ * <p>
+ * Endpoints, all dates in ISO format (2024-12-24):
+ * <ul>
+ *     <li>GET /products?date=X - all products on the shelf on day X</li>
+ *     <li>GET /unshelf?date=X - the products which have to be taken off the shelf on day X</li>
+ *     <li>GET /price?date=X&amp;name=Y - the products named Y on day X, including their price</li>
+ *     <li>POST /reload - loads the ProductTypes and products again, e.g. after the CSV files changed</li>
+ * </ul>
+ * The results are identical to the output of the ShelfController for the same start date.
+ */
+public class InventoryServer implements Closeable {
+    private static final InventoryUpdater updater = new SequentialInventoryUpdater();
+
+    private final ProductTypeLoader productTypeLoader;
+    private final ProductLoader productLoader;
+    private final ErrorReporter errorReporter;
+    private final LocalDate startDate;
+
+    private final AtomicReference<List<Product>> inventory = new AtomicReference<>();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Loads the inventory and binds the server, requests are only answered after start was called.
+     *
+     * @param startDate The day the inventory is loaded for, earlier days cannot be queried
+     * @param address The address to listen on, port 0 picks a free port (@see getPort)
+     * @param threads The number of requests which are processed concurrently
+     * @throws DataLoaderAccessException If the initial load fails
+     * @throws IOException If the address cannot be bound
+     */
+    public InventoryServer(ProductTypeLoader productTypeLoader, ProductLoader productLoader, ErrorReporter errorReporter,
+                           LocalDate startDate, InetSocketAddress address, int threads) throws DataLoaderAccessException, IOException {
+        this.productTypeLoader = productTypeLoader;
+        this.productLoader = productLoader;
+        this.errorReporter = errorReporter;
+        this.startDate = startDate;
+
+        this.reload();
+
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server.setExecutor(this.executor);
+
+        this.server.createContext("/products", this.query(product -> true));
+        this.server.createContext("/unshelf", this.query(Product::shouldUnshelf));
+        this.server.createContext("/price", this::handlePrice);
+        this.server.createContext("/reload", this::handleReload);
+    }
+
+    public void start() {
+        this.server.start();
+    }
+
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Loads the ProductTypes and products again and replaces the inventory once loading succeeded.
+     * If loading fails, the previous inventory stays in use.
+     * <p>
+     * Synchronized, so concurrent reloads wait for each other. Queries never wait for a reload, they keep reading the current inventory.
+     */
+    public synchronized void reload() throws DataLoaderAccessException {
+        Map<String, ProductType> productTypes = this.productTypeLoader.fetchProductTypes();
+        List<Product> products = this.productLoader.fetchProducts(this.startDate, productTypes);
+
+        this.inventory.set(List.copyOf(products)); //List.copyOf also guarantees nobody can modify the list itself
+    }
+
+    /**
+     * Calculates the state of the inventory on the given day, without modifying the loaded inventory.
+     *
+     * @param day The day to calculate, not before the start date
+     * @return The products still on the shelf on that day, in load order
+     * @throws IllegalArgumentException If the day is before the start date
+     */
+    public List<Product> productsOn(LocalDate day) {
+        if(day.isBefore(this.startDate)) {
+            throw new IllegalArgumentException("The inventory is only known from "+ this.startDate.format(DateTimeFormatter.ISO_DATE) +" on");
+        }
+
+        long passedDays = this.passedDays(day);
+        if(passedDays > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The day is too far in the future");
+        }
+
+        List<Product> copies = this.inventory.get().stream().map(Product::copy).toList();
+        return updater.update(copies, day, (int)passedDays);
+    }
+
+    private long passedDays(LocalDate day) {
+        //the products are loaded for the start date and updated on it as well, just like the daily loop of the controller does
+        return ChronoUnit.DAYS.between(this.startDate.minusDays(1), day);
+    }
+
+    /**
+     * Stops the server, running requests get a second to finish.
+     */
+    @Override
+    public void close() {
+        this.server.stop(1);
+        this.executor.shutdown();
+    }
+
+    private HttpHandler query(Predicate<Product> filter) {
+        return exchange -> {
+            if(!this.checkMethod(exchange, "GET")) { return; }
+
+            Map<String, String> parameters = parseQuery(exchange);
+            LocalDate day = this.parseDay(exchange, parameters);
+            if(day == null) { return; }
+
+            List<Product> products = this.productsOn(day).stream().filter(filter).toList();
+            send(exchange, 200, toJson(day, products));
+        };
+    }
+
+    private void handlePrice(HttpExchange exchange) throws IOException {
+        if(!this.checkMethod(exchange, "GET")) { return; }
+
+        Map<String, String> parameters = parseQuery(exchange);
+        String name = parameters.get("name");
+        if(name == null) {
+            sendError(exchange, 400, "Missing parameter name");
+            return;
+        }
+
+        LocalDate day = this.parseDay(exchange, parameters);
+        if(day == null) { return; }
+
+        //names are not unique, e.g. the same product with different due dates, so this can match several products
+        List<Product> products = this.productsOn(day).stream().filter(product -> name.equals(product.getName())).toList();
+        if(products.isEmpty()) {
+            sendError(exchange, 404, "No product named "+ name +" on the shelf");
+            return;
+        }
+
+        send(exchange, 200, toJson(day, products));
+    }
+
+    private void handleReload(HttpExchange exchange) throws IOException {
+        if(!this.checkMethod(exchange, "POST")) { return; }
+
+        try {
+            this.reload();
+            send(exchange, 200, "{\"products\":"+ this.inventory.get().size() +"}");
+        } catch (DataLoaderAccessException ex) {
+            this.errorReporter.error(ex);
+            sendError(exchange, 500, ex.getMessage());
+        }
+    }
+
+    private boolean checkMethod(HttpExchange exchange, String method) throws IOException {
+        if(method.equals(exchange.getRequestMethod())) {
+            return true;
+        }
+
+        exchange.getResponseHeaders().set("Allow", method);
+        sendError(exchange, 405, "Only "+ method +" is supported");
+        return false;
+    }
+
+    /**
+     * @return The requested day, or null if it is missing or invalid (the response was already sent in that case)
+     */
+    private LocalDate parseDay(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        String date = parameters.get("date");
+        if(date == null) {
+            sendError(exchange, 400, "Missing parameter date");
+            return null;
+        }
+
+        try {
+            LocalDate day = LocalDate.parse(date, DateTimeFormatter.ISO_DATE);
+            if(day.isBefore(this.startDate)) {
+                sendError(exchange, 400, "The inventory is only known from "+ this.startDate.format(DateTimeFormatter.ISO_DATE) +" on");
+            } else if(this.passedDays(day) > Integer.MAX_VALUE) { //same limits as productsOn, which would throw instead of answering
+                sendError(exchange, 400, "The date "+ date +" is too far in the future");
+            } else {
+                return day;
+            }
+        } catch (DateTimeParseException ex) {
+            sendError(exchange, 400, "Invalid date "+ date);
+        }
+        return null;
+    }
+
+    private static Map<String, String> parseQuery(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if(query == null) { return parameters; }
+
+        for(String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            if(separator > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                               URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+
+        return parameters;
+    }
+
+    /**
+     * Writes the products as JSON by hand, a JSON library would be overkill for these few flat fields.
+     */
+    private static String toJson(LocalDate day, List<Product> products) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"date\":\"").append(day.format(DateTimeFormatter.ISO_DATE)).append("\",\"products\":[");
+
+        for(int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            if(i > 0) { sb.append(','); }
+
+            sb.append("{\"name\":");
+            appendString(sb, product.getName());
+            sb.append(",\"type\":");
+            appendString(sb, product.getType().getName());
+            sb.append(",\"basePrice\":").append(product.getBasePrice());
+            sb.append(",\"quality\":").append(product.getQuality());
+            sb.append(",\"price\":").append(product.getPrice());
+            sb.append(",\"dueDate\":\"").append(product.getDueDate().format(DateTimeFormatter.ISO_DATE)).append('"');
+            sb.append(",\"quantity\":").append(product.getQuantity());
+            sb.append(",\"unshelf\":").append(product.shouldUnshelf());
+            sb.append('}');
+        }
+
+        return sb.append("]}").toString();
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if(c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        appendString(sb, message);
+        send(exchange, status, sb.append('}').toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
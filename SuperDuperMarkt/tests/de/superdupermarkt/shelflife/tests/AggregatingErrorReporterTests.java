@@ -0,0 +1,178 @@
+package de.superdupermarkt.shelflife.tests;
+
+import de.superdupermarkt.shelflife.data.loader.ProductLoaderCSV;
+import de.superdupermarkt.shelflife.data.loader.ProductLoaderCSVDirectory;
+import de.superdupermarkt.shelflife.data.view.AggregatingErrorReporter;
+import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.rules.Cheese;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AggregatingErrorReporterTests {
+    /**
+     * Records the messages of all calls, prefixed by their severity.
+     */
+    private static class MessageRecorder implements ErrorReporter {
+        public final List<String> messages = new ArrayList<>();
+
+        @Override
+        public void error(Error error) {
+            this.messages.add("Error: "+ error.getMessage());
+        }
+
+        @Override
+        public void error(Exception ex) {
+            this.messages.add("Error: "+ ex.getMessage());
+        }
+
+        @Override
+        public void warning(Error warning) {
+            this.messages.add("Warning: "+ warning.getMessage());
+        }
+
+        @Override
+        public void warning(Exception warning) {
+            this.messages.add("Warning: "+ warning.getMessage());
+        }
+    }
+
+    @Test
+    @DisplayName("Only the samples of each class are passed on, in order, followed by the totals")
+    void samplesAndTotals() {
+        MessageRecorder recorder = new MessageRecorder();
+        try(AggregatingErrorReporter reporter = new AggregatingErrorReporter(recorder, 2, 1000, 4)) {
+            for(int i = 0; i < 1000; i++) {
+                reporter.warning(new ProductLoaderCSV.NotAValidNumberError("number "+i));
+                if(i < 3) { reporter.warning(new ProductLoaderCSV.NotAValidDateError("date "+i)); }
+            }
+            reporter.error(new IllegalStateException("broken"));
+        }
+
+        assertEquals(List.of(
+                "Warning: "+ new ProductLoaderCSV.NotAValidNumberError("number 0").getMessage(),
+                "Warning: "+ new ProductLoaderCSV.NotAValidDateError("date 0").getMessage(),
+                "Warning: "+ new ProductLoaderCSV.NotAValidNumberError("number 1").getMessage(),
+                "Warning: "+ new ProductLoaderCSV.NotAValidDateError("date 1").getMessage(),
+                "Error: broken",
+                "Warning: "+ new AggregatingErrorReporter.SuppressedError("NotAValidNumberError", 1000, 2).getMessage(),
+                "Warning: "+ new AggregatingErrorReporter.SuppressedError("NotAValidDateError", 3, 2).getMessage()),
+            recorder.messages);
+    }
+
+    @Test
+    @DisplayName("After the limit only the totals are reported, also when reporting from several threads")
+    void limitAcrossThreads() throws InterruptedException {
+        MessageRecorder recorder = new MessageRecorder();
+        try(AggregatingErrorReporter reporter = new AggregatingErrorReporter(recorder, 100, 10, 4)) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            for(int thread = 0; thread < 4; thread++) {
+                executor.submit(() -> {
+                    for(int i = 0; i < 10_000; i++) {
+                        reporter.warning(new ProductLoaderCSV.FieldLengthError(3, ""));
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(11, recorder.messages.size(), "10 samples and the total");
+        assertEquals("Warning: "+ new AggregatingErrorReporter.SuppressedError("FieldLengthError", 40_000, 10).getMessage(), recorder.messages.get(10));
+    }
+
+    @Test
+    @DisplayName("Errors reported while closing are neither lost nor block forever")
+    void reportWhileClosing() throws InterruptedException {
+        for(int run = 0; run < 20; run++) {
+            AtomicInteger received = new AtomicInteger();
+            ErrorReporter counter = new ErrorReporter() {
+                @Override public void error(Error error) { received.incrementAndGet(); }
+                @Override public void error(Exception ex) { received.incrementAndGet(); }
+                @Override public void warning(Error warning) { received.incrementAndGet(); }
+                @Override public void warning(Exception warning) { received.incrementAndGet(); }
+            };
+
+            AggregatingErrorReporter reporter = new AggregatingErrorReporter(counter, Integer.MAX_VALUE, Long.MAX_VALUE, 1);
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            for(int thread = 0; thread < 4; thread++) {
+                executor.submit(() -> {
+                    for(int i = 0; i < 2_000; i++) {
+                        reporter.warning(new ProductLoaderCSV.FieldLengthError(3, ""));
+                    }
+                });
+            }
+            reporter.close();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS), "Reporting after close should not block");
+
+            assertEquals(8_000, received.get(), "Every error should be passed on, no matter when close was called");
+        }
+    }
+
+    @Test
+    @DisplayName("A failing target does not stop the remaining errors from being passed on")
+    void failingTarget() {
+        MessageRecorder recorder = new MessageRecorder() {
+            @Override
+            public void warning(Error warning) {
+                if(this.messages.isEmpty()) {
+                    this.messages.add("failed");
+                    throw new IllegalStateException("Output broken");
+                }
+                super.warning(warning);
+            }
+        };
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            try(AggregatingErrorReporter reporter = new AggregatingErrorReporter(recorder, 100, 100, 1)) {
+                for(int i = 0; i < 10; i++) {
+                    reporter.warning(new ProductLoaderCSV.FieldLengthError(3, ""));
+                }
+            }
+        }, "The loaders should not wait for a writer which stopped");
+
+        assertEquals(10, recorder.messages.size());
+    }
+
+    @Test
+    @DisplayName("Warnings of a directory loader are counted by their original class, not as one kind of shard warning")
+    void shardWarningsByCause() throws Exception {
+        Path directory = Files.createTempDirectory("tstShards");
+        for(String shard : List.of("a.csv", "b.csv")) {
+            Files.writeString(directory.resolve(shard), "type;name;quality;basePrice;dueDate\n"
+                    + "cheese;Number;x;1.5;2024-12-24\n"
+                    + "cheese;Date;10;1.5;x\n"
+                    + "unknown;Type;10;1.5;2024-12-24\n");
+            directory.resolve(shard).toFile().deleteOnExit();
+        }
+        directory.toFile().deleteOnExit();
+
+        MessageRecorder recorder = new MessageRecorder();
+        try(AggregatingErrorReporter reporter = new AggregatingErrorReporter(recorder, 1, 1000)) {
+            new ProductLoaderCSVDirectory(directory, "*.csv", reporter).fetchProducts(LocalDate.of(2024, 12, 1), Map.of("cheese", new Cheese("cheese")));
+        }
+
+        assertEquals(6, recorder.messages.size(), "One sample per class and the totals: "+ recorder.messages);
+        assertTrue(recorder.messages.subList(0, 3).stream().allMatch(message -> message.startsWith("Warning: [a.csv] ")),
+                "The samples should still carry the name of their shard: "+ recorder.messages);
+        assertEquals(List.of(
+                "Warning: "+ new AggregatingErrorReporter.SuppressedError("NotAValidNumberError", 2, 1).getMessage(),
+                "Warning: "+ new AggregatingErrorReporter.SuppressedError("NotAValidDateError", 2, 1).getMessage(),
+                "Warning: "+ new AggregatingErrorReporter.SuppressedError("ProductTypeNotFoundError", 2, 1).getMessage()),
+            recorder.messages.subList(3, 6));
+    }
+}
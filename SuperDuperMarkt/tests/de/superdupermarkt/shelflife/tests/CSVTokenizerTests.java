@@ -0,0 +1,203 @@
+package de.superdupermarkt.shelflife.tests;
+
+import de.superdupermarkt.shelflife.helper.CSVTokenizer;
+import de.superdupermarkt.shelflife.helper.DateInterner;
+import de.superdupermarkt.shelflife.helper.StringDeduplicator;
+import de.superdupermarkt.shelflife.helper.StringInterner;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CSVTokenizerTests {
+    /**
+     * Describes the result of parsing a field the String based way, including the exception if there is one.
+     */
+    private static String parseAsString(String field, String kind) {
+        try {
+            return switch (kind) {
+                case "int" -> String.valueOf(Integer.parseInt(field));
+                case "double" -> String.valueOf(Double.parseDouble(field));
+                default -> LocalDate.parse(field, DateTimeFormatter.ISO_DATE).toString();
+            };
+        } catch (RuntimeException ex) {
+            return ex.getClass().getSimpleName();
+        }
+    }
+
+    private static String parseWithTokenizer(CSVTokenizer tokenizer, int index, String kind) {
+        try {
+            return switch (kind) {
+                case "int" -> String.valueOf(tokenizer.intField(index));
+                case "double" -> String.valueOf(tokenizer.doubleField(index));
+                default -> tokenizer.dateField(index).toString();
+            };
+        } catch (RuntimeException ex) {
+            return ex.getClass().getSimpleName();
+        }
+    }
+
+    @Test
+    @DisplayName("Numbers and dates are parsed exactly like Integer.parseInt, Double.parseDouble and LocalDate.parse")
+    void parseLikeStrings() throws IOException {
+        List<String> values = List.of(
+                "0", "-0", "+5", "-12", "007", "2147483647", "-2147483648", "2147483648", "12345678901", "-", "+", "1a", " 2", "٣",
+                "1.15", "-1.15", ".5", "1.", ".", "1.2.3", "1e3", "NaN", "Infinity", "0.1", "0.30000000000000004", "123456789012345.6",
+                "9007199254740993", "0x1p3", "2.50d", "1,5",
+                "2024-12-05", "2024-02-29", "2023-02-29", "2024-13-01", "2024-12-5", "+2024-12-05", "2024-12-05+01:00", "0000-01-01", "2024/12/05");
+
+        String csv = String.join(";", values) + "\n";
+        CSVTokenizer tokenizer = new CSVTokenizer(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), new StringInterner(16));
+        assertTrue(tokenizer.nextLine());
+        assertEquals(values.size(), tokenizer.fieldCount());
+
+        for(int i = 0; i < values.size(); i++) {
+            for(String kind : List.of("int", "double", "date")) {
+                assertEquals(parseAsString(values.get(i), kind), parseWithTokenizer(tokenizer, i, kind), kind +" "+ values.get(i));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Lines and fields are split like BufferedReader#readLine and String.split, also across buffer borders")
+    void splitLikeStrings() throws IOException {
+        StringBuilder sb = new StringBuilder("header;a\r\n\r\n;;;\nä;;b;;\r;leading\r\n");
+        sb.append("x".repeat(100_000)).append(";long\r"); //longer than one block, so the buffer has to grow
+        for(int i = 0; i < 20_000; i++) {
+            sb.append("Produkt ").append(i).append(";").append(i % 7 == 0 ? "" : "Typ").append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        sb.append("last;line");
+        String csv = sb.toString();
+
+        List<String> expected = csv.lines().map(line -> String.join("|", line.split(";")) +"#"+ line.split(";").length).toList();
+
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        for(CSVTokenizer tokenizer : List.of(
+                new CSVTokenizer(new OneByteAtATimeStream(bytes), new StringInterner(64)),
+                new CSVTokenizer(new ByteArrayInputStream(bytes), new StringInterner(64)),
+                new CSVTokenizer(ByteBuffer.allocateDirect(bytes.length).put(bytes).flip(), new StringInterner(64)))) {
+            List<String> actual = new ArrayList<>();
+            while(tokenizer.nextLine()) {
+                List<String> fields = new ArrayList<>();
+                for(int i = 0; i < tokenizer.fieldCount(); i++) {
+                    fields.add(tokenizer.field(i));
+                }
+                actual.add(String.join("|", fields) +"#"+ tokenizer.fieldCount());
+                assertEquals(String.join(";", fields), tokenizer.line());
+            }
+
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    @DisplayName("StringInterner returns the same instance for repeated values")
+    void interning() throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer(new ByteArrayInputStream("cheese;Gouda\ncheese;Gouda\n".getBytes(StandardCharsets.UTF_8)), new StringInterner(16));
+
+        assertTrue(tokenizer.nextLine());
+        String type = tokenizer.field(0);
+        String name = tokenizer.field(1);
+
+        assertTrue(tokenizer.nextLine());
+        assertSame(type, tokenizer.field(0));
+        assertSame(name, tokenizer.field(1));
+        assertFalse(tokenizer.nextLine());
+    }
+
+    @Test
+    @DisplayName("StringInterner and StringDeduplicator share equal values, also when the table is mostly full")
+    void deduplicationAtCapacity() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for(int round = 0; round < 2; round++) {
+            for(int i = 0; i < 600; i++) { //about the share of slots the loaders use for large inventories
+                sb.append("Produkt ").append(i).append("\n");
+            }
+        }
+        CSVTokenizer tokenizer = new CSVTokenizer(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)), new StringInterner(1024));
+        StringDeduplicator deduplicator = new StringDeduplicator(1024);
+
+        List<String> interned = new ArrayList<>();
+        List<String> deduplicated = new ArrayList<>();
+        while(tokenizer.nextLine()) {
+            interned.add(tokenizer.field(0));
+            deduplicated.add(deduplicator.deduplicate(new String(tokenizer.field(0)))); //a new instance, like each row from a database
+        }
+
+        int sharedInterned = 0;
+        int sharedDeduplicated = 0;
+        for(int i = 0; i < 600; i++) {
+            assertEquals(interned.get(i), interned.get(i + 600));
+            assertEquals(deduplicated.get(i), deduplicated.get(i + 600));
+            if(interned.get(i) == interned.get(i + 600)) { sharedInterned++; }
+            if(deduplicated.get(i) == deduplicated.get(i + 600)) { sharedDeduplicated++; }
+        }
+
+        //colliding values may replace each other, but most of them have to be shared
+        assertTrue(sharedInterned > 580, "shared "+ sharedInterned);
+        assertTrue(sharedDeduplicated > 580, "shared "+ sharedDeduplicated);
+    }
+
+    @Test
+    @DisplayName("DateInterner parses like LocalDate.parse with the fallback format, and returns the same instance for repeated dates")
+    void dateInterner() {
+        DateInterner dates = new DateInterner(16);
+        for(DateTimeFormatter format : List.of(DateTimeFormatter.ISO_DATE, DateTimeFormatter.ofPattern("yyyy-MM-dd"))) {
+            for(String value : List.of("2024-12-05", "2024-02-29", "2023-02-29", "2024-13-01", "2024-12-5", "+2024-12-05", "0000-01-01", "2024/12/05", "2024-12-05+01:00")) {
+                String expected;
+                try {
+                    expected = LocalDate.parse(value, format).toString();
+                } catch (RuntimeException ex) {
+                    expected = ex.getClass().getSimpleName();
+                }
+
+                String actual;
+                try {
+                    actual = dates.parse(value, format).toString();
+                } catch (RuntimeException ex) {
+                    actual = ex.getClass().getSimpleName();
+                }
+
+                assertEquals(expected, actual, value);
+            }
+        }
+
+        assertSame(dates.parse("2024-12-05", DateTimeFormatter.ISO_DATE), dates.parse("2024-12-05", DateTimeFormatter.ISO_DATE));
+        assertSame(dates.parse("2024-12-05", DateTimeFormatter.ISO_DATE), dates.of(2024, 12, 5));
+    }
+
+    /**
+     * Returns at most one byte per read, so every line break ends up at a buffer border at some point.
+     */
+    private static class OneByteAtATimeStream extends InputStream {
+        private final byte[] bytes;
+        private int position = 0;
+
+        OneByteAtATimeStream(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            return this.position < this.bytes.length ? this.bytes[this.position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if(this.position == this.bytes.length) { return -1; }
+            if(len == 0) { return 0; }
+            b[off] = this.bytes[this.position++];
+            return 1;
+        }
+    }
+}
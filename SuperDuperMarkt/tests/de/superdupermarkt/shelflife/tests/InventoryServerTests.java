@@ -0,0 +1,136 @@
+package de.superdupermarkt.shelflife.tests;
+
+import de.superdupermarkt.shelflife.data.Product;
+import de.superdupermarkt.shelflife.data.ProductType;
+import de.superdupermarkt.shelflife.data.loader.ProductLoader;
+import de.superdupermarkt.shelflife.data.loader.ProductTypeLoader;
+import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.engine.SequentialInventoryUpdater;
+import de.superdupermarkt.shelflife.server.InventoryServer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InventoryServerTests {
+    private static final LocalDate initialDate = LocalDate.of(2024, 12, 1);
+
+    private static class MockErrorReporter implements ErrorReporter {
+        public final List<Object> errors = new ArrayList<>();
+
+        @Override
+        public void error(Error error) { this.errors.add(error); }
+
+        @Override
+        public void error(Exception ex) { this.errors.add(ex); }
+
+        @Override
+        public void warning(Error warning) { this.errors.add(warning); }
+
+        @Override
+        public void warning(Exception warning) { this.errors.add(warning); }
+    }
+
+    private static InventoryServer createServer(MockErrorReporter errorReporter) throws Exception {
+        ProductTypeLoader typeLoader = new ProductTypeLoader(errorReporter, ClassLoader.getSystemClassLoader()) {
+            @Override
+            public Map<String, ProductType> fetchProductTypes() {
+                return new HashMap<>();
+            }
+        };
+
+        ProductLoader productLoader = new ProductLoader(errorReporter) {
+            @Override
+            public List<Product> fetchProducts(LocalDate startDate, Map<String, ProductType> productTypes) {
+                return InventoryUpdaterTests.createInventory(2_000);
+            }
+        };
+
+        return new InventoryServer(typeLoader, productLoader, errorReporter, initialDate, new InetSocketAddress("localhost", 0), 4);
+    }
+
+    @Test
+    @DisplayName("The state on any day is identical to the daily loop and leaves the loaded inventory untouched")
+    void productsOn() throws Exception {
+        MockErrorReporter errorReporter = new MockErrorReporter();
+        try(InventoryServer server = createServer(errorReporter)) {
+            List<Product> expected = InventoryUpdaterTests.createInventory(2_000);
+            SequentialInventoryUpdater updater = new SequentialInventoryUpdater();
+            for(LocalDate day = initialDate; day.isBefore(initialDate.plusDays(60)); day = day.plusDays(1)) {
+                expected = updater.update(expected, day, 1);
+
+                if(day.getDayOfMonth() % 10 == 0) {
+                    assertEquals(expected, server.productsOn(day), "Different result on "+ day);
+                }
+            }
+
+            assertEquals(updater.update(InventoryUpdaterTests.createInventory(2_000), initialDate, 1), server.productsOn(initialDate),
+                    "Previous queries should not have changed the loaded inventory");
+            assertThrows(IllegalArgumentException.class, () -> server.productsOn(initialDate.minusDays(1)));
+        }
+
+        assertTrue(errorReporter.errors.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Concurrent HTTP queries return consistent results, invalid ones are rejected")
+    void httpQueries() throws Exception {
+        MockErrorReporter errorReporter = new MockErrorReporter();
+        try(InventoryServer server = createServer(errorReporter)) {
+            server.start();
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:"+ server.getPort();
+
+            List<String> queries = List.of("/products?date=2025-01-10", "/unshelf?date=2025-01-10", "/price?date=2025-01-10&name=Product7");
+            List<String> expected = new ArrayList<>();
+            for(String query : queries) {
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(base + query)).build(), HttpResponse.BodyHandlers.ofString());
+                assertEquals(200, response.statusCode(), query);
+                assertTrue(response.body().startsWith("{\"date\":\"2025-01-10\",\"products\":["), query);
+                expected.add(response.body());
+            }
+            assertTrue(expected.get(2).contains("\"name\":\"Product7\""));
+
+            ExecutorService clients = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<String>> responses = new ArrayList<>();
+                for(int i = 0; i < 64; i++) {
+                    String query = queries.get(i % queries.size());
+                    responses.add(clients.submit(() -> client.send(HttpRequest.newBuilder(URI.create(base + query)).build(), HttpResponse.BodyHandlers.ofString()).body()));
+                }
+                for(int i = 0; i < responses.size(); i++) {
+                    assertEquals(expected.get(i % queries.size()), responses.get(i).get(), "Concurrent queries should not influence each other");
+                }
+            } finally {
+                clients.shutdown();
+            }
+
+            assertEquals(400, client.send(HttpRequest.newBuilder(URI.create(base + "/products?date=2024-11-30")).build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(400, client.send(HttpRequest.newBuilder(URI.create(base + "/products?date=gestern")).build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(400, client.send(HttpRequest.newBuilder(URI.create(base + "/products?date=%2B999999999-12-31")).build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(400, client.send(HttpRequest.newBuilder(URI.create(base + "/price?date=%2B999999999-12-31&name=Product7")).build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(404, client.send(HttpRequest.newBuilder(URI.create(base + "/price?date=2025-01-10&name=Unknown")).build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(405, client.send(HttpRequest.newBuilder(URI.create(base + "/reload")).build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+
+            HttpResponse<String> reload = client.send(HttpRequest.newBuilder(URI.create(base + "/reload")).POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, reload.statusCode());
+            assertEquals("{\"products\":2000}", reload.body());
+        }
+
+        assertTrue(errorReporter.errors.isEmpty());
+    }
+}
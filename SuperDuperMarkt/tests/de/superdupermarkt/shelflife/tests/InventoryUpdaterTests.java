@@ -0,0 +1,189 @@
+package de.superdupermarkt.shelflife.tests;
+
+import de.superdupermarkt.shelflife.data.Product;
+import de.superdupermarkt.shelflife.data.ProductType;
+import de.superdupermarkt.shelflife.engine.ChangeTrackingInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.ColumnarInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.ExpiryIndexInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.InPlaceInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.InventoryUpdater;
+import de.superdupermarkt.shelflife.engine.ParallelInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.SequentialInventoryUpdater;
+import de.superdupermarkt.shelflife.engine.TypeBatchInventoryUpdater;
+import de.superdupermarkt.shelflife.rules.Cheese;
+import de.superdupermarkt.shelflife.rules.GeneralProduct;
+import de.superdupermarkt.shelflife.rules.Wine;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InventoryUpdaterTests {
+    private static final LocalDate initialDate = LocalDate.of(2024, 12, 1);
+    private static final List<ProductType> productTypes = List.of(
+            new GeneralProduct("general"),
+            new Cheese("cheese"),
+            new Wine("wine"),
+            new Cheese("subclassedCheese") {}); //subclasses of the built-in rules use the per product fallback during batch updates
+
+    /**
+     * Creates a large inventory with a fixed seed, so repeated calls produce equal (but not identical) products.
+     */
+    static List<Product> createInventory(int size) {
+        Random random = new Random(42);
+        List<Product> products = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            products.add(new Product(
+                    productTypes.get(random.nextInt(productTypes.size())),
+                    "Product"+ i,
+                    random.nextInt(120) - 10,
+                    random.nextInt(1000) / 100.0,
+                    initialDate.plusDays(random.nextInt(200) - 20),
+                    initialDate));
+        }
+
+        return products;
+    }
+
+    private static void assertSameResult(InventoryUpdater expectedUpdater, InventoryUpdater actualUpdater, int passedDays) {
+        List<Product> expected = createInventory(100_000);
+        List<Product> actual = createInventory(100_000);
+
+        for(LocalDate day = initialDate; day.isBefore(initialDate.plusDays(250)); day = day.plusDays(passedDays)) {
+            expected = expectedUpdater.update(expected, day, passedDays);
+            actual = actualUpdater.update(actual, day, passedDays);
+
+            assertEquals(expected, actual, "Inventory differs at "+ day);
+        }
+
+        assertFalse(expected.isEmpty(), "Test inventory should not be empty at the end, otherwise later days are not tested");
+    }
+
+    @Test
+    @DisplayName("Parallel updater matches sequential updater")
+    void parallelMatchesSequential() {
+        try(ParallelInventoryUpdater parallel = new ParallelInventoryUpdater(4)) {
+            assertSameResult(new SequentialInventoryUpdater(), parallel, 1);
+            assertSameResult(new SequentialInventoryUpdater(), parallel, 9);
+        }
+    }
+
+    @Test
+    @DisplayName("Columnar updater matches sequential updater")
+    void columnarMatchesSequential() {
+        assertSameResult(new SequentialInventoryUpdater(), new ColumnarInventoryUpdater(), 1);
+        assertSameResult(new SequentialInventoryUpdater(), new ColumnarInventoryUpdater(), 9);
+    }
+
+    @Test
+    @DisplayName("Columnar updater rejects due dates outside of its epoch day range")
+    void columnarRejectsFarDueDates() {
+        List<Product> products = List.of(new Product(productTypes.get(0), "Far", 10, 1.0, LocalDate.MAX, initialDate));
+        assertThrows(ArithmeticException.class, () -> new ColumnarInventoryUpdater().update(products, initialDate, 1));
+    }
+
+    @Test
+    @DisplayName("Type batch updater matches sequential updater")
+    void typeBatchMatchesSequential() {
+        assertSameResult(new SequentialInventoryUpdater(), new TypeBatchInventoryUpdater(), 1);
+        assertSameResult(new SequentialInventoryUpdater(), new TypeBatchInventoryUpdater(), 9);
+    }
+
+    @Test
+    @DisplayName("In place updater matches sequential updater")
+    void inPlaceMatchesSequential() {
+        assertSameResult(new SequentialInventoryUpdater(), new InPlaceInventoryUpdater(), 1);
+        assertSameResult(new SequentialInventoryUpdater(), new InPlaceInventoryUpdater(), 9);
+    }
+
+    @Test
+    @DisplayName("Change tracking updater reports exactly the changed and removed products")
+    void changeTracking() {
+        for(int passedDays : new int[]{1, 9}) {
+            ChangeTrackingInventoryUpdater tracker = new ChangeTrackingInventoryUpdater(new InPlaceInventoryUpdater());
+            List<Product> products = createInventory(10_000);
+
+            for(LocalDate day = initialDate; day.isBefore(initialDate.plusDays(250)); day = day.plusDays(passedDays)) {
+                Map<String, String> previousState = new HashMap<>();
+                for(Product product : products) {
+                    previousState.put(product.getName(), product.getQuality() +"/"+ product.getPrice() +"/"+ product.shouldUnshelf());
+                }
+
+                products = tracker.update(products, day, passedDays);
+
+                List<Product> expectedChanged = new ArrayList<>();
+                for(Product product : products) {
+                    String state = previousState.remove(product.getName());
+                    if(!state.equals(product.getQuality() +"/"+ product.getPrice() +"/"+ product.shouldUnshelf())) {
+                        expectedChanged.add(product);
+                    }
+                }
+
+                assertEquals(expectedChanged, tracker.getChanged(), "Changed products differ at "+ day);
+                assertEquals(previousState.keySet(), tracker.getRemoved().stream().map(Product::getName).collect(Collectors.toSet()), "Removed products differ at "+ day);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Change tracking updater rejects updaters which replace the products")
+    void changeTrackingRequiresIdentity() {
+        ChangeTrackingInventoryUpdater tracker = new ChangeTrackingInventoryUpdater(new ColumnarInventoryUpdater());
+        assertThrows(IllegalStateException.class, () -> tracker.update(createInventory(100), initialDate, 1));
+    }
+
+    @Test
+    @DisplayName("Expiry index updater matches sequential updater")
+    void expiryIndexMatchesSequential() {
+        assertSameResult(new SequentialInventoryUpdater(), new ExpiryIndexInventoryUpdater(), 1);
+        assertSameResult(new SequentialInventoryUpdater(), new ExpiryIndexInventoryUpdater(), 9);
+    }
+
+    /**
+     * Regression test for the allocation free daily loop. Only uses rules which do not allocate themselves,
+     * so any allocation measured here comes from the updater or Product.
+     */
+    @Test
+    @DisplayName("In place updater does not allocate per day")
+    void inPlaceAllocationPerDay() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        List<ProductType> types = List.of(new GeneralProduct("general"), new Wine("wine"));
+        LocalDate lastDay = initialDate.plusDays(2000);
+        List<Product> products = new ArrayList<>();
+        for(int i = 0; i < 10_000; i++) {
+            products.add(new Product(types.get(i % types.size()), "Product"+ i, i % 50, 1.5, lastDay, initialDate));
+        }
+
+        InventoryUpdater updater = new InPlaceInventoryUpdater();
+        LocalDate day = initialDate;
+        for(int i = 0; i < 500; i++, day = day.plusDays(1)) { //warm up, also moves the products into the backing array
+            products = updater.update(products, day, 1);
+        }
+
+        //collect the days beforehand, the loop below should only measure the updater
+        LocalDate[] days = new LocalDate[1000];
+        for(int i = 0; i < days.length; i++, day = day.plusDays(1)) {
+            days[i] = day;
+        }
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for(LocalDate measuredDay : days) {
+            products = updater.update(products, measuredDay, 1);
+        }
+        long allocatedPerDay = (threadBean.getThreadAllocatedBytes(threadId) - before) / days.length;
+
+        assertEquals(10_000, products.size(), "No product should have been removed");
+        assertTrue(allocatedPerDay < 64, "Daily update should not allocate, but allocated "+ allocatedPerDay +" bytes per day");
+    }
+}
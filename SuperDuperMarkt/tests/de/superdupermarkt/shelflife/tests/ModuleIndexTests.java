@@ -0,0 +1,120 @@
+package de.superdupermarkt.shelflife.tests;
+
+import de.superdupermarkt.shelflife.data.ProductType;
+import de.superdupermarkt.shelflife.data.RuleClassRegistry;
+import de.superdupermarkt.shelflife.data.loader.factory.ProductLoaderRegistry;
+import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.modules.ModuleIndex;
+import de.superdupermarkt.shelflife.rules.GeneralProduct;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModuleIndexTests {
+    /**
+     * Rule outside of the rules package, which can only be found via the index.
+     */
+    public static class IndexedRule extends GeneralProduct {
+        public IndexedRule(String name) {
+            super(name);
+        }
+    }
+
+    private static class MockErrorReporter implements ErrorReporter {
+        public final List<Object> errors = new ArrayList<>();
+
+        @Override
+        public void error(Error error) { this.errors.add(error); }
+
+        @Override
+        public void error(Exception ex) { this.errors.add(ex); }
+
+        @Override
+        public void warning(Error warning) { this.errors.add(warning); }
+
+        @Override
+        public void warning(Exception warning) { this.errors.add(warning); }
+    }
+
+    private static Path createModuleJar(String index) throws IOException {
+        Path jar = Files.createTempFile("module", ".jar");
+        jar.toFile().deleteOnExit();
+
+        try(JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(ModuleIndex.LOCATION));
+            out.write(index.getBytes());
+        }
+
+        return jar;
+    }
+
+    @Test
+    @DisplayName("The index of all jars is combined, the first jar wins for duplicate names")
+    void readIndex() throws IOException {
+        Path first = createModuleJar("ProductLoader.MySql=ProductLoaderMySQLFactory\nRule.Special="+ IndexedRule.class.getName());
+        Path second = createModuleJar("ProductLoader.MySql=OtherFactory\nProductTypeLoader.MySql=ProductTypeLoaderMySQLFactory\nUnknown.Entry=Ignored");
+
+        try(URLClassLoader classLoader = new URLClassLoader(new URL[]{ first.toUri().toURL(), second.toUri().toURL() })) {
+            ModuleIndex index = ModuleIndex.read(classLoader);
+
+            assertEquals(Map.of("MySql", "ProductLoaderMySQLFactory"), index.getProductLoaderFactories());
+            assertEquals(Map.of("MySql", "ProductTypeLoaderMySQLFactory"), index.getProductTypeLoaderFactories());
+            assertEquals(Map.of("Special", IndexedRule.class.getName()), index.getRuleClasses());
+        }
+    }
+
+    @Test
+    @DisplayName("Factories registered by name are only loaded once a config string refers to them")
+    void lazyFactories() {
+        List<String> loadedClasses = new ArrayList<>();
+        ClassLoader countingClassLoader = new ClassLoader(ClassLoader.getSystemClassLoader()) {
+            @Override
+            public Class<?> loadClass(String name) throws ClassNotFoundException {
+                loadedClasses.add(name);
+                return super.loadClass(name);
+            }
+        };
+
+        MockErrorReporter errorReporter = new MockErrorReporter();
+        ProductLoaderRegistry registry = new ProductLoaderRegistry();
+        registry.registerLoaderFactory("Unused", countingClassLoader, "UnusedFactory");
+        registry.registerLoaderFactory("Missing", countingClassLoader, "MissingFactory");
+
+        assertTrue(loadedClasses.isEmpty(), "Registering should not load any class");
+
+        assertNull(registry.fromConfigString("Missing:config", errorReporter));
+        assertEquals(List.of(ProductLoaderRegistry.class.getPackageName() +".MissingFactory"), loadedClasses, "Only the requested factory should be loaded");
+        assertEquals(1, errorReporter.errors.size());
+        assertInstanceOf(ClassNotFoundException.class, errorReporter.errors.getFirst());
+    }
+
+    @Test
+    @DisplayName("RuleClassRegistry - Rule classes declared in the index are used instead of the rules package")
+    void indexedRuleClasses() throws IOException {
+        Path jar = createModuleJar("Rule.Special="+ IndexedRule.class.getName());
+
+        try(URLClassLoader classLoader = new URLClassLoader(new URL[]{ jar.toUri().toURL() }, ClassLoader.getSystemClassLoader())) {
+            RuleClassRegistry registry = new RuleClassRegistry(classLoader);
+
+            ProductType productType = Assertions.assertDoesNotThrow(() -> registry.create("Special", "special"));
+            assertInstanceOf(IndexedRule.class, productType);
+            assertEquals("special", productType.getName());
+
+            assertInstanceOf(GeneralProduct.class, Assertions.assertDoesNotThrow(() -> registry.create("GeneralProduct", "general")),
+                    "Names which are not indexed should still be found in the rules package");
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package de.superdupermarkt.shelflife.tests;
+
+import de.superdupermarkt.shelflife.ShelfController;
+import de.superdupermarkt.shelflife.data.Product;
+import de.superdupermarkt.shelflife.data.ProductType;
+import de.superdupermarkt.shelflife.data.loader.ProductLoader;
+import de.superdupermarkt.shelflife.data.loader.ProductTypeLoader;
+import de.superdupermarkt.shelflife.data.view.DataView;
+import de.superdupermarkt.shelflife.modules.ModuleReloader;
+import de.superdupermarkt.shelflife.modules.ModuleWatcher;
+import de.superdupermarkt.shelflife.rules.Cheese;
+import de.superdupermarkt.shelflife.rules.GeneralProduct;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModuleReloadTests {
+    private static final LocalDate initialDate = LocalDate.of(2024, 12, 1);
+
+    /**
+     * Records the last output of each day, as well as all warnings and errors.
+     */
+    private static class RecordingView implements DataView {
+        public final Map<LocalDate, List<String>> days = new HashMap<>();
+        public final List<Object> errors = new ArrayList<>();
+        public final List<Object> warnings = new ArrayList<>();
+
+        @Override
+        public void outputInventory(List<Product> products) {}
+
+        @Override
+        public void outputDay(LocalDate day, List<Product> products) {
+            this.days.put(day, products.stream().map(product -> product.getName() +":"+ product.getQuality() +":"+ product.getType().getClass().getSimpleName()).toList());
+        }
+
+        @Override
+        public void done() {}
+
+        @Override
+        public void error(Error error) { this.errors.add(error); }
+
+        @Override
+        public void error(Exception ex) { this.errors.add(ex); }
+
+        @Override
+        public void warning(Error warning) { this.warnings.add(warning); }
+
+        @Override
+        public void warning(Exception warning) { this.warnings.add(warning); }
+    }
+
+    private static ProductTypeLoader typeLoader(RecordingView view, ProductType... types) {
+        return new ProductTypeLoader(view, ClassLoader.getSystemClassLoader()) {
+            @Override
+            public Map<String, ProductType> fetchProductTypes() {
+                Map<String, ProductType> productTypes = new HashMap<>();
+                for(ProductType type : types) {
+                    productTypes.put(type.getName(), type);
+                }
+                return productTypes;
+            }
+        };
+    }
+
+    private static ProductLoader productLoader(RecordingView view) {
+        return new ProductLoader(view) {
+            @Override
+            public List<Product> fetchProducts(LocalDate startDate, Map<String, ProductType> productTypes) {
+                return List.of(
+                        new Product(productTypes.get("aging"), "Aging", 80, 1.0, startDate.plusDays(100), startDate),
+                        new Product(productTypes.get("removed"), "Removed", 80, 1.0, startDate.plusDays(100), startDate));
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("Live mode applies a reload between two days, keeping the state of all products")
+    void controllerAppliesReload() throws IOException {
+        RecordingView view = new RecordingView();
+
+        //the reloaded version of the "aging" type loses quality like cheese instead of keeping it, the "removed" type no longer exists
+        ModuleReloader.Generation reloaded = new ModuleReloader.Generation(
+                new URLClassLoader(new java.net.URL[0]), typeLoader(view, new Cheese("aging")), productLoader(view));
+
+        List<Object> reloaderCalls = new ArrayList<>();
+        ModuleReloader reloader = new ModuleReloader() {
+            private int polls = 0;
+
+            @Override
+            public Generation poll() {
+                return ++this.polls == 4 ? reloaded : null; //before the update of the 4th day
+            }
+
+            @Override
+            public void activate(Generation generation, boolean releasePrevious) {
+                reloaderCalls.add(releasePrevious);
+            }
+
+            @Override
+            public void discard(Generation generation) {
+                reloaderCalls.add(generation);
+            }
+        };
+
+        ShelfController controller = new ShelfController(
+                typeLoader(view, new GeneralProduct("aging"), new GeneralProduct("removed")), productLoader(view), view);
+        controller.enableLiveMode(reloader, 0);
+        controller.execute(initialDate, initialDate.plusDays(5));
+
+        assertEquals(List.of("Aging:80:GeneralProduct", "Removed:80:GeneralProduct"), view.days.get(initialDate.plusDays(2)), "Old rules should apply before the reload");
+        assertEquals(List.of("Aging:79:Cheese", "Removed:80:GeneralProduct"), view.days.get(initialDate.plusDays(3)), "New rules should apply from the state before the reload");
+        assertEquals(List.of("Aging:77:Cheese", "Removed:80:GeneralProduct"), view.days.get(initialDate.plusDays(5)));
+
+        assertEquals(List.of(new ShelfController.ProductTypeRemovedError("removed")), view.warnings, "Types missing after the reload should be reported once");
+        assertEquals(List.of(false), reloaderCalls, "The old generation is still in use by the products of the removed type");
+        assertTrue(view.errors.isEmpty());
+    }
+
+    @Test
+    @DisplayName("ModuleWatcher publishes a new generation when a jar changes")
+    void watcherDetectsJar() throws Exception {
+        Path moduleDir = Files.createTempDirectory("modules");
+        RecordingView view = new RecordingView();
+
+        try(ModuleWatcher watcher = new ModuleWatcher(moduleDir, null,
+                classLoader -> new ModuleReloader.Generation(classLoader, typeLoader(view), productLoader(view)), view)) {
+            assertNull(watcher.poll(), "Nothing changed yet");
+
+            writeJar(moduleDir.resolve("module.jar"), "marker.txt");
+
+            ModuleReloader.Generation generation = awaitGeneration(watcher);
+            assertNotNull(generation, "No generation was published for the new jar");
+            assertNotNull(generation.classLoader().getResource("marker.txt"), "The new classloader should contain the new jar");
+            watcher.activate(generation, true);
+        } finally {
+            deleteDirectory(moduleDir);
+        }
+
+        assertTrue(view.errors.isEmpty());
+    }
+
+    @Test
+    @DisplayName("ModuleWatcher reports failing resolvers and keeps watching")
+    void watcherSurvivesFailingResolver() throws Exception {
+        Path moduleDir = Files.createTempDirectory("modules");
+        RecordingView view = new RecordingView();
+        List<URLClassLoader> resolved = new CopyOnWriteArrayList<>(); //filled by the watching thread
+
+        try(ModuleWatcher watcher = new ModuleWatcher(moduleDir, null, classLoader -> {
+                    resolved.add(classLoader);
+                    if(classLoader.getResource("broken.txt") != null) { throw new IllegalStateException("Broken module factory"); }
+                    return new ModuleReloader.Generation(classLoader, typeLoader(view), productLoader(view));
+                }, view)) {
+            writeJar(moduleDir.resolve("module.jar"), "broken.txt");
+            for(int i = 0; i < 200 && view.errors.isEmpty(); i++) {
+                Thread.sleep(100);
+            }
+            assertFalse(view.errors.isEmpty(), "The exception of the resolver should be reported");
+            assertInstanceOf(IllegalStateException.class, view.errors.get(0));
+            assertNull(resolved.get(0).getResource("broken.txt"), "The classloader of the failed reload should be closed");
+
+            writeJar(moduleDir.resolve("module.jar"), "fixed.txt");
+            ModuleReloader.Generation generation = awaitGeneration(watcher);
+            assertNotNull(generation, "The watcher should keep watching after a failed reload");
+            watcher.discard(generation);
+        } finally {
+            deleteDirectory(moduleDir);
+        }
+    }
+
+    @Test
+    @DisplayName("ModuleWatcher retains generations still in use and releases all of them on close")
+    void watcherReleasesRetainedGenerations() throws Exception {
+        Path moduleDir = Files.createTempDirectory("modules");
+        RecordingView view = new RecordingView();
+        List<URLClassLoader> closed = new ArrayList<>();
+        List<ModuleReloader.Generation> generations = new ArrayList<>();
+        for(int i = 0; i < 4; i++) {
+            URLClassLoader classLoader = new URLClassLoader(new URL[0]) {
+                @Override
+                public void close() throws IOException {
+                    closed.add(this);
+                    super.close();
+                }
+            };
+            generations.add(new ModuleReloader.Generation(classLoader, typeLoader(view), productLoader(view)));
+        }
+
+        try(ModuleWatcher watcher = new ModuleWatcher(moduleDir, generations.get(0), classLoader -> null, view)) {
+            watcher.activate(generations.get(1), false);
+            watcher.activate(generations.get(2), false);
+            assertTrue(closed.isEmpty(), "Products still use the older generations");
+
+            watcher.activate(generations.get(3), true);
+            assertEquals(List.of(generations.get(0).classLoader(), generations.get(1).classLoader(), generations.get(2).classLoader()), closed,
+                    "Once all products use the new generation, all older ones should be released");
+
+            closed.clear();
+            watcher.activate(generations.get(0), false);
+        } finally {
+            deleteDirectory(moduleDir);
+        }
+
+        assertEquals(List.of(generations.get(0).classLoader(), generations.get(3).classLoader()), closed,
+                "Closing the watcher should release the active and the retained generation");
+        assertTrue(view.errors.isEmpty());
+    }
+
+    private static void writeJar(Path jar, String entry) throws IOException {
+        try(JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(entry));
+            out.write("reloaded".getBytes());
+        }
+    }
+
+    private static ModuleReloader.Generation awaitGeneration(ModuleWatcher watcher) throws InterruptedException {
+        ModuleReloader.Generation generation = null;
+        for(int i = 0; i < 200 && generation == null; i++) { //the watch service of some platforms polls only every few seconds
+            Thread.sleep(100);
+            generation = watcher.poll();
+        }
+        return generation;
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try(var files = Files.list(directory)) {
+            for(Path file : files.toList()) { Files.delete(file); }
+        }
+        Files.delete(directory);
+    }
+}
@@ -3,25 +3,39 @@ package de.superdupermarkt.shelflife.tests;
 import de.superdupermarkt.shelflife.data.Product;
 import de.superdupermarkt.shelflife.data.ProductType;
 import de.superdupermarkt.shelflife.data.loader.*;
+import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessException;
 import de.superdupermarkt.shelflife.data.loader.exception.ProductTypeNotFoundException;
 import de.superdupermarkt.shelflife.data.loader.exception.ProductTypeNotValidException;
+import de.superdupermarkt.shelflife.data.loader.factory.ProductLoaderRegistry;
 import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.helper.ReadAheadInputStream;
 import de.superdupermarkt.shelflife.rules.Cheese;
 import de.superdupermarkt.shelflife.rules.GeneralProduct;
 import de.superdupermarkt.shelflife.rules.Wine;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
@@ -85,6 +99,240 @@ public class ProductLoaderTests {
         asserts.accept(products, errReporter);
     }
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("csvLoader")
+    @DisplayName("CSV Product memory mapped File Loader")
+    void csvMappedFileLoader(String testName, InputStream inputStream, BiConsumer<List<Product>, MockErrorReporter> asserts) {
+        MockErrorReporter errReporter = new MockErrorReporter();
+
+        List<Product> products = runLoader(
+                new ProductLoaderCSVMappedFile(
+                        Helper.createTempFileFromInputStream("tstFile", ".csv", inputStream),
+                        4,
+                        16, //tiny chunks, so most lines are parsed by different threads
+                        errReporter));
+
+        asserts.accept(products, errReporter);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("csvLoader")
+    @DisplayName("CSV Product cached File Loader")
+    void csvCachedFileLoader(String testName, InputStream inputStream, BiConsumer<List<Product>, MockErrorReporter> asserts) {
+        Path file = Helper.createTempFileFromInputStream("tstFile", ".csv", inputStream);
+        Path cacheFile = file.resolveSibling(file.getFileName() + ProductLoaderCSVCachedFile.CACHE_SUFFIX);
+        cacheFile.toFile().deleteOnExit();
+
+        MockErrorReporter errReporter = new MockErrorReporter();
+        asserts.accept(runLoader(new ProductLoaderCSVCachedFile(file, errReporter)), errReporter);
+        assertTrue(Files.exists(cacheFile), "First run should create the cache");
+
+        errReporter = new MockErrorReporter();
+        asserts.accept(runLoader(new ProductLoaderCSVCachedFile(file, errReporter)), errReporter);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("csvLoader")
+    @DisplayName("CSV Product File Loaders - gzip compressed files")
+    void csvFileLoaderGzip(String testName, InputStream inputStream, BiConsumer<List<Product>, MockErrorReporter> asserts) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try(GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            inputStream.transferTo(gzip);
+        }
+        Path file = Helper.createTempFileFromInputStream("tstFile", ".csv", new ByteArrayInputStream(compressed.toByteArray())); //detected by content, not by extension
+        file.resolveSibling(file.getFileName() + ProductLoaderCSVCachedFile.CACHE_SUFFIX).toFile().deleteOnExit();
+
+        for(BiFunction<Path, MockErrorReporter, ProductLoader> loader : List.<BiFunction<Path, MockErrorReporter, ProductLoader>>of(
+                ProductLoaderCSVFile::new,
+                ProductLoaderCSVMappedFile::new,
+                ProductLoaderCSVCachedFile::new,
+                ProductLoaderCSVCachedFile::new)) { //second run reads from the cache
+            MockErrorReporter errReporter = new MockErrorReporter();
+            asserts.accept(runLoader(loader.apply(file, errReporter)), errReporter);
+        }
+    }
+
+    @Test
+    @DisplayName("ReadAheadInputStream - Any failure of the source is rethrown after the data read before it")
+    void readAheadFailure() {
+        InputStream failing = new InputStream() {
+            private int remaining = 10;
+
+            @Override
+            public int read() {
+                if(this.remaining-- > 0) { return 'x'; }
+                throw new IllegalStateException("Broken decompressor");
+            }
+        };
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            try(InputStream readAhead = new ReadAheadInputStream(failing, 4, 2)) {
+                assertArrayEquals("xxxxxxxx".getBytes(), readAhead.readNBytes(8), "Complete blocks read before the failure are passed on");
+                IOException ex = assertThrows(IOException.class, () -> readAhead.readNBytes(8));
+                assertInstanceOf(IllegalStateException.class, ex.getCause());
+            }
+        }, "The reader should not wait forever after the source failed");
+    }
+
+    @Test
+    @DisplayName("CSV Product cached File Loader - Inputs too large for a cache are loaded without one")
+    void csvCachedFileLoaderTooLarge() throws IOException {
+        Path directory = Files.createTempDirectory("tstCache");
+        Path file = directory.resolve("products.csv");
+        StringBuilder csv = new StringBuilder("type;name;quality;basePrice;dueDate\n");
+        for(int i = 0; i < 100; i++) {
+            csv.append(i % 2 == 0 ? "cheese" : "wine").append(";Product").append(i).append(';').append(i % 50).append(";1.5;")
+               .append(dueDate.plusDays(i % 60)).append(i % 10 == 0 ? ";x\n" : "\n");
+        }
+        Files.writeString(file, csv);
+        Path cacheFile = directory.resolve("products.csv"+ ProductLoaderCSVCachedFile.CACHE_SUFFIX);
+
+        MockErrorReporter expectedReporter = new MockErrorReporter();
+        List<Product> expected = runLoader(new ProductLoaderCSVFile(file, expectedReporter));
+
+        MockErrorReporter errReporter = new MockErrorReporter();
+        assertEquals(expected, runLoader(new ProductLoaderCSVCachedFile(file, cacheFile, 1024, errReporter)));
+        List<List<Product>> batches = new ArrayList<>();
+        assertDoesNotThrow(() -> new ProductLoaderCSVCachedFile(file, cacheFile, 1024, errReporter).streamProducts(dueDate, productTypes, 16, batches::add));
+        assertEquals(expected, batches.stream().flatMap(List::stream).toList());
+
+        assertEquals(2 * (expectedReporter.warnings.size() + 1), errReporter.warnings.size(), "The usual warnings and one about the cache per run");
+        assertInstanceOf(ProductLoaderCSVCachedFile.CacheNotWrittenError.class, errReporter.warnings.get(0));
+        try(var files = Files.list(directory)) {
+            assertEquals(List.of(file), files.toList(), "Neither a cache nor temporary files should be left");
+        }
+
+        Files.delete(file);
+        Files.delete(directory);
+    }
+
+    @Test
+    @DisplayName("CSV Product cached File Loader - Cache is rebuilt when the CSV changes")
+    void csvCachedFileLoaderChangedFile() throws IOException {
+        Path file = Helper.createTempFileFromInputStream("tstFile", ".csv", new ByteArrayInputStream(
+                "type;name;quality;basePrice;dueDate\ncheese;Gouda;40;2.20;2024-12-22\n".getBytes(StandardCharsets.UTF_8)));
+        Path cacheFile = file.resolveSibling(file.getFileName() + ProductLoaderCSVCachedFile.CACHE_SUFFIX);
+        cacheFile.toFile().deleteOnExit();
+
+        MockErrorReporter errReporter = new MockErrorReporter();
+        assertEquals(List.of(new Product(productTypes.get("cheese"), "Gouda", 40, 2.20, LocalDate.of(2024, 12, 22), dueDate)),
+                runLoader(new ProductLoaderCSVCachedFile(file, errReporter)));
+
+        Files.writeString(file, "type;name;quality;basePrice;dueDate\nwine;Rotwein;10;5.00;2025-01-01\nwine;Rotwein;10;5.00;2025-01-01\n");
+        assertEquals(List.of(new Product(productTypes.get("wine"), "Rotwein", 10, 5.00, LocalDate.of(2025, 1, 1), dueDate, 2)),
+                runLoader(new ProductLoaderCSVCachedFile(file, errReporter)),
+                "Changed CSV should not be served from the outdated cache");
+
+        Files.write(cacheFile, new byte[] {1, 2, 3});
+        assertEquals(List.of(new Product(productTypes.get("wine"), "Rotwein", 10, 5.00, LocalDate.of(2025, 1, 1), dueDate, 2)),
+                runLoader(new ProductLoaderCSVCachedFile(file, errReporter)),
+                "Broken cache should be rebuilt");
+        assertTrue(errReporter.warnings.isEmpty());
+    }
+
+    @Test
+    @DisplayName("CSV Product memory mapped and cached File Loader - Same products and warnings as the sequential loader for a large file")
+    void csvMappedFileLoaderLargeFile() throws IOException {
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder("type;name;quality;basePrice;dueDate\r\n");
+        List<String> types = List.of("general", "cheese", "wine", "noType");
+        for(int i = 0; i < 50_000; i++) {
+            csv.append(types.get(random.nextInt(types.size()))).append(";Product").append(i).append(';')
+               .append(random.nextInt(10) == 0 ? "x" : random.nextInt(100)).append(';')
+               .append(random.nextInt(1000) / 100.0).append(';')
+               .append(dueDate.plusDays(random.nextInt(100)))
+               .append(random.nextInt(3) == 0 ? "\r\n" : "\n");
+        }
+        Path file = Helper.createTempFileFromInputStream("tstFile", ".csv", new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+
+        MockErrorReporter expectedReporter = new MockErrorReporter();
+        List<Product> expected = runLoader(new ProductLoaderCSVFile(file, expectedReporter));
+
+        MockErrorReporter errReporter = new MockErrorReporter();
+        List<Product> products = runLoader(new ProductLoaderCSVMappedFile(file, 4, 4096, errReporter));
+
+        assertEquals(expected, products, "Products should be identical and in file order");
+        assertEquals(expectedReporter.warnings.stream().map(warning -> ((ErrorReporter.Error)warning).getMessage()).toList(),
+                errReporter.warnings.stream().map(warning -> ((ErrorReporter.Error)warning).getMessage()).toList(),
+                "Warnings should be identical and in file order");
+        assertFalse(errReporter.warnings.isEmpty());
+
+        file.resolveSibling(file.getFileName() + ProductLoaderCSVCachedFile.CACHE_SUFFIX).toFile().deleteOnExit();
+        for(int run = 0; run < 2; run++) { //building the cache and reading from it
+            MockErrorReporter cachedReporter = new MockErrorReporter();
+            assertEquals(expected, runLoader(new ProductLoaderCSVCachedFile(file, cachedReporter)), "Products should be identical and in file order");
+            assertEquals(expectedReporter.warnings.stream().map(warning -> ((ErrorReporter.Error)warning).getMessage()).toList(),
+                    cachedReporter.warnings.stream().map(warning -> ((ErrorReporter.Error)warning).getMessage()).toList(),
+                    "Warnings should be identical and in file order");
+        }
+    }
+
+    @Test
+    @DisplayName("CSV Product File Loader - Streamed batches contain the same products as fetchProducts")
+    void csvFileLoaderStreamed() throws IOException {
+        StringBuilder csv = new StringBuilder("type;name;quality;basePrice;dueDate\n");
+        for(int i = 0; i < 1000; i++) {
+            csv.append(i % 2 == 0 ? "cheese" : "wine").append(";Product").append(i).append(';').append(i % 50).append(";1.5;")
+               .append(dueDate.plusDays(i % 60)).append(i % 10 == 0 ? ";x\n" : "\n"); //some invalid lines to produce warnings
+        }
+        Path file = Helper.createTempFileFromInputStream("tstFile", ".csv", new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+
+        MockErrorReporter expectedReporter = new MockErrorReporter();
+        List<Product> expected = runLoader(new ProductLoaderCSVFile(file, expectedReporter));
+
+        MockErrorReporter errReporter = new MockErrorReporter();
+        List<List<Product>> batches = new ArrayList<>();
+        assertDoesNotThrow(() -> new ProductLoaderCSVFile(file, errReporter).streamProducts(dueDate, productTypes, 64, batches::add));
+
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 64), "No batch should be larger than the batch size");
+        assertEquals(expected, batches.stream().flatMap(List::stream).toList(), "Products should be identical and in file order");
+        assertEquals(expectedReporter.warnings.size(), errReporter.warnings.size(), "Warnings should be identical");
+    }
+
+    @Test
+    @DisplayName("CSV Product Directory Loader - Shards are merged in name order, with the shard name attached to their warnings")
+    void csvDirectoryLoader() throws IOException {
+        Path directory = Files.createTempDirectory("tstShards");
+        String header = "type;name;quality;basePrice;dueDate\n";
+        List<String> shards = List.of("products-0003.csv", "products-0001.csv", "products-0002.csv"); //written out of order
+        StringBuilder combined = new StringBuilder(header);
+        for(String shard : List.of("products-0001.csv", "products-0002.csv", "products-0003.csv")) {
+            StringBuilder csv = new StringBuilder();
+            for(int i = 0; i < 200; i++) {
+                csv.append(i % 2 == 0 ? "cheese" : "wine").append(';').append(shard).append(" Product").append(i).append(';')
+                   .append(i % 50 == 0 ? "x" : i % 40).append(";1.5;").append(dueDate.plusDays(i % 30)).append('\n'); //some invalid lines to produce warnings
+            }
+            combined.append(csv);
+            Files.writeString(directory.resolve(shard), header + csv);
+        }
+        Files.writeString(directory.resolve("notes.txt"), "not a shard\n");
+        try(var files = Files.list(directory)) { files.forEach(file -> file.toFile().deleteOnExit()); }
+        directory.toFile().deleteOnExit();
+
+        MockErrorReporter expectedReporter = new MockErrorReporter();
+        List<Product> expected = runLoader(new ProductLoaderCSVFile(
+                Helper.createTempFileFromInputStream("tstFile", ".csv", new ByteArrayInputStream(combined.toString().getBytes(StandardCharsets.UTF_8))),
+                expectedReporter));
+
+        for(int run = 0; run < 3; run++) { //the finishing order of the threads must not matter
+            MockErrorReporter errReporter = new MockErrorReporter();
+            ProductLoader loader = new ProductLoaderRegistry().fromConfigString("CSVDirectory:"+ directory +"/*.csv", errReporter);
+
+            assertEquals(expected, runLoader(loader), "Products should be identical and in shard order");
+            assertEquals(expectedReporter.warnings, errReporter.warnings.stream().map(warning -> ((ProductLoaderCSVDirectory.ShardError)warning).getCause()).toList(),
+                    "Warnings should be identical and in shard order");
+            assertEquals(List.of("products-0001.csv", "products-0001.csv", "products-0001.csv", "products-0001.csv",
+                            "products-0002.csv", "products-0002.csv", "products-0002.csv", "products-0002.csv",
+                            "products-0003.csv", "products-0003.csv", "products-0003.csv", "products-0003.csv"),
+                    errReporter.warnings.stream().map(warning -> ((ProductLoaderCSVDirectory.ShardError)warning).getShard()).toList());
+        }
+
+        MockErrorReporter errReporter = new MockErrorReporter();
+        assertThrows(DataLoaderAccessException.class,
+                () -> new ProductLoaderCSVDirectory(directory, "*.json", errReporter).fetchProducts(dueDate, productTypes),
+                "No matching shards should not silently load an empty inventory");
+    }
+
     @ParameterizedTest(name = "{0}")
     @MethodSource("csvLoader")
     @DisplayName("CSV Product PipeInput Loader")
@@ -99,6 +347,55 @@ public class ProductLoaderTests {
         asserts.accept(products, errReporter);
     }
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("csvLoader")
+    @DisplayName("CSV Product Pipe Input Loader - pipelined")
+    void csvPipeInputLoaderPipelined(String testName, InputStream inputStream, BiConsumer<List<Product>, MockErrorReporter> asserts) {
+        System.setIn(inputStream);
+
+        MockErrorReporter errReporter = new MockErrorReporter();
+        List<Product> products = runLoader(
+                new ProductLoaderCSVPipeInput(
+                        4,
+                        16, //tiny blocks, so most lines are parsed by different threads and long lines need larger buffers
+                        errReporter));
+
+        asserts.accept(products, errReporter);
+    }
+
+    @Test
+    @DisplayName("CSV Product Pipe Input Loader - pipelined, same products and warnings as the sequential loader for a large input")
+    void csvPipeInputLoaderPipelinedLargeInput() {
+        Random random = new Random(7);
+        StringBuilder csv = new StringBuilder("type;name;quality;basePrice;dueDate\r\n");
+        List<String> types = List.of("general", "cheese", "wine", "noType");
+        List<String> lineBreaks = List.of("\n", "\r\n", "\r");
+        for(int i = 0; i < 50_000; i++) {
+            csv.append(types.get(random.nextInt(types.size()))).append(";Product").append(i % 1000).append(';')
+               .append(random.nextInt(10) == 0 ? "x" : random.nextInt(100)).append(';')
+               .append(random.nextInt(1000) / 100.0).append(';')
+               .append(dueDate.plusDays(random.nextInt(100)))
+               .append(lineBreaks.get(random.nextInt(lineBreaks.size())));
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        System.setIn(new ByteArrayInputStream(bytes));
+        MockErrorReporter expectedReporter = new MockErrorReporter();
+        List<Product> expected = runLoader(new ProductLoaderCSVPipeInput(expectedReporter));
+
+        for(int blockSize : List.of(4096, 4099, 64 * 1024)) { //odd sizes, so \r\n is split between blocks at some point
+            System.setIn(new ByteArrayInputStream(bytes));
+            MockErrorReporter errReporter = new MockErrorReporter();
+            List<Product> products = runLoader(new ProductLoaderCSVPipeInput(3, blockSize, errReporter));
+
+            assertEquals(expected, products, "Products should be identical and in input order");
+            assertEquals(expectedReporter.warnings.stream().map(warning -> ((ErrorReporter.Error)warning).getMessage()).toList(),
+                    errReporter.warnings.stream().map(warning -> ((ErrorReporter.Error)warning).getMessage()).toList(),
+                    "Warnings should be identical and in input order");
+        }
+        assertFalse(expectedReporter.warnings.isEmpty());
+    }
+
     public static Stream<Arguments> csvLoader() {
         return Stream.of(
                 arguments(
@@ -139,6 +436,25 @@ public class ProductLoaderTests {
                                 new ProductLoaderCSV.NotAValidDateError("")),
                             errReporter.warnings,
                             "Produced warnings were not as expected");
+                    }),
+
+                arguments(
+                    "tstProductsQuantity.csv",
+                    ProductTypeLoaderTests.class.getResourceAsStream("resources/tstProductsQuantity.csv"),
+                    (BiConsumer<List<Product>, MockErrorReporter>)(products, errReporter) -> {
+                        assertEquals(List.of(
+                                        new Product(productTypes.get("general"), "Brot", 0, 1.15, LocalDate.of(2024, 12, 5), dueDate, 6),
+                                        new Product(productTypes.get("cheese"), "Gouda", 100, 2.20, LocalDate.of(2024, 12, 22), dueDate, 4),
+                                        new Product(productTypes.get("general"), "Brot", 0, 1.15, LocalDate.of(2024, 12, 9), dueDate)),
+                                products,
+                                "Identical rows should be merged into one product, in order of their first occurrence"
+                        );
+
+                        assertTrue(errReporter.errors.isEmpty(), "Test file should report no errors");
+                        assertIterableEquals(List.of(
+                                new ProductLoaderCSV.NotAValidNumberError("")),
+                            errReporter.warnings,
+                            "A quantity below 1 should be reported");
                     })
         );
     }
@@ -9,6 +9,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -102,4 +103,106 @@ public class ProductRuleTests {
         product = createTestProduct(new Wine("TestTypeWine"), -5);
         assertTrue(product.getType().shouldUnshelf(product, dueDate), "Negative quality should not be accepted");
     }
+
+    @Test
+    @DisplayName("Subclasses only overriding the LocalDate methods keep working")
+    void testLocalDateSubclass() {
+        ProductType type = new Cheese("TestTypeCheeseSubclass") {
+            @Override
+            public int calculateQuality(Product product, LocalDate day) {
+                return product.getQuality() + 1;
+            }
+        };
+        assertFalse(type.supportsEpochDays(), "Subclasses should not inherit the epoch day support of the built-in rules");
+
+        Product product = createTestProduct(type, 40);
+        product.update(dueDate.minusDays(59));
+        assertEquals(41, product.getQuality(), "The overridden LocalDate method should be used");
+        assertEquals(6.7, product.getPrice(), 0.0001, "The inherited price rule should still apply");
+    }
+
+    @Test
+    @DisplayName("Multi day updates match daily updates")
+    void testMultiDayUpdates() {
+        List<ProductType> types = List.of(new GeneralProduct("TestTypeGeneralProduct"), new Cheese("TestTypeCheese"), new Wine("TestTypeWine"));
+
+        for(ProductType type : types) {
+            for(int quality : new int[]{-5, 0, 10, 30, 45, 50, 60, 100}) {
+                for(int dueOffset : new int[]{-10, 10, 60, 90, 120}) {
+                    for(int step = 1; step < 70; step += 4) {
+                        assertMultiDayMatchesDaily(type, quality, dueDate.plusDays(dueOffset), dueDate, step);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Subclasses changing the daily rules do not inherit the multi day closed forms")
+    void testMultiDaySubclass() {
+        ProductType type = new Cheese("TestTypeStricterCheese") {
+            @Override
+            public boolean shouldUnshelf(Product product, LocalDate day) {
+                return super.shouldUnshelf(product, day) || product.getQuality() < 45;
+            }
+        };
+        assertFalse(type.supportsMultiDayUpdate(), "Subclasses should not inherit the closed forms of the built-in rules");
+
+        for(int quality : new int[]{30, 45, 50, 60}) {
+            for(int step : new int[]{1, 5, 14}) {
+                assertMultiDayMatchesDaily(type, quality, dueDate.plusDays(90), dueDate, step);
+            }
+        }
+    }
+
+    /**
+     * Steps one product daily and one in steps of the given size, and compares both at the end of each step.
+     */
+    public static void assertMultiDayMatchesDaily(ProductType type, int quality, LocalDate productDueDate, LocalDate initialDate, int step) {
+        Product daily = new Product(type, "TestProduct", quality, 2.6, productDueDate, initialDate);
+        Product skipping = new Product(type, "TestProduct", quality, 2.6, productDueDate, initialDate);
+
+        boolean dailyOnShelf = true;
+        for(int i = 0; i < 400; i++) {
+            LocalDate day = initialDate.plusDays(i);
+            if(dailyOnShelf) {
+                dailyOnShelf = !daily.shouldUnshelf();
+                if(dailyOnShelf) { daily.update(day); }
+            }
+
+            if((i + 1) % step == 0) {
+                String msg = type.getName() +", quality "+ quality +", dueDate "+ productDueDate +", step "+ step +", day "+ day;
+                assertEquals(dailyOnShelf, skipping.update(day, step), "Shelf status differs: "+ msg);
+                if(!dailyOnShelf) { break; }
+                assertEquals(daily, skipping, "Product state differs: "+ msg);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Predicted unshelf days match daily updates")
+    void testPredictUnshelfDay() {
+        List<ProductType> types = List.of(new GeneralProduct("TestTypeGeneralProduct"), new Cheese("TestTypeCheese"), new Wine("TestTypeWine"));
+
+        for(ProductType type : types) {
+            for(int quality : new int[]{0, 10, 30, 31, 45, 50, 60, 100}) {
+                for(int dueOffset : new int[]{-10, 0, 10, 49, 50, 60, 90, 100, 101, 120}) {
+                    Product product = new Product(type, "TestProduct", quality, 2.6, dueDate.plusDays(dueOffset), dueDate);
+                    if(product.shouldUnshelf()) { continue; } //only products which are still on the shelf get a prediction
+
+                    LocalDate predicted = type.predictUnshelfDay(product, dueDate);
+                    LocalDate flagged = LocalDate.MAX;
+                    for(LocalDate day = dueDate; day.isBefore(dueDate.plusDays(400)); day = day.plusDays(1)) {
+                        product.update(day);
+                        if(product.shouldUnshelf()) {
+                            flagged = day;
+                            break;
+                        }
+                    }
+
+                    assertEquals(flagged, predicted, type.getName() +", quality "+ quality +", dueDate offset "+ dueOffset);
+                }
+            }
+        }
+    }
 }
@@ -2,6 +2,7 @@ package de.superdupermarkt.shelflife.tests;
 
 import de.superdupermarkt.shelflife.data.Product;
 import de.superdupermarkt.shelflife.data.ProductType;
+import de.superdupermarkt.shelflife.helper.EpochDays;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -104,5 +105,20 @@ public class ProductTests {
         assertTrue(product.shouldUnshelf(), "Unshelf wrong at end of thest"); //since after last update dueDate < initialDate
     }
 
+    @Test
+    @DisplayName("Epoch day calculations match LocalDate")
+    void epochDays() {
+        LocalDate dueDate = LocalDate.of(2025, 1, 1);
+        Product product = new Product(mockProductType, "TestProduct", 5, 1.1, dueDate, dueDate);
+        assertEquals(dueDate.toEpochDay(), product.getDueEpochDay(), "DueEpochDay error");
+
+        for(LocalDate day = LocalDate.of(1599, 12, 1); day.isBefore(LocalDate.of(2401, 3, 1)); day = day.plusDays(1)) {
+            long epochDay = day.toEpochDay();
+            assertEquals(day.getYear(), EpochDays.year(epochDay), "Year error at "+ day);
+            assertEquals(day.getMonthValue(), EpochDays.month(epochDay), "Month error at "+ day);
+            assertEquals(epochDay, EpochDays.of(day.getYear(), day.getMonthValue(), day.getDayOfMonth()), "Epoch day error at "+ day);
+        }
+    }
+
     //@todo equals method!
 }
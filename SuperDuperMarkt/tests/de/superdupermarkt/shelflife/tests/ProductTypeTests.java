@@ -1,6 +1,7 @@
 package de.superdupermarkt.shelflife.tests;
 
 import de.superdupermarkt.shelflife.data.ProductType;
+import de.superdupermarkt.shelflife.data.RuleClassRegistry;
 import de.superdupermarkt.shelflife.data.loader.exception.ProductTypeNotFoundException;
 import de.superdupermarkt.shelflife.data.loader.exception.ProductTypeNotValidException;
 import de.superdupermarkt.shelflife.rules.Cheese;
@@ -17,36 +18,65 @@ import static org.junit.jupiter.api.Assertions.*;
 
 public class ProductTypeTests {
     @Test
-    @DisplayName("::fromClassName - Class exists but is not subtype of ProductType")
-    void fromClassName_ExistsButNotSubtype() {
+    @DisplayName("RuleClassRegistry::create - Class exists but is not subtype of ProductType")
+    void create_ExistsButNotSubtype() {
         ProductTypeNotValidException ex = assertThrows(ProductTypeNotValidException.class, () -> {
-            ProductType.fromClassName(ClassLoader.getSystemClassLoader(), "ProductRule", "Test");
+            new RuleClassRegistry(ClassLoader.getSystemClassLoader()).create("ProductRule", "Test");
         });
 
         assertEquals(new ProductTypeNotValidException("ProductRule", "Test"), ex, "Unexpected Exception Message");
     }
 
     @Test
-    @DisplayName("::fromClassName - Class does not exist")
-    void fromClassName_NotExists() {
+    @DisplayName("RuleClassRegistry::create - Class does not exist")
+    void create_NotExists() {
         ProductTypeNotFoundException ex = assertThrows(ProductTypeNotFoundException.class, () -> {
-            ProductType.fromClassName(ClassLoader.getSystemClassLoader(), "XXX", "Test");
+            new RuleClassRegistry(ClassLoader.getSystemClassLoader()).create("XXX", "Test");
         });
 
         assertEquals(new ProductTypeNotFoundException("XXX", "Test", new Exception()), ex, "Unexpected Exception Message");
     }
 
     @Test
-    @DisplayName("::fromClassName - Given Type and Name matches object")
-    void fromClassName_ExistsAndNameMatches() {
+    @DisplayName("RuleClassRegistry::create - Given Type and Name matches object")
+    void create_ExistsAndNameMatches() {
         final String typeName = "TestName";
         ProductType productType = Assertions.assertDoesNotThrow(() ->
-                ProductType.fromClassName(ClassLoader.getSystemClassLoader(), GeneralProduct.class.getSimpleName(), typeName));
+                new RuleClassRegistry(ClassLoader.getSystemClassLoader()).create(GeneralProduct.class.getSimpleName(), typeName));
 
         assertInstanceOf(GeneralProduct.class, productType);
         assertEquals(typeName, productType.getName());
     }
 
+    @Test
+    @DisplayName("RuleClassRegistry - Each class is only resolved once")
+    void ruleClassRegistryCaching() {
+        List<String> loadedClasses = new ArrayList<>();
+        ClassLoader countingClassLoader = new ClassLoader(ClassLoader.getSystemClassLoader()) {
+            @Override
+            public Class<?> loadClass(String name) throws ClassNotFoundException {
+                loadedClasses.add(name);
+                return super.loadClass(name);
+            }
+        };
+
+        RuleClassRegistry registry = new RuleClassRegistry(countingClassLoader);
+        for(int i = 0; i < 100; i++) {
+            final String typeName = "cheese"+ i;
+            ProductType productType = Assertions.assertDoesNotThrow(() -> registry.create(Cheese.class.getSimpleName(), typeName));
+
+            assertInstanceOf(Cheese.class, productType);
+            assertEquals(typeName, productType.getName());
+        }
+
+        for(String typeName : List.of("Test", "Test2")) {
+            ProductTypeNotFoundException ex = assertThrows(ProductTypeNotFoundException.class, () -> registry.create("XXX", typeName));
+            assertEquals(new ProductTypeNotFoundException("XXX", typeName, new Exception()), ex, "Cached failures should still report the current type");
+        }
+
+        assertEquals(List.of(Cheese.class.getName(), Cheese.class.getPackageName() +".XXX"), loadedClasses, "Each class should only be loaded once");
+    }
+
     @Test
     @DisplayName("equals method")
     void equalsMethod() {
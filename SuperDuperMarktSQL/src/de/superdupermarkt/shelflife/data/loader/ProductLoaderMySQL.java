@@ -6,53 +6,215 @@ import de.superdupermarkt.shelflife.data.loader.exception.DataLoaderAccessExcept
 import de.superdupermarkt.shelflife.data.loader.factory.ProductLoaderRegistry;
 import de.superdupermarkt.shelflife.data.loader.factory.ProductTypeLoaderRegistry;
 import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.helper.StringDeduplicator;
 import de.superdupermarkt.shelflife.sql.SQLProductAndType;
+import de.superdupermarkt.shelflife.sql.helper.ConnectionPool;
+import de.superdupermarkt.shelflife.sql.helper.ConnectionString;
+import de.superdupermarkt.shelflife.sql.helper.Query;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
+/**
+ * Loads the products of a day from the database.
+ * <p>
+ * By default the driver reads the whole result into memory before the first row is processed.
+ * For very large days the rows can be streamed instead, via the option loader.fetchSize in the connection string (@see ConnectionString):
+ * "stream" reads them one by one, a number fetches blocks of that many rows via a server side cursor (requires useCursorFetch=true).
+ * Each row is then turned into a product right away, and with streamProducts only one batch of products is in memory at a time.
+ */
 public class ProductLoaderMySQL extends ProductLoader {
-    private final String connStr;
+    /**
+     * Slots of the StringDeduplicator for product names, @see StringDeduplicator. Chosen for the same few hundred thousand distinct names
+     * as the CSV loaders, but each slot only holds a reference here, so the table takes 2 to 4 MB while loading.
+     * The savings were only measured for the CSV loaders, a day with fewer distinct names can use a smaller table.
+     */
+    public static final int NAME_DEDUPLICATOR_CAPACITY = 1 << 19;
 
+    private final ConnectionPool connections;
+    private final int fetchSize;
+    private final boolean sharedPool; //obtained via ConnectionPool.shared, so it is released on close
+    private boolean closed = false;
+
+    /**
+     * @param connStr Connection string, optionally with pool and loader options. Uses the pool shared by all loaders with this connection string
+     * @throws IllegalArgumentException If an option is not valid
+     */
     public ProductLoaderMySQL(ErrorReporter errorReporter, String connStr) {
+        this(errorReporter, fetchSize(connStr), ConnectionPool.shared(connStr), true); //the options are checked first, so an invalid one does not take a reference of the pool
+    }
+
+    public ProductLoaderMySQL(ErrorReporter errorReporter, ConnectionPool connections) {
+        this(errorReporter, connections, Query.FETCH_BUFFERED);
+    }
+
+    /**
+     * @param fetchSize How the rows are read from the server, @see Query#fetchPrepared
+     */
+    public ProductLoaderMySQL(ErrorReporter errorReporter, ConnectionPool connections, int fetchSize) {
+        this(errorReporter, fetchSize, connections, false);
+    }
+
+    private ProductLoaderMySQL(ErrorReporter errorReporter, int fetchSize, ConnectionPool connections, boolean sharedPool) {
         super(errorReporter);
-        this.connStr = connStr;
+        this.connections = connections;
+        this.fetchSize = fetchSize;
+        this.sharedPool = sharedPool;
+    }
+
+    /**
+     * @return The fetch size given by the option loader.fetchSize of the connection string
+     * @throws IllegalArgumentException If the option is neither "stream" nor a number
+     */
+    public static int fetchSize(String config) {
+        String fetchSize = ConnectionString.options(config, ConnectionString.LOADER_PREFIX).get("fetchSize");
+        if(fetchSize == null) { return Query.FETCH_BUFFERED; }
+        if(fetchSize.equals("stream")) { return Query.FETCH_STREAMING; }
+
+        try {
+            return Math.max(Query.FETCH_BUFFERED, Integer.parseInt(fetchSize));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid loader option fetchSize: "+ fetchSize, ex);
+        }
     }
 
     @Override
     public List<Product> fetchProducts(LocalDate startDate, Map<String, ProductType> productTypes) throws DataLoaderAccessException {
-        //this pattern works best with a connection pool, since it is very expensive to get a new connection each method call
-        try(Connection conn = DriverManager.getConnection(this.connStr)) {
+        //closing the connection returns it to the pool, so the next call does not have to open a new one
+        try(Connection conn = this.connections.getConnection()) {
             List<Product> products = new ArrayList<>();
+            ProductTypesById types = new ProductTypesById(conn, productTypes);
+            StringDeduplicator names = new StringDeduplicator(NAME_DEDUPLICATOR_CAPACITY);
 
-            SQLProductAndType.fetchProducts(conn, startDate, (name, type, quality, basePrice, dueDate) -> {
-                ProductType productType = productTypes.get(type);
-                if(productType == null) {
-                    errorReporter.warning(new ProductTypeNotFoundError(type));
-                    return; //continue operation but ignore this row
-                }
+            SQLProductAndType.fetchProducts(conn, startDate, this.fetchSize, (name, typeId, quality, basePrice, dueDate) -> {
+                Product product = this.createProduct(startDate, types, names.deduplicate(name), typeId, quality, basePrice, dueDate);
+                if(product != null) { products.add(product); }
+            });
+
+            return aggregate(products);
+        } catch (SQLException ex) {
+            throw new DataLoaderAccessException(ex.toString());
+        }
+    }
+
+    /**
+     * Passes each batch on as soon as it is complete, while the query is still running.
+     * The connection stays open until the last batch was consumed.
+     * Combined with a streaming fetch size the memory use then only depends on the batch size, not on the number of rows.
+     */
+    @Override
+    public void streamProducts(LocalDate startDate, Map<String, ProductType> productTypes, int batchSize, Consumer<List<Product>> consumer) throws DataLoaderAccessException {
+        try(Connection conn = this.connections.getConnection()) {
+            AtomicReference<List<Product>> batch = new AtomicReference<>(new ArrayList<>(batchSize)); //captured variables have to be final, so the lambda replaces the batch via reference
+            ProductTypesById types = new ProductTypesById(conn, productTypes);
+            StringDeduplicator names = new StringDeduplicator(NAME_DEDUPLICATOR_CAPACITY);
+
+            SQLProductAndType.fetchProducts(conn, startDate, this.fetchSize, (name, typeId, quality, basePrice, dueDate) -> {
+                Product product = this.createProduct(startDate, types, names.deduplicate(name), typeId, quality, basePrice, dueDate);
+                if(product != null) { batch.get().add(product); }
 
-                products.add(new Product(
-                    productType,
-                    name,
-                    quality,
-                    basePrice,
-                    dueDate,
-                    startDate
-                ));
+                if(batch.get().size() == batchSize) {
+                    consumer.accept(aggregate(batch.get()));
+                    batch.set(new ArrayList<>(batchSize));
+                }
             });
 
-            return products;
+            if(!batch.get().isEmpty()) { consumer.accept(aggregate(batch.get())); }
         } catch (SQLException ex) {
             throw new DataLoaderAccessException(ex.toString());
         }
     }
 
+    /**
+     * Releases the shared pool, which closes its connections once no other loader uses it anymore.
+     * Pools passed in by the caller are left open, they belong to the caller.
+     */
+    @Override
+    public synchronized void close() {
+        if(this.sharedPool && !this.closed) { ConnectionPool.releaseShared(this.connections); }
+        this.closed = true;
+    }
+
+    /**
+     * @return The product for one row, or null if its type is unknown (which is reported as a warning)
+     */
+    private Product createProduct(LocalDate startDate, ProductTypesById types, String name, int typeId, int quality, double basePrice, LocalDate dueDate) {
+        ProductType productType = types.get(typeId);
+        if(productType == null) {
+            errorReporter.warning(new ProductTypeNotFoundError(types.name(typeId)));
+            return null; //continue operation but ignore this row
+        }
+
+        return new Product(
+            productType,
+            name,
+            quality,
+            basePrice,
+            dueDate,
+            startDate
+        );
+    }
+
+    /**
+     * The given product types, indexed by their database id.
+     * <p>
+     * The ids are read once per load, so the rows only have to contain the id of their type,
+     * and resolving it is an array access instead of reading and hashing a String for each row.
+     * Ids are usually dense, but if they are spread over a much larger range (e.g. after many deleted types) the array would waste memory,
+     * so a HashMap is used instead.
+     */
+    private static class ProductTypesById {
+        //array slots allowed per type before falling back to the HashMap, plus a minimum size which is always fine
+        private static final int MAX_SLOTS_PER_TYPE = 4;
+        private static final int MIN_ARRAY_SIZE = 1024;
+
+        private final ProductType[] types; //null if the ids are too sparse
+        private final Map<Integer, ProductType> sparseTypes;
+        private final Map<Integer, String> names = new HashMap<>(); //only needed for warnings about unknown types
+
+        ProductTypesById(Connection conn, Map<String, ProductType> productTypes) throws SQLException {
+            Map<Integer, ProductType> byId = new HashMap<>();
+            SQLProductAndType.fetchProductTypeIds(conn, (id, name) -> {
+                this.names.put(id, name);
+                ProductType type = productTypes.get(name);
+                if(type != null) { byId.put(id, type); }
+            });
+
+            long size = byId.keySet().stream().mapToLong(Integer::longValue).max().orElse(-1) + 1;
+            if(size > Math.max(MIN_ARRAY_SIZE, (long)byId.size() * MAX_SLOTS_PER_TYPE)) {
+                this.types = null;
+                this.sparseTypes = byId;
+                return;
+            }
+
+            this.types = new ProductType[(int)Math.max(0, size)];
+            this.sparseTypes = null;
+            byId.forEach((id, type) -> { if(id >= 0) { this.types[id] = type; } });
+        }
+
+        /**
+         * @return The type with the given id, null if there is none (including products without a type, which have the id -1)
+         */
+        ProductType get(int id) {
+            if(this.types == null) { return id >= 0 ? this.sparseTypes.get(id) : null; }
+            return id >= 0 && id < this.types.length ? this.types[id] : null;
+        }
+
+        /**
+         * @return The name of the type with the given id, empty for products without a type
+         */
+        String name(int id) {
+            return this.names.getOrDefault(id, "");
+        }
+    }
+
     public static class ProductTypeNotFoundError implements ErrorReporter.Error {
         private final String producTypeName;
 
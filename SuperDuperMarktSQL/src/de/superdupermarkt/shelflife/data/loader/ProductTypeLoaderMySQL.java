@@ -6,30 +6,45 @@ import de.superdupermarkt.shelflife.data.loader.exception.ProductTypeNotValidExc
 import de.superdupermarkt.shelflife.data.loader.factory.ProductTypeLoaderRegistry;
 import de.superdupermarkt.shelflife.data.view.ErrorReporter;
 import de.superdupermarkt.shelflife.sql.SQLProductAndType;
+import de.superdupermarkt.shelflife.sql.helper.ConnectionPool;
 
 import java.sql.*;
 import java.util.HashMap;
 import java.util.Map;
 
 public class ProductTypeLoaderMySQL extends ProductTypeLoader {
-    private final String connStr;
+    private final ConnectionPool connections;
+    private final boolean sharedPool; //obtained via ConnectionPool.shared, so it is released on close
+    private boolean closed = false;
 
+    /**
+     * @param connStr Connection string, optionally with pool options (@see ConnectionPool). Uses the pool shared by all loaders with this connection string
+     */
     public ProductTypeLoaderMySQL(ErrorReporter errorReporter, ClassLoader classLoader, String connStr) {
+        this(errorReporter, classLoader, ConnectionPool.shared(connStr), true);
+    }
+
+    public ProductTypeLoaderMySQL(ErrorReporter errorReporter, ClassLoader classLoader, ConnectionPool connections) {
+        this(errorReporter, classLoader, connections, false);
+    }
+
+    private ProductTypeLoaderMySQL(ErrorReporter errorReporter, ClassLoader classLoader, ConnectionPool connections, boolean sharedPool) {
         super(errorReporter, classLoader);
-        this.connStr = connStr;
+        this.connections = connections;
+        this.sharedPool = sharedPool;
     }
 
     @Override
     public Map<String, ProductType> fetchProductTypes() throws DataLoaderAccessException {
-        //this pattern works best with a connection pool, since it is very expensive to get a new connection each method call
-        try(Connection conn = DriverManager.getConnection(this.connStr)) {
+        //closing the connection returns it to the pool, so the next call does not have to open a new one
+        try(Connection conn = this.connections.getConnection()) {
             Map<String, ProductType> productTypes = new HashMap<>();
 
             SQLProductAndType.fetchProductTypes(conn, (name, className) -> {
                 try {
                     productTypes.put(
                             name,
-                            ProductType.fromClassName(classLoader, className, name)
+                            ruleClasses.create(className, name)
                     );
                 } catch (ProductTypeNotValidException ex) {
                     errorReporter.warning(ex);
@@ -41,4 +56,13 @@ public class ProductTypeLoaderMySQL extends ProductTypeLoader {
             throw new DataLoaderAccessException(ex.toString());
         }
     }
+
+    /**
+     * Releases the shared pool, @see ProductLoaderMySQL#close
+     */
+    @Override
+    public synchronized void close() {
+        if(this.sharedPool && !this.closed) { ConnectionPool.releaseShared(this.connections); }
+        this.closed = true;
+    }
 }
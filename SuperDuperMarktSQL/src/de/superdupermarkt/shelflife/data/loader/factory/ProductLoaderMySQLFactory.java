@@ -4,12 +4,22 @@ import de.superdupermarkt.shelflife.data.loader.ProductLoader;
 import de.superdupermarkt.shelflife.data.loader.ProductLoaderMySQL;
 import de.superdupermarkt.shelflife.data.view.ErrorReporter;
 
+/**
+ * The config is the connection string, optionally with pool options (@see ConnectionPool) and loader options (@see ProductLoaderMySQL).
+ * Loaders with the same connection string share their connections, also with the ProductTypeLoaders of ProductTypeLoaderMySQLFactory.
+ * Each loader holds a reference of the shared pool until it is closed, so the pool is closed together with the last loader using it.
+ */
 public class ProductLoaderMySQLFactory implements ProductLoaderRegistry.LoaderFactory {
     @Override
     public ProductLoader fromConfigString(String config, ErrorReporter errorReporter) {
-        return new ProductLoaderMySQL(
-                errorReporter,
-                config
-        );
+        try {
+            return new ProductLoaderMySQL(
+                    errorReporter,
+                    config
+            );
+        } catch (IllegalArgumentException ex) { //invalid pool or loader option
+            errorReporter.error(ex);
+            return null;
+        }
     }
 }
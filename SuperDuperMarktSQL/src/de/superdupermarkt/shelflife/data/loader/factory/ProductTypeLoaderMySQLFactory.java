@@ -4,13 +4,23 @@ import de.superdupermarkt.shelflife.data.loader.ProductTypeLoader;
 import de.superdupermarkt.shelflife.data.loader.ProductTypeLoaderMySQL;
 import de.superdupermarkt.shelflife.data.view.ErrorReporter;
 
+/**
+ * The config is the connection string, optionally with pool options (@see ConnectionPool).
+ * Loaders with the same connection string share their connections, also with the ProductLoaders of ProductLoaderMySQLFactory.
+ * Each loader holds a reference of the shared pool until it is closed, so the pool is closed together with the last loader using it.
+ */
 public class ProductTypeLoaderMySQLFactory implements ProductTypeLoaderRegistry.LoaderFactory {
     @Override
     public ProductTypeLoader fromConfigString(String config, ClassLoader classLoader, ErrorReporter errorReporter) {
-        return new ProductTypeLoaderMySQL(
-                errorReporter,
-                classLoader,
-                config
-        );
+        try {
+            return new ProductTypeLoaderMySQL(
+                    errorReporter,
+                    classLoader,
+                    config
+            );
+        } catch (IllegalArgumentException ex) { //invalid pool option
+            errorReporter.error(ex);
+            return null;
+        }
     }
 }
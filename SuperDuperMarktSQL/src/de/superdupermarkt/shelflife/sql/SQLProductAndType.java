@@ -1,5 +1,6 @@
 package de.superdupermarkt.shelflife.sql;
 
+import de.superdupermarkt.shelflife.helper.DateInterner;
 import de.superdupermarkt.shelflife.sql.helper.Query;
 import de.superdupermarkt.shelflife.sql.schema.ShelflifeTables;
 
@@ -43,14 +44,38 @@ public class SQLProductAndType {
             });
     }
 
-    public interface fetchProductsConsumer{ void accept(String name, String type, int quality, double basePrice, LocalDate dueDate) throws SQLException; }
+    public interface fetchProductTypeIdsConsumer{ void accept(int id, String name) throws SQLException; }
+    public static void fetchProductTypeIds(Connection conn, fetchProductTypeIdsConsumer consumer) throws SQLException {
+        Query.fetchSimple(
+            conn,
+            "SELECT pt.id, pt.name FROM "+ ShelflifeTables.ProductType +" pt;",
+            rs -> {
+                consumer.accept(rs.getInt(1), rs.getString(2));
+            });
+    }
+
+    /**
+     * Products only reference their type by id (@see fetchProductTypeIds), so no type name has to be read for each row.
+     * Products without a type get the id -1.
+     */
+    public interface fetchProductsConsumer{ void accept(String name, int typeId, int quality, double basePrice, LocalDate dueDate) throws SQLException; }
     public static void fetchProducts(Connection conn, LocalDate atDay, fetchProductsConsumer consumer) throws SQLException {
+        fetchProducts(conn, atDay, Query.FETCH_BUFFERED, consumer);
+    }
+
+    /**
+     * @param fetchSize How the rows are read from the server, @see Query#fetchPrepared
+     */
+    public static void fetchProducts(Connection conn, LocalDate atDay, int fetchSize, fetchProductsConsumer consumer) throws SQLException {
+        //there are far fewer distinct due dates than products, so each one is only parsed once (@see DateInterner)
+        DateInterner dueDates = new DateInterner(DateInterner.DEFAULT_CAPACITY);
         Query.fetchPrepared(
             conn,
-            "SELECT p.name, IFNULL(pt.name, '') as type, p.quality, p.basePrice, p.dueDate " +
+            "SELECT p.name, IFNULL(pt.id, -1) as type_id, p.quality, p.basePrice, p.dueDate " +
             "FROM "+ ShelflifeTables.Product +" p " +
             "LEFT JOIN "+ ShelflifeTables.ProductType +" pt ON pt.id = p.productType_id " +
             "WHERE p.`day` = ?",
+            fetchSize,
             ps -> {
                 ps.setString(1, atDay.format(mysqlDateFormat));
             },
@@ -59,10 +84,10 @@ public class SQLProductAndType {
                 //but much more readable and less prone to errors when the column order changes in the query above
                 consumer.accept(
                         rs.getString("name"),
-                        rs.getString("type"),
+                        rs.getInt("type_id"),
                         rs.getInt("quality"),
                         rs.getDouble("basePrice"),
-                        LocalDate.parse(rs.getString("dueDate"), mysqlDateFormat));
+                        dueDates.parse(rs.getString("dueDate"), mysqlDateFormat));
             });
     }
 }
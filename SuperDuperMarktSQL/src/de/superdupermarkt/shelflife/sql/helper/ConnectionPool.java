@@ -0,0 +1,299 @@
+package de.superdupermarkt.shelflife.sql.helper;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal JDBC connection pool, so the loaders do not have to open a new connection (with TLS and authentication) for each call.
+ * <p>
+ * Object Pool pattern: getConnection hands out an idle connection if there is one, and closing the returned connection
+ * puts it back instead of actually closing it. The loaders keep using the usual try-with-resources style, they never notice the pool.
+ * The returned connections are dynamic proxies (@see java.lang.reflect.Proxy), since implementing all of java.sql.Connection
+ * only to intercept close would be a lot of boilerplate.
+ * <p>
+ * Idle connections are closed after a timeout, and connections which were idle for a while are validated before they are handed out,
+ * so connections dropped by the server in the meantime are replaced transparently. Both happens whenever the pool is used,
+ * there is no background thread.
+ * <p>
+ * The pool is configured via parameters of the connection string (@see ConnectionString):
+ * <ul>
+ *     <li>pool.maxSize: Connections in use at the same time, further calls wait for one to be returned. 0 disables pooling (default 8)</li>
+ *     <li>pool.idleTimeout: Milliseconds after which an idle connection is closed (default 60000)</li>
+ *     <li>pool.validateAfter: Milliseconds of idle time after which a connection is validated before it is handed out (default 5000)</li>
+ *     <li>pool.waitTimeout: Milliseconds to wait for a connection if all of them are in use (default 30000)</li>
+ * </ul>
+ * For example "jdbc:mysql://localhost/?user=user&amp;password=password&amp;pool.maxSize=4".
+ * <p>
+ * Thread safe. Pools are shared by all loaders with the same connection string (@see shared).
+ * Shared pools are counted per user and closed once the last loader using them is closed, which happens when their module generation is released.
+ * The shared pools belong to the classloader of this class, so each module generation has its own and they are never handed across a reload.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private static final Map<String, ConnectionPool> sharedPools = new HashMap<>(); //guarded by itself, like the fields below
+    private static Thread shutdownHook; //only registered while there are shared pools, since it keeps this class and its classloader alive
+
+    /**
+     * An idle connection and the time it was returned.
+     */
+    private record Idle(Connection connection, long since) {}
+
+    private final String connStr;
+    private final int maxSize;
+    private final long idleTimeout;
+    private final long validateAfter;
+    private final long waitTimeout;
+
+    private final Deque<Idle> idle = new ArrayDeque<>(); //most recently returned first, guarded by itself
+    private final Semaphore permits;
+    private volatile boolean closed = false;
+    private int sharedUsers = 0; //guarded by sharedPools
+
+    /**
+     * @param connStr The connection string passed to the driver, without pool options
+     */
+    public ConnectionPool(String connStr, int maxSize, long idleTimeout, long validateAfter, long waitTimeout) {
+        this.connStr = connStr;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+        this.validateAfter = validateAfter;
+        this.waitTimeout = waitTimeout;
+        this.permits = new Semaphore(Math.max(1, maxSize), true);
+    }
+
+    /**
+     * Returns the pool for the given connection string, creating it on first use. Loaders with the same connection string share one pool,
+     * no matter which factory created them. The pool options of the first call are used.
+     * Each call has to be matched by a call of releaseShared once the pool is no longer needed.
+     *
+     * @param config A connection string, optionally with pool options. Other options of this application are ignored
+     * @throws IllegalArgumentException If a pool option is not a valid number
+     */
+    public static ConnectionPool shared(String config) {
+        String connStr = ConnectionString.forDriver(config);
+        synchronized(sharedPools) {
+            ConnectionPool pool = sharedPools.get(connStr);
+            if(pool == null) {
+                pool = fromConfigString(config);
+                sharedPools.put(connStr, pool);
+            }
+            pool.sharedUsers++;
+
+            if(shutdownHook == null) {
+                //idle connections are closed properly on exit, instead of being dropped by the server
+                shutdownHook = new Thread(ConnectionPool::closeSharedOnExit);
+                Runtime.getRuntime().addShutdownHook(shutdownHook);
+            }
+
+            return pool;
+        }
+    }
+
+    /**
+     * Signals that a pool returned by shared is no longer needed by the caller.
+     * The last release closes the pool, and once no shared pool is left the shutdown hook is removed again,
+     * so a released module generation does not keep any connections open and its classloader can be garbage collected.
+     * Pools which were not created by shared are ignored.
+     */
+    public static void releaseShared(ConnectionPool pool) {
+        synchronized(sharedPools) {
+            if(sharedPools.get(pool.connStr) != pool || --pool.sharedUsers > 0) { return; }
+
+            sharedPools.remove(pool.connStr);
+            pool.close();
+
+            if(sharedPools.isEmpty() && shutdownHook != null) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                } catch (IllegalStateException ex) {
+                    //already shutting down, so the hook is running anyway
+                }
+                shutdownHook = null;
+            }
+        }
+    }
+
+    private static void closeSharedOnExit() {
+        synchronized(sharedPools) {
+            sharedPools.values().forEach(ConnectionPool::close);
+        }
+    }
+
+    /**
+     * Creates a new pool which is not shared.
+     *
+     * @param config A connection string, optionally with pool options
+     * @throws IllegalArgumentException If a pool option is not a valid number
+     */
+    public static ConnectionPool fromConfigString(String config) {
+        Map<String, String> options = ConnectionString.options(config, ConnectionString.POOL_PREFIX);
+        try {
+            return new ConnectionPool(
+                    ConnectionString.forDriver(config),
+                    Integer.parseInt(options.getOrDefault("maxSize", "8")),
+                    Long.parseLong(options.getOrDefault("idleTimeout", "60000")),
+                    Long.parseLong(options.getOrDefault("validateAfter", "5000")),
+                    Long.parseLong(options.getOrDefault("waitTimeout", "30000")));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid connection pool option: "+ ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @return A connection which goes back to the pool when it is closed
+     * @throws SQLException If no connection could be opened, or none was returned within the wait timeout
+     */
+    public Connection getConnection() throws SQLException {
+        if(this.maxSize <= 0) { return DriverManager.getConnection(this.connStr); }
+        if(this.closed) { throw new SQLException("Connection pool is closed"); }
+
+        try {
+            if(!this.permits.tryAcquire(this.waitTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("No free connection within "+ this.waitTimeout +"ms, all "+ this.maxSize +" are in use");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", ex);
+        }
+
+        try {
+            return this.wrap(this.takeIdle());
+        } catch (SQLException | RuntimeException ex) {
+            this.permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return The most recently used idle connection which is still valid, or a new one
+     */
+    private Connection takeIdle() throws SQLException {
+        while(true) {
+            Idle candidate;
+            synchronized(this.idle) {
+                this.evictExpired();
+                candidate = this.idle.pollFirst();
+            }
+            if(candidate == null) { return DriverManager.getConnection(this.connStr); }
+
+            if(System.currentTimeMillis() - candidate.since() < this.validateAfter || this.isUsable(candidate.connection())) {
+                return candidate.connection();
+            }
+            closeQuietly(candidate.connection()); //dropped by the server in the meantime, try the next one
+        }
+    }
+
+    private boolean isUsable(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes idle connections older than the idle timeout. They are at the end, since returned connections are added at the front.
+     */
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        while(!this.idle.isEmpty() && now - this.idle.peekLast().since() >= this.idleTimeout) {
+            closeQuietly(this.idle.pollLast().connection());
+        }
+    }
+
+    private void release(Connection connection) {
+        try {
+            if(this.closed || connection.isClosed()) {
+                closeQuietly(connection);
+                return;
+            }
+            if(!connection.getAutoCommit()) { //do not pass unfinished transactions on to the next user
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+
+            synchronized(this.idle) {
+                this.idle.addFirst(new Idle(connection, System.currentTimeMillis()));
+                this.evictExpired();
+            }
+        } catch (SQLException ex) {
+            closeQuietly(connection); //broken, so it is not reused
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    /**
+     * Proxy which returns the connection to the pool on close, and rejects any further use afterwards.
+     */
+    private Connection wrap(Connection connection) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean returned = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close" -> {
+                        if(!this.returned) {
+                            this.returned = true;
+                            ConnectionPool.this.release(connection);
+                        }
+                        return null;
+                    }
+                    case "isClosed" -> {
+                        if(this.returned) { return true; }
+                    }
+                    case "equals" -> {
+                        return proxy == args[0];
+                    }
+                    case "hashCode" -> {
+                        return System.identityHashCode(proxy);
+                    }
+                }
+                if(this.returned) { throw new SQLException("Connection was already returned to the pool"); }
+
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause(); //the original SQLException instead of the reflection wrapper
+                }
+            }
+        };
+
+        return (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+    }
+
+    /**
+     * Closes all idle connections. Connections in use are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        synchronized(this.idle) {
+            for(Idle connection : this.idle) {
+                closeQuietly(connection.connection());
+            }
+            this.idle.clear();
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            //nothing left to do with it either way
+        }
+    }
+}
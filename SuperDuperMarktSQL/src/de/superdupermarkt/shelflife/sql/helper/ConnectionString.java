@@ -0,0 +1,59 @@
+package de.superdupermarkt.shelflife.sql.helper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Options of this application which are passed as parameters of the JDBC connection string,
+ * so a loader is still configured via a single config string (like "MySql:jdbc:mysql://localhost/?user=user&amp;pool.maxSize=4").
+ * <p>
+ * All of them start with one of the known prefixes, and are removed before the connection string is passed on to the driver.
+ */
+public class ConnectionString {
+    /**
+     * Options of the ConnectionPool
+     */
+    public static final String POOL_PREFIX = "pool.";
+
+    /**
+     * Options of the individual loaders
+     */
+    public static final String LOADER_PREFIX = "loader.";
+
+    private static final List<String> PREFIXES = List.of(POOL_PREFIX, LOADER_PREFIX);
+
+    /**
+     * @return The options with the given prefix, by their name without the prefix
+     */
+    public static Map<String, String> options(String config, String prefix) {
+        Map<String, String> options = new HashMap<>();
+        int query = config.indexOf('?');
+        if(query < 0) { return options; }
+
+        for(String parameter : config.substring(query + 1).split("&")) {
+            if(!parameter.startsWith(prefix)) { continue; }
+
+            String[] split = parameter.substring(prefix.length()).split("=", 2);
+            options.put(split[0], split.length == 2 ? split[1] : "");
+        }
+        return options;
+    }
+
+    /**
+     * @return The connection string without any options of this application, which the driver would reject or pass on to the server
+     */
+    public static String forDriver(String config) {
+        int query = config.indexOf('?');
+        if(query < 0) { return config; }
+
+        List<String> parameters = new ArrayList<>();
+        for(String parameter : config.substring(query + 1).split("&")) {
+            if(!parameter.isEmpty() && PREFIXES.stream().noneMatch(parameter::startsWith)) { parameters.add(parameter); }
+        }
+        return parameters.isEmpty()
+                ? config.substring(0, query)
+                : config.substring(0, query + 1) + String.join("&", parameters);
+    }
+}
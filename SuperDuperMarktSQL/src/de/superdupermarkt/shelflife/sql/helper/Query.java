@@ -9,6 +9,17 @@ import java.time.format.DateTimeFormatter;
 public class Query {
     public final static DateTimeFormatter mysqlDateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    /**
+     * Fetch size for the default of the driver: the whole result is read into memory before the first row is returned.
+     */
+    public final static int FETCH_BUFFERED = 0;
+
+    /**
+     * Fetch size which makes MySQL Connector/J read the rows from the connection one by one while iterating,
+     * so only the current row is held in memory.
+     */
+    public final static int FETCH_STREAMING = Integer.MIN_VALUE;
+
     public static void fetchSimple(Connection conn, String query, SQLConsumer<ResultSet> consumer) throws SQLException {
         try(PreparedStatement ps = conn.prepareStatement(query)) {
             try(ResultSet rs = ps.executeQuery()) {
@@ -20,7 +31,22 @@ public class Query {
     }
 
     public static void fetchPrepared(Connection conn, String query, SQLConsumer<PreparedStatement> prepare, SQLConsumer<ResultSet> consumer) throws SQLException {
-        try(PreparedStatement ps = conn.prepareStatement(query)) {
+        fetchPrepared(conn, query, FETCH_BUFFERED, prepare, consumer);
+    }
+
+    /**
+     * Like fetchPrepared, but the result does not have to be read into memory as a whole before the first row is passed on.
+     * <ul>
+     *     <li>FETCH_BUFFERED: the default of the driver</li>
+     *     <li>FETCH_STREAMING: the rows are streamed one by one. Until the last row was read, no other statement can be executed on the connection</li>
+     *     <li>A positive number: the rows are fetched in blocks of this size via a server side cursor.
+     *         Only used by MySQL if the connection string contains useCursorFetch=true, the result is buffered otherwise</li>
+     * </ul>
+     * The consumer is called while the rows are still being read, so a slow consumer keeps the query open on the server.
+     */
+    public static void fetchPrepared(Connection conn, String query, int fetchSize, SQLConsumer<PreparedStatement> prepare, SQLConsumer<ResultSet> consumer) throws SQLException {
+        try(PreparedStatement ps = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) { //streaming requires a forward only, read only result
+            if(fetchSize != FETCH_BUFFERED) { ps.setFetchSize(fetchSize); }
             prepare.accept(ps);
             try(ResultSet rs = ps.executeQuery()) {
                 while(rs.next()) {
@@ -0,0 +1,186 @@
+package de.superdupermarkt.shelflife.tests;
+
+import de.superdupermarkt.shelflife.data.loader.ProductLoaderMySQL;
+import de.superdupermarkt.shelflife.data.loader.factory.ProductLoaderMySQLFactory;
+import de.superdupermarkt.shelflife.data.loader.factory.ProductTypeLoaderMySQLFactory;
+import de.superdupermarkt.shelflife.data.view.ErrorReporter;
+import de.superdupermarkt.shelflife.modules.ModuleReloader;
+import de.superdupermarkt.shelflife.sql.helper.ConnectionPool;
+import de.superdupermarkt.shelflife.sql.helper.ConnectionString;
+import de.superdupermarkt.shelflife.sql.helper.Query;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Uses a stub driver instead of a database, so the pool can be tested without a running server.
+ */
+public class ConnectionPoolTests {
+    /**
+     * Opens fake connections for "jdbc:stub:" urls and remembers them.
+     */
+    private static class StubDriver implements Driver {
+        static final List<StubConnection> opened = new ArrayList<>();
+
+        @Override
+        public Connection connect(String url, Properties info) {
+            if(!this.acceptsURL(url)) { return null; }
+
+            StubConnection state = new StubConnection(url);
+            opened.add(state);
+            return (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> switch (method.getName()) {
+                case "close" -> { state.closed = true; yield null; }
+                case "isClosed" -> state.closed;
+                case "isValid" -> state.valid;
+                case "getAutoCommit" -> true;
+                default -> null;
+            });
+        }
+
+        @Override public boolean acceptsURL(String url) { return url.startsWith("jdbc:stub:"); }
+        @Override public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) { return new DriverPropertyInfo[0]; }
+        @Override public int getMajorVersion() { return 1; }
+        @Override public int getMinorVersion() { return 0; }
+        @Override public boolean jdbcCompliant() { return false; }
+        @Override public Logger getParentLogger() { return Logger.getGlobal(); }
+    }
+
+    private static class StubConnection {
+        final String url;
+        boolean closed = false;
+        boolean valid = true;
+
+        StubConnection(String url) {
+            this.url = url;
+        }
+    }
+
+    @BeforeAll
+    static void beforeAll() throws SQLException {
+        DriverManager.registerDriver(new StubDriver());
+    }
+
+    @Test
+    @DisplayName("Returned connections are reused, and pool options are not passed on to the driver")
+    void reuse() throws SQLException {
+        StubDriver.opened.clear();
+        ConnectionPool pool = ConnectionPool.fromConfigString("jdbc:stub:reuse?user=user&pool.maxSize=2&password=password");
+
+        Connection first = pool.getConnection();
+        first.close();
+        assertTrue(first.isClosed());
+        assertThrows(SQLException.class, first::createStatement, "Returned connections should not be usable anymore");
+
+        try(Connection second = pool.getConnection()) {
+            assertFalse(second.isClosed());
+        }
+        assertEquals(1, StubDriver.opened.size(), "The returned connection should be reused");
+        assertEquals("jdbc:stub:reuse?user=user&password=password", StubDriver.opened.get(0).url);
+        assertFalse(StubDriver.opened.get(0).closed);
+
+        pool.close();
+        assertTrue(StubDriver.opened.get(0).closed, "Closing the pool should close idle connections");
+    }
+
+    @Test
+    @DisplayName("Connections which are no longer valid are replaced, idle connections are evicted after the timeout")
+    void validationAndEviction() throws SQLException, InterruptedException {
+        StubDriver.opened.clear();
+        ConnectionPool pool = ConnectionPool.fromConfigString("jdbc:stub:validation?pool.validateAfter=0&pool.idleTimeout=50");
+
+        pool.getConnection().close();
+        StubDriver.opened.get(0).valid = false;
+        pool.getConnection().close();
+        assertEquals(2, StubDriver.opened.size(), "The invalid connection should be replaced");
+        assertTrue(StubDriver.opened.get(0).closed);
+
+        Thread.sleep(100);
+        pool.getConnection().close();
+        assertEquals(3, StubDriver.opened.size(), "The expired connection should be replaced");
+        assertTrue(StubDriver.opened.get(1).closed);
+    }
+
+    @Test
+    @DisplayName("No more than maxSize connections are handed out at once, and the same connection string shares one pool")
+    void limitAndSharing() throws SQLException {
+        ConnectionPool pool = ConnectionPool.fromConfigString("jdbc:stub:limit?pool.maxSize=1&pool.waitTimeout=10");
+
+        try(Connection connection = pool.getConnection()) {
+            assertThrows(SQLException.class, pool::getConnection, "The only connection is in use");
+        }
+        pool.getConnection().close();
+
+        ConnectionPool shared = ConnectionPool.shared("jdbc:stub:shared?pool.maxSize=2");
+        assertSame(shared, ConnectionPool.shared("jdbc:stub:shared"));
+        ConnectionPool.releaseShared(shared);
+        ConnectionPool.releaseShared(shared);
+        assertThrows(IllegalArgumentException.class, () -> ConnectionPool.fromConfigString("jdbc:stub:invalid?pool.maxSize=many"));
+    }
+
+    @Test
+    @DisplayName("Options of the pool and the loaders are removed from the connection string")
+    void options() {
+        String config = "jdbc:stub:options?loader.fetchSize=stream&user=user&pool.maxSize=2&password=password";
+        assertEquals("jdbc:stub:options?user=user&password=password", ConnectionString.forDriver(config));
+        assertEquals("jdbc:stub:options", ConnectionString.forDriver("jdbc:stub:options?pool.maxSize=2"));
+
+        assertEquals(Query.FETCH_STREAMING, ProductLoaderMySQL.fetchSize(config));
+        assertEquals(1000, ProductLoaderMySQL.fetchSize("jdbc:stub:options?loader.fetchSize=1000"));
+        assertEquals(Query.FETCH_BUFFERED, ProductLoaderMySQL.fetchSize("jdbc:stub:options?user=user"));
+        assertThrows(IllegalArgumentException.class, () -> ProductLoaderMySQL.fetchSize("jdbc:stub:options?loader.fetchSize=all"));
+    }
+
+    @Test
+    @DisplayName("Releasing a module generation created via the factories closes the idle connections of its shared pool")
+    void releasedGeneration() throws IOException, SQLException {
+        StubDriver.opened.clear();
+        List<Object> errors = new ArrayList<>();
+        ErrorReporter errorReporter = new ErrorReporter() {
+            @Override public void error(Error error) { errors.add(error); }
+            @Override public void error(Exception ex) { errors.add(ex); }
+            @Override public void warning(Error warning) { errors.add(warning); }
+            @Override public void warning(Exception warning) { errors.add(warning); }
+        };
+
+        String config = "jdbc:stub:generation?pool.maxSize=2";
+        ModuleReloader.Generation generation = new ModuleReloader.Generation(new URLClassLoader(new URL[0]),
+                new ProductTypeLoaderMySQLFactory().fromConfigString(config, ClassLoader.getSystemClassLoader(), errorReporter),
+                new ProductLoaderMySQLFactory().fromConfigString(config, errorReporter));
+
+        ConnectionPool pool = ConnectionPool.shared(config);
+        pool.getConnection().close(); //an idle connection, like after a load
+        ConnectionPool.releaseShared(pool);
+        assertFalse(StubDriver.opened.get(0).closed, "The loaders of the generation still use the pool");
+
+        generation.close();
+        assertTrue(StubDriver.opened.get(0).closed, "The idle connection should be closed together with the generation");
+        assertThrows(SQLException.class, pool::getConnection, "The pool of the released generation should be closed");
+        ConnectionPool next = ConnectionPool.shared(config);
+        assertNotSame(pool, next, "A later generation should get a new pool");
+        ConnectionPool.releaseShared(next);
+
+        //a loader which could not be created does not keep a reference of the pool either
+        String invalid = "jdbc:stub:generation?loader.fetchSize=all";
+        assertNull(new ProductLoaderMySQLFactory().fromConfigString(invalid, errorReporter));
+        assertEquals(1, errors.size());
+        ConnectionPool unused = ConnectionPool.shared(invalid);
+        ConnectionPool.releaseShared(unused);
+        assertThrows(SQLException.class, unused::getConnection, "The last reference was released, so the pool should be closed");
+    }
+}
@@ -154,6 +154,14 @@ public class LoaderSQLTests {
         }, "Product Loader should throw no Exception");
         List<Product> products = ref2.get();
 
+        for(String fetchSize : List.of("stream", "2")) { //a cursor fetch needs useCursorFetch, otherwise the result is buffered like before
+            ProductLoader streamingLoader = new ProductLoaderMySQL(
+                    new MockErrorReporter(),
+                    connStr +"&useCursorFetch=true&loader.fetchSize="+ fetchSize);
+            assertEquals(products, assertDoesNotThrow(() -> streamingLoader.fetchProducts(initialDate, productTypes)),
+                    "Streamed ProductList should be identical, fetchSize "+ fetchSize);
+        }
+
         assertEquals(List.of(
                 new Product(productTypes.get("general"), "Brot", 0, 1.15, LocalDate.of(2024, 12, 5), initialDate),
                 new Product(productTypes.get("general"), "Brot", 0, 1.15, LocalDate.of(2024, 12, 9), initialDate),
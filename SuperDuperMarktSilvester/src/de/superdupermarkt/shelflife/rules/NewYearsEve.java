@@ -1,10 +1,9 @@
 package de.superdupermarkt.shelflife.rules;
 
 import de.superdupermarkt.shelflife.data.Product;
+import de.superdupermarkt.shelflife.helper.EpochDays;
 
 import java.time.LocalDate;
-import java.time.Month;
-import java.time.temporal.ChronoUnit;
 
 public class NewYearsEve extends GeneralProduct {
     public NewYearsEve(String name) {
@@ -12,11 +11,36 @@ public class NewYearsEve extends GeneralProduct {
     }
 
 
+    @Override
+    public int calculateQuality(Product product, LocalDate day) {
+        return this.calculateQuality(product, day.toEpochDay());
+    }
+
+    @Override
+    public double calculatePrice(Product product, LocalDate day) {
+        return this.calculatePrice(product, day.toEpochDay());
+    }
+
+    @Override
+    public boolean shouldUnshelf(Product product, LocalDate day) {
+        return this.shouldUnshelf(product, day.toEpochDay());
+    }
+
+    @Override
+    public boolean supportsEpochDays() {
+        return this.getClass() == NewYearsEve.class;
+    }
+
+    @Override
+    public boolean supportsMultiDayUpdate() {
+        return this.getClass() == NewYearsEve.class;
+    }
+
     /**
      * Does not change quality.
      */
     @Override
-    public int calculateQuality(Product product, LocalDate day) {
+    public int calculateQuality(Product product, long day) {
         return product.getQuality();
     }
 
@@ -26,9 +50,9 @@ public class NewYearsEve extends GeneralProduct {
      * After new years eve, the price is reduced by half and drops further.
      */
     @Override
-    public double calculatePrice(Product product, LocalDate day) {
-        LocalDate nearestSilvester = LocalDate.of(day.getMonth().getValue() <= 6 ? day.getYear() -1 : day.getYear(), 12, 31);
-        int daysOverdue = (int) ChronoUnit.DAYS.between(day, nearestSilvester);
+    public double calculatePrice(Product product, long day) {
+        long nearestSilvester = EpochDays.of(EpochDays.month(day) <= 6 ? EpochDays.year(day) - 1 : EpochDays.year(day), 12, 31);
+        int daysOverdue = (int)(nearestSilvester - day);
 
         return daysOverdue == 0
             ? product.getBasePrice() + product.getQuality()*0.1
@@ -41,8 +65,49 @@ public class NewYearsEve extends GeneralProduct {
      * Only allowed to sell in December and January
      */
     @Override
-    public boolean shouldUnshelf(Product product, LocalDate day) {
-        return day.isAfter(product.getDueDate())
-            || !(day.getMonth().equals(Month.DECEMBER) || day.getMonth().equals(Month.JANUARY));
+    public boolean shouldUnshelf(Product product, long day) {
+        return day > product.getDueEpochDay()
+            || !isSellingSeason(day);
+    }
+
+    /**
+     * December and January together span 62 days, so any longer range always contains a day outside of them.
+     * A shorter range with both ends inside the season can only be December to January, which never leaves the season.
+     */
+    @Override
+    public boolean isUnshelvedBefore(Product product, LocalDate day, int passedDays) {
+        if(passedDays <= 1) { return false; }
+
+        long firstSkipped = day.toEpochDay() - (passedDays - 1);
+        long lastSkipped = day.toEpochDay() - 1;
+        return lastSkipped > product.getDueEpochDay()
+            || passedDays - 1 > 62
+            || !isSellingSeason(firstSkipped)
+            || !isSellingSeason(lastSkipped);
+    }
+
+    /**
+     * Quality never changes, so the price and shelf status can be calculated from the current state.
+     */
+    @Override
+    public void update(Product[] batch, int count, LocalDate day, int passedDays, boolean[] onShelf) {
+        if(this.getClass() != NewYearsEve.class) {
+            ProductRule.updateEach(batch, count, day, passedDays, onShelf);
+            return;
+        }
+
+        long epochDay = day.toEpochDay();
+        for(int i = 0; i < count; i++) {
+            Product product = batch[i];
+            onShelf[i] = !product.shouldUnshelf() && !this.isUnshelvedBefore(product, day, passedDays);
+            if(onShelf[i]) {
+                product.applyRuleResult(product.getQuality(), this.calculatePrice(product, epochDay), this.shouldUnshelf(product, epochDay));
+            }
+        }
+    }
+
+    private static boolean isSellingSeason(long day) {
+        int month = EpochDays.month(day);
+        return month == 12 || month == 1;
     }
 }
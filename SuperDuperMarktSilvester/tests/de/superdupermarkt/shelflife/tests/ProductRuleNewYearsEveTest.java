@@ -52,4 +52,58 @@ public class ProductRuleNewYearsEveTest {
             assertEquals(10-0.5*i, product.getType().calculatePrice(product, priceTstDate.plusDays(16 +i)), "Price after new years eve wront at "+i);
         }
     }
+
+    @Test
+    @DisplayName("NewYearsEve multi day updates match daily updates")
+    void testSilvesterMultiDayUpdates() {
+        NewYearsEve type = new NewYearsEve("TestNewYearsEve");
+        LocalDate initialDate = LocalDate.of(2024, 12, 1);
+
+        for(int dueOffset : new int[]{10, 45, 60, 400}) {
+            for(int step = 1; step < 100; step += 2) {
+                Product daily = new Product(type, "TestProduct", 22, 20, initialDate.plusDays(dueOffset), initialDate);
+                Product skipping = new Product(type, "TestProduct", 22, 20, initialDate.plusDays(dueOffset), initialDate);
+
+                boolean dailyOnShelf = true;
+                for(int i = 0; i < 500; i++) {
+                    LocalDate day = initialDate.plusDays(i);
+                    if(dailyOnShelf) {
+                        dailyOnShelf = !daily.shouldUnshelf();
+                        if(dailyOnShelf) { daily.update(day); }
+                    }
+
+                    if((i + 1) % step == 0) {
+                        assertEquals(dailyOnShelf, skipping.update(day, step), "Shelf status differs at step "+ step +", day "+ day);
+                        if(!dailyOnShelf) { break; }
+                        assertEquals(daily, skipping, "Product state differs at step "+ step +", day "+ day);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("NewYearsEve batch update matches per product update")
+    void testSilvesterBatchUpdate() {
+        NewYearsEve type = new NewYearsEve("TestNewYearsEve");
+        LocalDate initialDate = LocalDate.of(2024, 12, 1);
+
+        Product[] batch = new Product[40];
+        Product[] single = new Product[batch.length];
+        for(int i = 0; i < batch.length; i++) {
+            batch[i] = new Product(type, "TestProduct", i, 20, initialDate.plusDays(2*i), initialDate);
+            single[i] = new Product(type, "TestProduct", i, 20, initialDate.plusDays(2*i), initialDate);
+        }
+
+        boolean[] onShelf = new boolean[batch.length];
+        for(LocalDate day = initialDate; day.isBefore(initialDate.plusDays(80)); day = day.plusDays(3)) {
+            type.update(batch, batch.length, day, 3, onShelf);
+            for(int i = 0; i < batch.length; i++) {
+                assertEquals(single[i].update(day, 3), onShelf[i], "Shelf status differs for product "+ i +" at "+ day);
+                if(onShelf[i]) {
+                    assertEquals(single[i], batch[i], "Product state differs for product "+ i +" at "+ day);
+                }
+            }
+        }
+    }
 }